@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * How a storage engine sets aside memory for the slots of an inventory. The 
+ * capacity of the inventory, the most items it will ever hold, is the same 
+ * whichever policy is used. The policy only decides how many slots are 
+ * actually allocated at any one time.
+ * 
+ * @author Gary Munnelly
+ */
+public enum CapacityPolicy {
+    /**
+     * Allocate every slot up front. Inserts never have to allocate, at the 
+     * cost of paying for slots which are never used
+     */
+    HARD,
+    
+    /**
+     * Allocate nothing until the first item arrives, then double the slots 
+     * allocated whenever they run out, up to the capacity. Slots are never 
+     * given back
+     */
+    SOFT,
+    
+    /**
+     * Grow like SOFT, and also halve the slots allocated whenever no more 
+     * than a quarter of them are in use. An inventory which is emptied gives
+     * back all of its slots
+     */
+    SHRINK
+}
@@ -0,0 +1,493 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A storage engine which keeps items in an unrolled list. Items are stored in
+ * small sorted chunks, and the chunks themselves are kept in order. Inserting
+ * or removing an item only shifts the elements of a single chunk, so large
+ * inventories don't pay to move every item after the one that changed. 
+ * 
+ * Positional lookups use a Fenwick tree (binary indexed tree) over the chunk
+ * sizes, so finding the chunk holding a position, or the position of a 
+ * chunk, takes O(log chunks) steps. The tree is rebuilt in a single pass 
+ * after chunks are added or removed, which only happens once every few 
+ * dozen inserts or removes. A chunk which falls below half full is merged 
+ * with a neighbour when the two fit comfortably in one chunk, so removals 
+ * can't leave behind a long trail of nearly empty chunks.
+ * 
+ * @author Gary Munnelly
+ */
+public class ChunkedListStorage implements IInventoryStorage {
+    /**
+     * The maximum number of items held in a single chunk
+     */
+    private static final int CHUNK_SIZE = 64;
+    
+    /**
+     * The maximum number of items this storage can hold
+     */
+    private final int capacity;
+    
+    /**
+     * The number of items currently stored
+     */
+    private int numItems;
+    
+    /**
+     * The chunks of items. Chunks [0, numChunks) are in use
+     */
+    private IItem [][] chunks;
+    
+    /**
+     * The number of items held in each chunk
+     */
+    private int [] chunkSizes;
+    
+    /**
+     * The number of chunks currently in use
+     */
+    private int numChunks;
+    
+    /**
+     * Fenwick tree over chunkSizes. Entry i (counting from 1) holds the total
+     * size of the chunks (i - (i & -i), i]. Only valid when treeStale is 
+     * false
+     */
+    private int [] tree;
+    
+    /**
+     * True if chunks have been added or removed since the tree was built
+     */
+    private boolean treeStale;
+    
+    /**
+     * Constructor for the ChunkedListStorage class
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     */
+    public ChunkedListStorage( int capacity ) {
+        this.capacity = capacity;
+        this.numItems = 0;
+        this.chunks = new IItem[4][];
+        this.chunkSizes = new int[4];
+        this.numChunks = 0;
+        this.tree = new int[5];
+        this.treeStale = false;
+    }
+    
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+    
+    @Override
+    public int size() {
+        return this.numItems;
+    }
+    
+    @Override
+    public IItem get(int index) {
+        int chunk = this.findChunk(index);
+        return this.chunks[chunk][index - this.chunkStart(chunk)];
+    }
+    
+    @Override
+    public int insert(IItem item) {
+        String name = item.getName();
+        
+        int chunk;
+        if(this.numChunks == 0) {
+            // Start a new chunk if we don't have one yet
+            this.insertChunk(0);
+            chunk = 0;
+        } else {
+            // Items with the same name go after existing ones, so find the 
+            // first chunk which ends with a name greater than ours. If there 
+            // isn't one the item goes at the end of the last chunk
+            chunk = this.firstChunkEndingAfter(name, true);
+            if(chunk == this.numChunks) {
+                chunk--;
+            }
+        }
+        
+        // Split the chunk in two if it's full, and work out which half our
+        // item belongs in
+        if(this.chunkSizes[chunk] == CHUNK_SIZE) {
+            this.splitChunk(chunk);
+            int last = this.chunkSizes[chunk] - 1;
+            if(name.compareTo(this.chunks[chunk][last].getName()) >= 0) {
+                chunk++;
+            }
+        }
+        
+        // Shift the items in this chunk up to make room for the new one
+        IItem [] items = this.chunks[chunk];
+        int size = this.chunkSizes[chunk];
+        int offset = upperBound(items, size, name);
+        System.arraycopy(items, offset, items, offset + 1, size - offset);
+        items[offset] = item;
+        this.chunkSizes[chunk]++;
+        this.addToTree(chunk, 1);
+        this.numItems++;
+        
+        return this.chunkStart(chunk) + offset;
+    }
+    
+    @Override
+    public IItem remove(int index) {
+        int chunk = this.findChunk(index);
+        index -= this.chunkStart(chunk);
+        
+        // Shift the rest of the chunk down over the removed item
+        IItem [] items = this.chunks[chunk];
+        IItem item = items[index];
+        int size = --this.chunkSizes[chunk];
+        System.arraycopy(items, index + 1, items, index, size - index);
+        items[size] = null;
+        this.addToTree(chunk, -1);
+        this.numItems--;
+        
+        // Throw away the chunk if it's now empty, or merge it with a 
+        // neighbour if it's getting sparse
+        if(size == 0) {
+            this.removeChunk(chunk);
+        } else if(size < CHUNK_SIZE / 2) {
+            this.mergeChunk(chunk);
+        }
+        
+        return item;
+    }
+    
+    /**
+     * Iterate over a range of the stored items in order. The iterator steps
+     * from one chunk to the next rather than looking up each position, so 
+     * it only searches once. It must not be used after the storage changes
+     * 
+     * @param from The position of the first item
+     * @param to The position just after the last item
+     * @return An iterator over the items in [from, to)
+     */
+    Iterator<IItem> iterator(int from, int to) {
+        return new Iterator<IItem>() {
+            private int remaining = to - from;
+            private int chunk = from < to ? findChunk(from) : 0;
+            private int offset = from < to ? from - chunkStart(this.chunk) : 0;
+            
+            @Override
+            public boolean hasNext() {
+                return this.remaining > 0;
+            }
+            
+            @Override
+            public IItem next() {
+                if(this.remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                IItem item = chunks[this.chunk][this.offset++];
+                if(this.offset == chunkSizes[this.chunk]) {
+                    this.chunk++;
+                    this.offset = 0;
+                }
+                this.remaining--;
+                return item;
+            }
+        };
+    }
+    
+    @Override
+    public int indexOf(String name) {
+        // The first item with this name must be in the first chunk which ends
+        // with a name that isn't less than ours
+        int chunk = this.firstChunkEndingAfter(name, false);
+        if(chunk == this.numChunks) {
+            return -1;
+        }
+        
+        IItem [] items = this.chunks[chunk];
+        int offset = lowerBound(items, this.chunkSizes[chunk], name);
+        
+        // The lower bound is only a match if the names are equal
+        if(!name.equals(items[offset].getName())) {
+            return -1;
+        }
+        
+        return this.chunkStart(chunk) + offset;
+    }
+    
+    /**
+     * Binary search the chunks for the first one whose last item has a name 
+     * greater than (or not less than) the name given.
+     * 
+     * @param name The name to search for
+     * @param strict True to look for a last name > name, false for >= name
+     * @return The index of the chunk, or numChunks if there is no such chunk
+     */
+    private int firstChunkEndingAfter(String name, boolean strict) {
+        int low = 0;
+        int high = this.numChunks;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.chunks[mid][this.chunkSizes[mid] - 1].getName()
+                    .compareTo(name);
+            if(cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Get the position of the first item of a chunk
+     * 
+     * @param chunk The index of the chunk
+     * @return The number of items held in the chunks before it
+     */
+    private int chunkStart(int chunk) {
+        this.ensureTree();
+        
+        int start = 0;
+        for(int i=chunk; i>0; i-=i&-i) {
+            start += this.tree[i];
+        }
+        return start;
+    }
+    
+    /**
+     * Find the chunk holding a position, by walking down the Fenwick tree
+     * 
+     * @param index The position. Must be in the range [0, size())
+     * @return The index of the chunk holding the item at that position
+     */
+    private int findChunk(int index) {
+        this.ensureTree();
+        
+        // Find the last chunk whose start is not after index, taking the 
+        // largest steps first
+        int chunk = 0;
+        for(int step=Integer.highestOneBit(this.numChunks); step>0; 
+                step>>>=1) {
+            int next = chunk + step;
+            if(next <= this.numChunks && this.tree[next] <= index) {
+                chunk = next;
+                index -= this.tree[next];
+            }
+        }
+        
+        return chunk;
+    }
+    
+    /**
+     * Tell the Fenwick tree that the size of a chunk changed
+     * 
+     * @param chunk The index of the chunk
+     * @param delta The change in its size
+     */
+    private void addToTree(int chunk, int delta) {
+        // A stale tree will be rebuilt from the sizes anyway
+        if(this.treeStale) {
+            return;
+        }
+        for(int i=chunk+1; i<=this.numChunks; i+=i&-i) {
+            this.tree[i] += delta;
+        }
+    }
+    
+    /**
+     * Rebuild the Fenwick tree if chunks have been added or removed since it
+     * was last built. Each entry is added to its parent once, so this takes
+     * a single pass over the chunks
+     */
+    private void ensureTree() {
+        if(!this.treeStale) {
+            return;
+        }
+        
+        if(this.tree.length < this.numChunks + 1) {
+            this.tree = new int[this.chunks.length + 1];
+        }
+        System.arraycopy(this.chunkSizes, 0, this.tree, 1, this.numChunks);
+        for(int i=1; i<=this.numChunks; i++) {
+            int parent = i + (i & -i);
+            if(parent <= this.numChunks) {
+                this.tree[parent] += this.tree[i];
+            }
+        }
+        this.treeStale = false;
+    }
+    
+    /**
+     * Merge a chunk which is less than half full with a neighbour, if the 
+     * two fill no more than three quarters of a single chunk. Leaving that 
+     * much room stops the two halves of a chunk which has just been split 
+     * from being merged straight back together by the next remove, only to
+     * be split again by the next insert. If neither neighbour is merged, 
+     * each pair of neighbouring chunks still fills more than three eighths 
+     * of their space
+     * 
+     * @param chunk The index of the chunk
+     */
+    private void mergeChunk(int chunk) {
+        int size = this.chunkSizes[chunk];
+        int limit = CHUNK_SIZE * 3 / 4;
+        if(chunk + 1 < this.numChunks && 
+                size + this.chunkSizes[chunk + 1] <= limit) {
+            this.appendChunk(chunk, chunk + 1);
+        } else if(chunk > 0 && 
+                this.chunkSizes[chunk - 1] + size <= limit) {
+            this.appendChunk(chunk - 1, chunk);
+        }
+    }
+    
+    /**
+     * Move every item of a chunk onto the end of the chunk before it, and 
+     * remove the emptied chunk
+     * 
+     * @param into The index of the chunk to move the items to
+     * @param from The index of the chunk after it
+     */
+    private void appendChunk(int into, int from) {
+        int size = this.chunkSizes[into];
+        int moved = this.chunkSizes[from];
+        System.arraycopy(this.chunks[from], 0, this.chunks[into], size, moved);
+        this.chunkSizes[into] = size + moved;
+        this.removeChunk(from);
+    }
+    
+    /**
+     * Split a full chunk into two half full chunks
+     * 
+     * @param chunk The index of the chunk to split
+     */
+    private void splitChunk(int chunk) {
+        this.insertChunk(chunk + 1);
+        
+        int half = CHUNK_SIZE / 2;
+        System.arraycopy(this.chunks[chunk], half, 
+                this.chunks[chunk + 1], 0, CHUNK_SIZE - half);
+        Arrays.fill(this.chunks[chunk], half, CHUNK_SIZE, null);
+        this.chunkSizes[chunk] = half;
+        this.chunkSizes[chunk + 1] = CHUNK_SIZE - half;
+    }
+    
+    /**
+     * Add a new empty chunk, growing the chunk arrays if needed
+     * 
+     * @param chunk The index at which to add the chunk
+     */
+    private void insertChunk(int chunk) {
+        if(this.numChunks == this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, 
+                    this.numChunks * 2);
+            this.chunkSizes = Arrays.copyOf(this.chunkSizes, 
+                    this.numChunks * 2);
+        }
+        
+        System.arraycopy(this.chunks, chunk, this.chunks, chunk + 1, 
+                this.numChunks - chunk);
+        System.arraycopy(this.chunkSizes, chunk, this.chunkSizes, chunk + 1, 
+                this.numChunks - chunk);
+        this.chunks[chunk] = new IItem[CHUNK_SIZE];
+        this.chunkSizes[chunk] = 0;
+        this.numChunks++;
+        this.treeStale = true;
+    }
+    
+    /**
+     * Remove a chunk whose items have been removed or moved elsewhere
+     * 
+     * @param chunk The index of the chunk to remove
+     */
+    private void removeChunk(int chunk) {
+        this.numChunks--;
+        System.arraycopy(this.chunks, chunk + 1, this.chunks, chunk, 
+                this.numChunks - chunk);
+        System.arraycopy(this.chunkSizes, chunk + 1, this.chunkSizes, chunk, 
+                this.numChunks - chunk);
+        this.chunks[this.numChunks] = null;
+        this.chunkSizes[this.numChunks] = 0;
+        this.treeStale = true;
+    }
+    
+    /**
+     * Find the first item in a chunk whose name is not less than the name 
+     * given.
+     * 
+     * @param items The items of the chunk
+     * @param size The number of items in the chunk
+     * @param name The name to search for
+     * @return The offset of the first item with a name >= name, or size if 
+     * there is no such item
+     */
+    private static int lowerBound(IItem [] items, int size, String name) {
+        int low = 0;
+        int high = size;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(items[mid].getName().compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Find the first item in a chunk whose name is greater than the name 
+     * given.
+     * 
+     * @param items The items of the chunk
+     * @param size The number of items in the chunk
+     * @param name The name to search for
+     * @return The offset of the first item with a name > name, or size if 
+     * there is no such item
+     */
+    private static int upperBound(IItem [] items, int size, String name) {
+        int low = 0;
+        int high = size;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(items[mid].getName().compareTo(name) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+}
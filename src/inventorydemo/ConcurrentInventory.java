@@ -0,0 +1,499 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe version of the Inventory class which can be shared by 
+ * several threads at once. Items are split by name into a number of stripes,
+ * each of which is a chunked list with its own lock, so threads inserting and
+ * dropping items in different stripes don't block each other. Looking up or 
+ * removing an item by index only has to add up the sizes of the stripes and
+ * then search a single chunked list, so it takes logarithmic time.
+ * 
+ * Each stripe covers a range of names. To begin with every item goes in the 
+ * first stripe, and whenever a stripe grows well past the others the ranges 
+ * are redrawn so the items are spread evenly again. Items with the same name
+ * are always kept in the same stripe.
+ * 
+ * A thread must reserve a slot before it can insert, which means the 
+ * inventory can never hold more than its maximum capacity no matter how many
+ * threads are inserting at once. The number of items reported is only 
+ * counted once an item is in place, and uncounted before it is taken out, so 
+ * an index below getNumItems always had an item behind it.
+ * 
+ * Indices work the same as in Inventory, but bear in mind that another thread
+ * may change what is at an index between calls.
+ * 
+ * @author Gary Munnelly
+ */
+public class ConcurrentInventory {
+    /**
+     * The default size of the inventory in the event a capacity is not 
+     * specified
+     */
+    private static final int DEFAULT_MAX_CAPACITY = 10;
+    
+    /**
+     * The default number of stripes the items are split into
+     */
+    private static final int DEFAULT_STRIPES = 16;
+    
+    /**
+     * Don't bother spreading the items out until a stripe holds this many
+     */
+    private static final int MIN_REBALANCE = 1024;
+    
+    /**
+     * The maximum number of items the inventory can hold
+     */
+    private final int maxCapacity;
+    
+    /**
+     * The number of slots currently reserved by items in our inventory
+     */
+    private final AtomicInteger reserved;
+    
+    /**
+     * The number of items which are in place in the stripes
+     */
+    private final AtomicInteger numItems;
+    
+    /**
+     * The stripes holding our items, in order of name
+     */
+    private final Stripe [] stripes;
+    
+    /**
+     * The first name which belongs in each stripe after the first. A null 
+     * means the stripe and any after it are not in use. A new array is 
+     * published every time the items are spread out again
+     */
+    private volatile String [] boundaries;
+    
+    /**
+     * Spread the items out again when a stripe grows past this size
+     */
+    private volatile int rebalanceAt;
+    
+    /**
+     * Default constructor for the ConcurrentInventory class
+     * 
+     * Initialise inventory to have capacity of DEFAULT_MAX_CAPACITY
+     */
+    public ConcurrentInventory( ) {
+        this(ConcurrentInventory.DEFAULT_MAX_CAPACITY);
+    }
+    
+    /**
+     * Constructor for the ConcurrentInventory class. Initialise the inventory
+     * to have the capacity passed as argument.
+     * 
+     * @param maxCapacity The maximum number of item of our inventory can hold
+     */
+    public ConcurrentInventory( int maxCapacity ) {
+        this(maxCapacity, ConcurrentInventory.DEFAULT_STRIPES);
+    }
+    
+    /**
+     * Constructor for the ConcurrentInventory class. Initialise the inventory
+     * to have the capacity passed as argument, with its items split into the
+     * number of stripes passed as argument.
+     * 
+     * @param maxCapacity The maximum number of item of our inventory can hold
+     * @param numStripes The number of stripes to split items into. More 
+     * stripes let more threads work at once, but make indexing slower
+     */
+    public ConcurrentInventory( int maxCapacity, int numStripes ) {
+        if(numStripes < 1) {
+            throw new IllegalArgumentException(
+                    "Need at least one stripe, not " + numStripes);
+        }
+        
+        this.maxCapacity = maxCapacity;
+        this.reserved = new AtomicInteger(0);
+        this.numItems = new AtomicInteger(0);
+        this.stripes = new Stripe[numStripes];
+        for(int i=0; i<numStripes; i++) {
+            this.stripes[i] = new Stripe(maxCapacity);
+        }
+        this.boundaries = new String[numStripes - 1];
+        this.rebalanceAt = ConcurrentInventory.MIN_REBALANCE;
+    }
+    
+    /**
+     * Get the maximum number of items we can store in this inventory
+     * 
+     * @return The maximum capacity of the inventory
+     */
+    public int getMaxCapacity() {
+        return this.maxCapacity;
+    }
+    
+    /**
+     * Get the number of items we currently have stored in our inventory
+     * 
+     * @return The number of items in the inventory
+     */
+    public int getNumItems() {
+        return this.numItems.get();
+    }
+    
+    /**
+     * Retrieve a reference to an item in the inventory. The item is removed 
+     * from the inventory.
+     * 
+     * @param index The index of the item we are looking for.
+     * @return A reference to the item at index. Will be null if item not 
+     * found or the index is invalid
+     */
+    public IItem getItem(int index) {
+        if(index < 0) {
+            return null;
+        }
+        
+        // Keep trying until we remove an item or run out of items. Another
+        // thread may move things around between finding the stripe and 
+        // locking it
+        while(true) {
+            String [] bounds = this.boundaries;
+            
+            // Find the stripe holding the index
+            int stripe = 0;
+            int offset = index;
+            while(stripe < this.stripes.length && 
+                    offset >= this.stripes[stripe].size) {
+                offset -= this.stripes[stripe].size;
+                stripe++;
+            }
+            if(stripe == this.stripes.length) {
+                return null;
+            }
+            
+            Stripe s = this.stripes[stripe];
+            s.lock.lock();
+            try {
+                // The items can't be spread out while we hold the lock, so if
+                // the boundaries are unchanged the stripe is the one we want
+                if(this.boundaries != bounds || offset >= s.items.size()) {
+                    continue;
+                }
+                
+                // Stop counting the item before it goes, so nobody sees an
+                // index with nothing behind it
+                this.numItems.decrementAndGet();
+                IItem item = s.items.remove(offset);
+                s.size = s.items.size();
+                this.reserved.decrementAndGet();
+                return item;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Insert a new item into the inventory. Maintains alphabetical sorting by
+     * the name of the item.
+     * 
+     * @param item The item that we're adding to the inventory
+     * @return True if item successfully added, false otherwise
+     */
+    public boolean insertItem(IItem item) {
+        if(item == null) {
+            return false;
+        }
+        
+        // Reserve a slot for the item, making sure that we don't exceed the 
+        // maximum capacity of our inventory
+        int count;
+        do {
+            count = this.reserved.get();
+            if(count >= this.maxCapacity) {
+                return false;
+            }
+        } while(!this.reserved.compareAndSet(count, count + 1));
+        
+        String name = item.getName();
+        int size;
+        while(true) {
+            String [] bounds = this.boundaries;
+            Stripe s = this.stripes[stripeFor(bounds, name)];
+            s.lock.lock();
+            try {
+                if(this.boundaries != bounds) {
+                    continue;
+                }
+                
+                // The chunked list takes care of keeping the items sorted, 
+                // and puts items with the same name after existing ones
+                s.items.insert(item);
+                size = s.items.size();
+                s.size = size;
+                this.numItems.incrementAndGet();
+                break;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        
+        if(size > this.rebalanceAt) {
+            this.rebalance();
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Find the index of an item in the inventory by name.
+     * 
+     * @param name The name of the item we are looking for
+     * @return The index of the first item with the given name. Will be -1 if
+     * no such item is found
+     */
+    public int findByName(String name) {
+        if(name == null) {
+            return -1;
+        }
+        
+        while(true) {
+            String [] bounds = this.boundaries;
+            int stripe = stripeFor(bounds, name);
+            Stripe s = this.stripes[stripe];
+            s.lock.lock();
+            try {
+                if(this.boundaries != bounds) {
+                    continue;
+                }
+                
+                int offset = s.items.indexOf(name);
+                if(offset < 0) {
+                    return -1;
+                }
+                
+                // Count the items in the stripes before this one
+                for(int i=0; i<stripe; i++) {
+                    offset += this.stripes[i].size;
+                }
+                return offset;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Delete an item from the inventory and maintain the order of the elements
+     * in the list.
+     * 
+     * @param index The index of the item to be deleted
+     * @return True if the delete succeeded. False otherwise.
+     */
+    public boolean dropItem(int index) {
+        return this.getItem(index) != null;
+    }
+    
+    /**
+     * Take a copy of the contents of the inventory. Every stripe is locked 
+     * while the items are copied, so the copy shows the inventory as it was 
+     * at a single moment
+     * 
+     * @return An inventory with the same capacity and items as this one
+     */
+    public Inventory snapshot() {
+        IItem [] items = new IItem[this.maxCapacity];
+        int count = 0;
+        
+        this.lockAll();
+        try {
+            for(Stripe s : this.stripes) {
+                for(int i=0; i<s.items.size(); i++) {
+                    items[count++] = s.items.get(i);
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+        
+        // The items are already in order, so they can be merged in at once
+        SortedArrayStorage storage = new SortedArrayStorage(this.maxCapacity);
+        storage.insertAll(items, count);
+        return new Inventory(storage);
+    }
+    
+    /**
+     * Print the contents of the inventory to the command line. Will show
+     * the string "EMPTY" for slots that haven't been filled
+     */
+    public void listContents() {
+        this.snapshot().listContents();
+    }
+    
+    /**
+     * Redraw the ranges of names covered by each stripe so that the items 
+     * are spread evenly between them
+     */
+    private void rebalance() {
+        this.lockAll();
+        try {
+            // Another thread may have beaten us to it
+            int largest = 0;
+            for(Stripe s : this.stripes) {
+                largest = Math.max(largest, s.items.size());
+            }
+            if(largest <= this.rebalanceAt) {
+                return;
+            }
+            
+            // Gather up every item in order
+            IItem [] items = new IItem[this.reserved.get()];
+            int count = 0;
+            for(Stripe s : this.stripes) {
+                for(int i=0; i<s.items.size(); i++) {
+                    items[count++] = s.items.get(i);
+                }
+            }
+            
+            // Cut the items into even pieces, moving each cut forward past
+            // any items with the same name as the one before it
+            int numStripes = this.stripes.length;
+            String [] bounds = new String[numStripes - 1];
+            int [] starts = new int[numStripes];
+            int used = 0;
+            int start = 0;
+            for(int i=1; i<numStripes && start < count; i++) {
+                int end = Math.max(start, (int)((long)count * i / numStripes));
+                while(end > 0 && end < count && items[end].getName()
+                        .equals(items[end - 1].getName())) {
+                    end++;
+                }
+                if(end >= count) {
+                    break;
+                }
+                bounds[i - 1] = items[end].getName();
+                starts[i] = end;
+                used = i;
+                start = end;
+            }
+            
+            // Refill the stripes, leaving any we didn't need empty
+            largest = 0;
+            for(int i=0; i<numStripes; i++) {
+                int from = i <= used ? starts[i] : count;
+                int to = i < used ? starts[i + 1] : count;
+                
+                Stripe s = this.stripes[i];
+                s.items = new ChunkedListStorage(this.maxCapacity);
+                for(int j=from; j<to; j++) {
+                    s.items.insert(items[j]);
+                }
+                s.size = s.items.size();
+                largest = Math.max(largest, s.size);
+            }
+            
+            // Leave room for the stripes to grow before we do this again
+            this.rebalanceAt = Math.max(ConcurrentInventory.MIN_REBALANCE, 
+                    2 * Math.max(largest, count / numStripes));
+            this.boundaries = bounds;
+        } finally {
+            this.unlockAll();
+        }
+    }
+    
+    /**
+     * Lock every stripe, always in the same order
+     */
+    private void lockAll() {
+        for(Stripe s : this.stripes) {
+            s.lock.lock();
+        }
+    }
+    
+    /**
+     * Unlock every stripe
+     */
+    private void unlockAll() {
+        for(int i=this.stripes.length-1; i>=0; i--) {
+            this.stripes[i].lock.unlock();
+        }
+    }
+    
+    /**
+     * Find the stripe a name belongs in
+     * 
+     * @param bounds The first name which belongs in each stripe after the 
+     * first
+     * @param name The name to look for
+     * @return The index of the last stripe whose first name is not greater 
+     * than the given name
+     */
+    private static int stripeFor(String [] bounds, String name) {
+        int low = 0;
+        int high = bounds.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(bounds[mid] != null && name.compareTo(bounds[mid]) >= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * A range of the inventory's items and the lock which guards it
+     */
+    private static final class Stripe {
+        /**
+         * Held while reading or changing the items in this stripe
+         */
+        private final ReentrantLock lock;
+        
+        /**
+         * The items in this stripe, in order of name. Only replaced while 
+         * every stripe is locked
+         */
+        private ChunkedListStorage items;
+        
+        /**
+         * The number of items in this stripe, readable without the lock
+         */
+        private volatile int size;
+        
+        /**
+         * Constructor for the Stripe class
+         * 
+         * @param capacity The capacity of the inventory
+         */
+        private Stripe( int capacity ) {
+            this.lock = new ReentrantLock();
+            this.items = new ChunkedListStorage(capacity);
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stress tests the concurrent inventory and measures its throughput. Several
+ * threads insert, drop and look up items at random while another keeps 
+ * checking that the capacity is never exceeded. Afterwards every item that 
+ * was inserted must either have been dropped exactly once or still be in the
+ * inventory, and the inventory must still be in order. Then reports the 
+ * number of operations per second for a range of inventory sizes and numbers
+ * of threads.
+ * 
+ * @author Gary Munnelly
+ */
+public class ConcurrentInventoryBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The numbers of threads to measure
+     */
+    private static final int [] THREADS = {1, 2, 4, 8};
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the stress test and the benchmark
+     * 
+     * @param args The total number of operations to time for each 
+     * measurement
+     * @throws InterruptedException If interrupted while waiting for threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numOps = args.length > 0 ? Integer.parseInt(args[0]) : 400000;
+        
+        stress(5000, 8, numOps);
+        stress(200000, 8, numOps);
+        System.out.println("Stress test passed");
+        
+        System.out.printf("%8s %8s %14s%n", "items", "threads", "ops/s");
+        for(int size = 10000; size <= 1000000; size *= 10) {
+            for(int threads : THREADS) {
+                double best = 0;
+                for(int round=0; round<ROUNDS; round++) {
+                    best = Math.max(best, throughput(size, threads, numOps));
+                }
+                System.out.printf("%8d %8d %14.0f%n", size, threads, best);
+            }
+        }
+    }
+    
+    /**
+     * Hammer an inventory from several threads and check that nothing was 
+     * lost, duplicated or put out of order
+     * 
+     * @param capacity The capacity of the inventory
+     * @param numThreads The number of threads changing the inventory
+     * @param numOps The total number of operations to make
+     * @throws InterruptedException If interrupted while waiting for threads
+     */
+    private static void stress(int capacity, int numThreads, int numOps) 
+            throws InterruptedException {
+        ConcurrentInventory inventory = new ConcurrentInventory(capacity);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<List<IItem>> inserted = new ArrayList<>();
+        List<List<IItem>> removed = new ArrayList<>();
+        
+        // Keep an eye on the number of items while the workers run
+        Thread checker = new Thread(() -> {
+            while(running.get()) {
+                int count = inventory.getNumItems();
+                if(count < 0 || count > capacity) {
+                    throw new IllegalStateException(
+                            "Inventory holds " + count + " items");
+                }
+            }
+        });
+        checker.start();
+        
+        Thread [] workers = new Thread[numThreads];
+        for(int t=0; t<numThreads; t++) {
+            List<IItem> ins = new ArrayList<>();
+            List<IItem> rem = new ArrayList<>();
+            inserted.add(ins);
+            removed.add(rem);
+            Random random = new Random(t);
+            
+            workers[t] = new Thread(() -> {
+                for(int i=0; i<numOps/numThreads; i++) {
+                    int op = random.nextInt(10);
+                    if(op < 5) {
+                        // Names repeat, so plenty of items share a name
+                        IItem item = new Sword("Sword " + 
+                                random.nextInt(capacity / 4), "Stress");
+                        if(inventory.insertItem(item)) {
+                            ins.add(item);
+                        }
+                    } else if(op < 8) {
+                        int count = inventory.getNumItems();
+                        IItem item = inventory.getItem(
+                                random.nextInt(count + 1));
+                        if(item != null) {
+                            rem.add(item);
+                        }
+                    } else {
+                        String name = "Sword " + 
+                                random.nextInt(capacity / 4);
+                        int index = inventory.findByName(name);
+                        if(index < -1 || index >= capacity) {
+                            throw new IllegalStateException(
+                                    "Found " + name + " at " + index);
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        running.set(false);
+        checker.join();
+        
+        // Every item inserted is either still there or was removed once
+        Map<IItem, Integer> expected = new IdentityHashMap<>();
+        for(List<IItem> ins : inserted) {
+            for(IItem item : ins) {
+                expected.merge(item, 1, Integer::sum);
+            }
+        }
+        for(List<IItem> rem : removed) {
+            for(IItem item : rem) {
+                expected.merge(item, -1, Integer::sum);
+            }
+        }
+        
+        Inventory contents = inventory.snapshot();
+        if(contents.getNumItems() != inventory.getNumItems()) {
+            throw new IllegalStateException("Count is " + 
+                    inventory.getNumItems() + " but holds " + 
+                    contents.getNumItems());
+        }
+        for(int i=0; i<contents.getNumItems(); i++) {
+            IItem item = contents.peekItem(i);
+            if(expected.merge(item, -1, Integer::sum) != 0) {
+                throw new IllegalStateException("Unexpected " + item);
+            }
+            if(i > 0 && contents.peekItem(i - 1).getName()
+                    .compareTo(item.getName()) > 0) {
+                throw new IllegalStateException("Out of order at " + i);
+            }
+            if(inventory.findByName(item.getName()) > i) {
+                throw new IllegalStateException(
+                        "Can't find " + item.getName());
+            }
+        }
+        for(int count : expected.values()) {
+            if(count != 0) {
+                throw new IllegalStateException("Lost or duplicated item");
+            }
+        }
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then insert, drop and look up 
+     * items at random from several threads
+     * 
+     * @param capacity The capacity of the inventory
+     * @param numThreads The number of threads changing the inventory
+     * @param numOps The total number of operations to make
+     * @return The number of operations per second
+     * @throws InterruptedException If interrupted while waiting for threads
+     */
+    private static double throughput(int capacity, int numThreads, 
+            int numOps) throws InterruptedException {
+        ConcurrentInventory inventory = new ConcurrentInventory(capacity);
+        Random fill = new Random(capacity);
+        for(int i=0; i<capacity/2; i++) {
+            inventory.insertItem(new Sword("Sword " + fill.nextInt(capacity),
+                    "Benchmark"));
+        }
+        
+        // Make the items up front so we only time the inventory
+        IItem [][] items = new IItem[numThreads][1024];
+        for(IItem [] batch : items) {
+            for(int i=0; i<batch.length; i++) {
+                batch[i] = new Sword("Sword " + fill.nextInt(capacity), 
+                        "Benchmark");
+            }
+        }
+        
+        Thread [] workers = new Thread[numThreads];
+        for(int t=0; t<numThreads; t++) {
+            IItem [] batch = items[t];
+            Random random = new Random(t);
+            workers[t] = new Thread(() -> {
+                long found = 0;
+                for(int i=0; i<numOps/numThreads; i++) {
+                    IItem item = batch[i & (batch.length - 1)];
+                    switch(i % 3) {
+                        case 0:
+                            inventory.insertItem(item);
+                            break;
+                        case 1:
+                            inventory.dropItem(random.nextInt(
+                                    inventory.getNumItems() + 1));
+                            break;
+                        default:
+                            found += inventory.findByName(item.getName());
+                    }
+                }
+                published = found;
+            });
+        }
+        
+        long begin = System.nanoTime();
+        for(Thread worker : workers) {
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        return numOps * 1e9 / elapsed;
+    }
+}
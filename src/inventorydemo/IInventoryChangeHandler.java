@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * An interface for objects which read events from an InventoryChangeFeed. 
+ * Each event describes one change to an inventory, and the range of indices
+ * it affected: the slot the item went into or came out of, and every slot 
+ * after it up to the end of the items, since those items moved along by one.
+ * 
+ * Items are handed over as they were published, without being copied. A 
+ * handler should not hold on to anything but the item after it returns.
+ * 
+ * @author Gary Munnelly
+ */
+public interface IInventoryChangeHandler {
+    /**
+     * Called for an item inserted into an inventory
+     * 
+     * @param inventory The inventory that changed
+     * @param sequence The position of the event in the feed
+     * @param index The position at which the item was inserted
+     * @param end The number of items in the inventory after the insert. The
+     * items in [index + 1, end) each moved up by one
+     * @param item The item that was inserted
+     */
+    public void itemInserted(Inventory inventory, long sequence, int index, 
+            int end, IItem item);
+    
+    /**
+     * Called for an item dropped from an inventory
+     * 
+     * @param inventory The inventory that changed
+     * @param sequence The position of the event in the feed
+     * @param index The position the item was dropped from
+     * @param end The number of items in the inventory before the drop. The
+     * items which were in [index + 1, end) each moved down by one
+     * @param item The item that was dropped
+     */
+    public void itemDropped(Inventory inventory, long sequence, int index, 
+            int end, IItem item);
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * An interface for objects which want to be told when the contents of an
+ * inventory change. Indices are the positions of items at the time of the 
+ * change, so a listener which replays the changes in order will end up with
+ * the same contents as the inventory.
+ * 
+ * @author Gary Munnelly
+ */
+public interface IInventoryListener {
+    /**
+     * Called after an item is inserted into an inventory
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position at which the item was inserted
+     * @param item The item that was inserted
+     */
+    public void itemInserted(Inventory inventory, int index, IItem item);
+    
+    /**
+     * Called after an item is dropped from an inventory
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position the item was dropped from
+     * @param item The item that was dropped
+     */
+    public void itemDropped(Inventory inventory, int index, IItem item);
+}
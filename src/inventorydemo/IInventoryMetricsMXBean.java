@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * The management interface of InventoryMetrics, as seen through JMX. Times 
+ * are in nanoseconds. Shift distances are the number of items which had to 
+ * move to make room for, or close the gap left by, an item.
+ * 
+ * @author Gary Munnelly
+ */
+public interface IInventoryMetricsMXBean {
+    /**
+     * Get the number of items inserted
+     * 
+     * @return The number of items inserted
+     */
+    long getInserts();
+    
+    /**
+     * Get the number of items which couldn't be inserted because the 
+     * inventory was full
+     * 
+     * @return The number of items turned away
+     */
+    long getInsertRejections();
+    
+    /**
+     * Get the fraction of attempted inserts which were turned away
+     * 
+     * @return The rejection rate, between 0 and 1
+     */
+    double getRejectionRate();
+    
+    /**
+     * Get the number of items dropped or taken out of an inventory
+     * 
+     * @return The number of items dropped
+     */
+    long getDrops();
+    
+    /**
+     * Get the number of attempts to drop or take an item with an invalid 
+     * index
+     * 
+     * @return The number of failed drops
+     */
+    long getDropMisses();
+    
+    /**
+     * Get the number of items held as a fraction of the capacity of every
+     * inventory being measured
+     * 
+     * @return The fill ratio, between 0 and 1
+     */
+    double getFillRatio();
+    
+    /**
+     * Get the median time taken to insert an item
+     * 
+     * @return The median insert time
+     */
+    long getInsertLatencyP50();
+    
+    /**
+     * Get the 99th percentile time taken to insert an item
+     * 
+     * @return The 99th percentile insert time
+     */
+    long getInsertLatencyP99();
+    
+    /**
+     * Get the median time taken to drop an item
+     * 
+     * @return The median drop time
+     */
+    long getDropLatencyP50();
+    
+    /**
+     * Get the 99th percentile time taken to drop an item
+     * 
+     * @return The 99th percentile drop time
+     */
+    long getDropLatencyP99();
+    
+    /**
+     * Get the 99th percentile number of items moved by an insert
+     * 
+     * @return The 99th percentile insert shift distance
+     */
+    long getInsertShiftP99();
+    
+    /**
+     * Get the 99th percentile number of items moved by a drop
+     * 
+     * @return The 99th percentile drop shift distance
+     */
+    long getDropShiftP99();
+    
+    /**
+     * Get the metrics in the text exposition format
+     * 
+     * @return The metrics as text
+     */
+    String getText();
+    
+    /**
+     * Forget the times and shift distances recorded so far. Counts keep 
+     * counting, so that rates worked out from them stay correct
+     */
+    void reset();
+}
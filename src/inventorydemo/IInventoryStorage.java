@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * An interface for the data structure which backs an Inventory. A storage
+ * engine holds items sorted alphabetically by name and addresses them by
+ * their position in that order. The Inventory decides whether an item may be
+ * added; the storage engine simply needs to keep things in order.
+ * 
+ * @author Gary Munnelly
+ */
+public interface IInventoryStorage {
+    /**
+     * Get the maximum number of items this storage can hold
+     * 
+     * @return The capacity of the storage
+     */
+    public int capacity();
+    
+    /**
+     * Get the number of items currently held by this storage
+     * 
+     * @return The number of items in the storage
+     */
+    public int size();
+    
+    /**
+     * Get the item at a position in the storage without removing it
+     * 
+     * @param index The position of the item. Must be in the range 
+     * [0, size())
+     * @return The item at the given position
+     */
+    public IItem get(int index);
+    
+    /**
+     * Insert an item into the storage, keeping items sorted by name. Items
+     * with the same name are placed after any already stored.
+     * 
+     * @param item The item to insert. Must not be null
+     * @return The position at which the item was inserted
+     */
+    public int insert(IItem item);
+    
+    /**
+     * Remove the item at a position in the storage, shuffling later items
+     * down to fill the gap.
+     * 
+     * @param index The position of the item. Must be in the range 
+     * [0, size())
+     * @return The item which was removed
+     */
+    public IItem remove(int index);
+    
+    /**
+     * Insert a batch of items into the storage, keeping items sorted by name.
+     * The result is the same as inserting each item in turn, but engines can
+     * override this to merge the whole batch in one pass.
+     * 
+     * @param items The items to insert, sorted by name. Must not contain null
+     * @param count The number of items from the start of the array to insert
+     */
+    public default void insertAll(IItem [] items, int count) {
+        for(int i=0; i<count; i++) {
+            this.insert(items[i]);
+        }
+    }
+    
+    /**
+     * Remove a batch of items from the storage. The result is the same as 
+     * removing each item in turn, but engines can override this to compact
+     * the storage in one pass.
+     * 
+     * @param indices The positions of the items to remove, in ascending order
+     * with no duplicates. Each must be in the range [0, size())
+     * @param count The number of positions from the start of the array to
+     * remove
+     */
+    public default void removeAll(int [] indices, int count) {
+        // Work backwards so that removing an item doesn't move the ones we 
+        // still have to remove
+        for(int i=count-1; i>=0; i--) {
+            this.remove(indices[i]);
+        }
+    }
+    
+    /**
+     * Find the position of the first item with the given name
+     * 
+     * @param name The name of the item we are looking for
+     * @return The position of the first item with that name, or -1 if no
+     * such item is stored
+     */
+    public int indexOf(String name);
+}
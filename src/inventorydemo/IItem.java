@@ -44,4 +44,14 @@ public interface IItem {
      * @return The description of the item as a String
      */
     public String getDescription();
+    
+    /**
+     * Get the value of one of the item's numeric stats
+     * 
+     * @param attribute The stat to get
+     * @return The value of the stat. Items without stats return 0
+     */
+    public default int getAttribute(ItemAttribute attribute) {
+        return 0;
+    }
 }
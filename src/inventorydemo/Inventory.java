@@ -24,7 +24,18 @@
 
 package inventorydemo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A simple inventory class which will hold an array of objects that implement
@@ -32,24 +43,63 @@ import java.util.Arrays;
  * inventory can contain, but not on the total weight. Hardly realistic, but
  * is only being used as an example in any case.
  * 
+ * The items themselves are held by a storage engine which keeps them sorted
+ * by name. By default this is a simple sorted array, but a different engine
+ * can be chosen when the inventory is constructed.
+ * 
  * @author Gary Munnelly
  */
-public class Inventory {
+public class Inventory implements Iterable<IItem> {
     /**
      * The default size of the inventory in the event a capacity is not 
      * specified
      */
     private static final int DEFAULT_MAX_CAPACITY = 10;
-      
+    
+    /**
+     * Used to print the contents of inventories to the command line
+     */
+    private static final InventoryRenderer RENDERER = new InventoryRenderer();
+    
     /**
-     * The number of items currently stored in our inventory
+     * The order in which items are kept in the inventory
      */
-    private int numItems;
+    private static final Comparator<IItem> BY_NAME = 
+            Comparator.comparing(IItem::getName);
     
     /**
      * Data structure used to store inventory contents
      */
-    private IItem [] contents;
+    private IInventoryStorage contents;
+    
+    /**
+     * Listeners to be told when the contents of the inventory change
+     */
+    private IInventoryListener [] listeners;
+    
+    /**
+     * Counts changes to the contents of the inventory. Used to spot the 
+     * inventory changing while something is iterating over it
+     */
+    private int version;
+    
+    /**
+     * Measures what the inventory is doing. Null unless metrics have been 
+     * attached, in which case nothing is measured
+     */
+    private InventoryMetrics metrics;
+    
+    /**
+     * Items inserted since the metrics were last told. Changes are reported
+     * to the metrics together, whenever a change is sampled, so that most 
+     * changes cost a plain increment
+     */
+    private int unreportedInserts;
+    
+    /**
+     * Items dropped since the metrics were last told
+     */
+    private int unreportedDrops;
             
     /**
      * Default constructor for the Inventory class
@@ -68,24 +118,110 @@ public class Inventory {
      * @param maxCapacity The maximum number of item of our inventory can hold
      */
     public Inventory( int maxCapacity ) {
-        
-        // Create new array of items
-        this.contents = new IItem[maxCapacity];        
-                
-        // Initialize all items in the array to be null
-        Arrays.fill(this.contents, 0, this.contents.length, null);
-        
-        // Set our number of items to zero
-        this.numItems = 0;
+        // Use a sorted array to store our items
+        this(new SortedArrayStorage(maxCapacity));
+    }
+    
+    /**
+     * Constructor for the Inventory class. Initialise the inventory to have
+     * the capacity passed as argument, allocating slots according to the 
+     * policy passed as argument. The capacity is the same whatever the 
+     * policy, but a growable inventory only pays for the slots it is using.
+     * 
+     * @param maxCapacity The maximum number of item of our inventory can hold
+     * @param policy How slots for items are allocated
+     */
+    public Inventory( int maxCapacity, CapacityPolicy policy ) {
+        this(new SortedArrayStorage(maxCapacity, policy));
+    }
+    
+    /**
+     * Constructor for the Inventory class. Initialise the inventory to use 
+     * the storage engine passed as argument. The capacity of the inventory is
+     * the capacity of the storage engine.
+     * 
+     * @param storage The (empty) storage engine which will hold our items
+     */
+    public Inventory( IInventoryStorage storage ) {
+        this.contents = storage;
+        this.listeners = new IInventoryListener[0];
+        this.version = 0;
+        this.metrics = null;
+        this.unreportedInserts = 0;
+        this.unreportedDrops = 0;
+    }
+    
+    /**
+     * Register a listener to be told when the contents of the inventory 
+     * change
+     * 
+     * @param listener The listener to add
+     */
+    public void addListener(IInventoryListener listener) {
+        this.listeners = Arrays.copyOf(this.listeners, 
+                this.listeners.length + 1);
+        this.listeners[this.listeners.length - 1] = listener;
+    }
+    
+    /**
+     * Stop telling a listener about changes to the contents of the inventory
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeListener(IInventoryListener listener) {
+        for(int i=0; i<this.listeners.length; i++) {
+            if(this.listeners[i] == listener) {
+                IInventoryListener [] remaining = 
+                        new IInventoryListener[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, remaining, 0, i);
+                System.arraycopy(this.listeners, i + 1, remaining, i, 
+                        remaining.length - i);
+                this.listeners = remaining;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Start measuring what the inventory is doing. Replaces any metrics 
+     * already attached. Single inserts and drops are reported to the metrics
+     * in groups, so the metrics may be behind by up to the sample interval 
+     * of the metrics
+     * 
+     * @param metrics The metrics to record changes in, or null to stop 
+     * measuring
+     */
+    public void setMetrics(InventoryMetrics metrics) {
+        if(this.metrics != null) {
+            // Catch the old metrics up before letting them go
+            this.metrics.insertedAll(this.unreportedInserts, 0);
+            this.metrics.droppedAll(this.unreportedDrops);
+            this.metrics.detached(this);
+        }
+        this.unreportedInserts = 0;
+        this.unreportedDrops = 0;
+        this.metrics = metrics;
+        if(metrics != null) {
+            metrics.attached(this);
+        }
+    }
+    
+    /**
+     * Get the metrics measuring what the inventory is doing
+     * 
+     * @return The metrics, or null if none are attached
+     */
+    public InventoryMetrics getMetrics() {
+        return this.metrics;
     }
     
     /**
      * Get the maximum number of items we can store in this inventory
      * 
-     * @return The length of the inventory contents array
+     * @return The capacity of the inventory storage
      */
     public int getMaxCapacity() {
-        return this.contents.length;
+        return this.contents.capacity();
     }
      
     /**
@@ -94,7 +230,34 @@ public class Inventory {
      * @return The number of items in the inventory
      */
     public int getNumItems() {
-        return this.numItems;
+        return this.contents.size();
+    }
+    
+    /**
+     * Get the current version of the inventory contents. The version changes
+     * every time an item is inserted or dropped, so two calls returning the
+     * same version means the contents didn't change in between.
+     * 
+     * @return The version of the inventory contents
+     */
+    public int getVersion() {
+        return this.version;
+    }
+    
+    /**
+     * Look at an item in the inventory without removing it
+     * 
+     * @param index The index of the item we are looking for.
+     * @return A reference to the item at index. Will be null if item not 
+     * found or the index is invalid
+     */
+    public IItem peekItem(int index) {
+        // Ensure index is valid
+        if(index < this.contents.size() && index >= 0) {
+            return this.contents.get(index);
+        }
+        
+        return null;
     }
     
     /**
@@ -106,12 +269,20 @@ public class Inventory {
      */
     public IItem getItem(int index) {
         IItem item = null;
+        InventoryMetrics metrics = this.metrics;
         
         // Ensure index is valid
-        if(index < this.contents.length && index >= 0) {
+        if(index < this.contents.size() && index >= 0) {
             // retrieve the item
-            item = this.contents[index];
-            this.dropItem(index);
+            long start = metrics == null ? 0 : metrics.start(this.version);
+            item = this.contents.remove(index);
+            this.version++;
+            if(metrics != null) {
+                this.recordDrop(metrics, this.contents.size() - index, start);
+            }
+            this.fireItemDropped(index, item);
+        } else if(metrics != null) {
+            metrics.dropMissed();
         }
         
         // Return the item/null
@@ -128,28 +299,142 @@ public class Inventory {
     public boolean insertItem (IItem item) {
         // Ensure that we haven't exceeded the maximum capacity of our 
         // inventory
-        if(this.numItems >= this.contents.length || item == null) {
+        InventoryMetrics metrics = this.metrics;
+        if(this.contents.size() >= this.contents.capacity() || item == null) {
+            if(metrics != null && item != null) {
+                metrics.insertRejected();
+            }
             return false;
         }
         
-        // Find the appropriate place to insert the item such that the array
-        // remains sorted. The insertion point is either where we find an empty 
-        // (null) slot or where our new item alphabetically comes before 
-        // an item
-        for(int i=0; i<this.contents.length; i++) {
-            // Test
-            if(this.contents[i] == null || 
-                    item.getName().compareTo(this.contents[i].getName()) < 0) {                
-                // Insert
-                this.insertItemAt(item, i);                
-                this.numItems++;
-                break;
-            }
+        // The storage engine takes care of keeping the items sorted
+        long start = metrics == null ? 0 : metrics.start(this.version);
+        int index = this.contents.insert(item);
+        this.version++;
+        if(metrics != null) {
+            this.recordInsert(metrics, this.contents.size() - 1 - index, 
+                    start);
         }
+        this.fireItemInserted(index, item);
         
         return true;
     }
     
+    /**
+     * Insert a batch of items into the inventory. Maintains alphabetical 
+     * sorting by the name of the item. Items are accepted in the order they
+     * are given until the inventory is full, and the accepted items are 
+     * merged into the inventory in one pass.
+     * 
+     * @param items The items that we're adding to the inventory
+     * @return An array holding, for each item in the order given, true if it
+     * was successfully added and false otherwise
+     */
+    public boolean [] insertAll (Collection<? extends IItem> items) {
+        boolean [] added = new boolean[items.size()];
+        IItem [] accepted = new IItem[items.size()];
+        int room = this.contents.capacity() - this.contents.size();
+        int count = 0;
+        int rejected = 0;
+        int i = 0;
+        
+        // Take items until we run out of room. Null items are never added
+        for(IItem item : items) {
+            if(item != null && count < room) {
+                accepted[count++] = item;
+                added[i] = true;
+            } else if(item != null) {
+                rejected++;
+            }
+            i++;
+        }
+        
+        // Sort the accepted items by name. The sort is stable, so items with 
+        // the same name stay in the order they were given
+        Arrays.sort(accepted, 0, count, Inventory.BY_NAME);
+        
+        if(count > 0) {
+            this.version++;
+        }
+        
+        if(this.listeners.length == 0) {
+            this.contents.insertAll(accepted, count);
+        } else {
+            // Listeners need to know where each item went, so insert the
+            // items one at a time
+            for(int j=0; j<count; j++) {
+                int index = this.contents.insert(accepted[j]);
+                this.fireItemInserted(index, accepted[j]);
+            }
+        }
+        
+        if(this.metrics != null) {
+            this.metrics.insertedAll(count, rejected);
+        }
+        
+        return added;
+    }
+    
+    /**
+     * Delete a batch of items from the inventory and maintain the order of 
+     * the elements in the list. Indices refer to the positions of the items
+     * before any of them are deleted.
+     * 
+     * @param indices The indices of the items to be deleted. Invalid and 
+     * repeated indices are ignored
+     * @return The number of items deleted
+     */
+    public int removeAll (int [] indices) {
+        // Sort the indices and throw away any that are invalid or repeated
+        int [] sorted = indices.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for(int index : sorted) {
+            if(index >= 0 && index < this.contents.size() && 
+                    (count == 0 || sorted[count - 1] != index)) {
+                sorted[count++] = index;
+            }
+        }
+        
+        if(count > 0) {
+            this.version++;
+        }
+        
+        if(this.listeners.length == 0) {
+            this.contents.removeAll(sorted, count);
+        } else {
+            // Listeners need to see the inventory as it is after each drop,
+            // so drop the items one at a time. Work from the back so that 
+            // each index is still correct when we get to it
+            for(int i=count-1; i>=0; i--) {
+                IItem item = this.contents.remove(sorted[i]);
+                this.fireItemDropped(sorted[i], item);
+            }
+        }
+        
+        if(this.metrics != null) {
+            this.metrics.droppedAll(count);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Find the index of an item in the inventory by name. Since the contents
+     * are sorted by name a binary search is used to locate the item.
+     * 
+     * @param name The name of the item we are looking for
+     * @return The index of the first item with the given name. Will be -1 if
+     * no such item is found
+     */
+    public int findByName (String name) {
+        if(name == null) {
+            return -1;
+        }
+        
+        return this.contents.indexOf(name);
+    }
+    
     /**
      * Delete an item from the inventory and maintain the order of the elements
      * in the list.
@@ -158,70 +443,235 @@ public class Inventory {
      */
     public boolean dropItem (int index) {
         // Check that the index is valid
-        if(index >= this.contents.length || index < 0 || 
-                this.contents[index] == null) {
+        InventoryMetrics metrics = this.metrics;
+        if(index >= this.contents.size() || index < 0) {
             // Return false on invalid index
+            if(metrics != null) {
+                metrics.dropMissed();
+            }
             return false;
         }
         
-        this.numItems--;
-        
-        // Reorder array items, overwriting the element we want to delete
-        for(int i=index; i<this.contents.length-1; i++) {
-            // Exit early if we've shuffled everything that needs to be moved
-            if(this.contents[i] == null) {
-                return true;
-            }
-            this.contents[i] = this.contents[i+1];            
+        long start = metrics == null ? 0 : metrics.start(this.version);
+        IItem item = this.contents.remove(index);
+        this.version++;
+        if(metrics != null) {
+            this.recordDrop(metrics, this.contents.size() - index, start);
         }
-        
-        // Add null at the very end of the array (basically deal with the case
-        // where the array was completely full and we removed an item.
-        this.contents[this.contents.length-1] = null;
+        this.fireItemDropped(index, item);
         
         // Indicate success
         return true;
     }
     
+    /**
+     * Iterate over the items in the inventory, in order, without removing 
+     * them. The iterator fails if the inventory changes while it is in use.
+     * 
+     * @return An iterator over the items in the inventory
+     */
+    @Override
+    public Iterator<IItem> iterator() {
+        return Spliterators.iterator(this.spliterator());
+    }
+    
+    /**
+     * Create a spliterator over the items in the inventory, in order, 
+     * without removing them. The spliterator is sized and sorted, and splits
+     * evenly by index, so parallel streams work well. It fails if the 
+     * inventory changes while it is in use.
+     * 
+     * @return A spliterator over the items in the inventory
+     */
+    @Override
+    public Spliterator<IItem> spliterator() {
+        return new ItemSpliterator(this, 0, this.contents.size(), 
+                this.version);
+    }
+    
+    /**
+     * Create a stream of the items in the inventory, in order, without 
+     * removing them
+     * 
+     * @return A sequential stream of the items in the inventory
+     */
+    public Stream<IItem> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+    
     /**
      * Print the contents of the inventory to the command line. Will show
      * the string "EMPTY" for slots that haven't been filled
      */
     public void listContents() {
-        // Iterate over inventory contents
-        for(int i=0; i<this.contents.length; i++) {
+        try {
+            Inventory.RENDERER.write(this, System.out);
+        } catch (IOException e) {
+            // PrintStream never throws, but OutputStream says it might
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Count an item being inserted, and tell the metrics if the insert was 
+     * sampled
+     * 
+     * @param metrics The metrics attached to the inventory
+     * @param shift The number of items moved to make room for the item
+     * @param start The value returned by the metrics before the insert
+     */
+    private void recordInsert(InventoryMetrics metrics, int shift, 
+            long start) {
+        this.unreportedInserts++;
+        if(start != 0) {
+            metrics.inserted(this.unreportedInserts, shift, start);
+            this.unreportedInserts = 0;
+        }
+    }
+    
+    /**
+     * Count an item being dropped, and tell the metrics if the drop was 
+     * sampled
+     * 
+     * @param metrics The metrics attached to the inventory
+     * @param shift The number of items moved to close the gap
+     * @param start The value returned by the metrics before the drop
+     */
+    private void recordDrop(InventoryMetrics metrics, int shift, long start) {
+        this.unreportedDrops++;
+        if(start != 0) {
+            metrics.dropped(this.unreportedDrops, shift, start);
+            this.unreportedDrops = 0;
+        }
+    }
+    
+    /**
+     * Tell all listeners that an item was inserted
+     * 
+     * @param index The position at which the item was inserted
+     * @param item The item that was inserted
+     */
+    private void fireItemInserted(int index, IItem item) {
+        for(IInventoryListener listener : this.listeners) {
+            listener.itemInserted(this, index, item);
+        }
+    }
+    
+    /**
+     * Tell all listeners that an item was dropped
+     * 
+     * @param index The position the item was dropped from
+     * @param item The item that was dropped
+     */
+    private void fireItemDropped(int index, IItem item) {
+        for(IInventoryListener listener : this.listeners) {
+            listener.itemDropped(this, index, item);
+        }
+    }
+    
+    /**
+     * A spliterator over a range of slots in an inventory. Items are read 
+     * straight out of the storage engine, so nothing is copied.
+     */
+    private static final class ItemSpliterator implements Spliterator<IItem> {
+        /**
+         * The inventory being traversed
+         */
+        private final Inventory inventory;
+        
+        /**
+         * The index of the next item to visit
+         */
+        private int index;
+        
+        /**
+         * The index just after the last item to visit
+         */
+        private final int fence;
+        
+        /**
+         * The version of the inventory when the spliterator was created
+         */
+        private final int expectedVersion;
+        
+        /**
+         * Constructor for the ItemSpliterator class
+         * 
+         * @param inventory The inventory being traversed
+         * @param origin The index of the first item to visit
+         * @param fence The index just after the last item to visit
+         * @param expectedVersion The version of the inventory
+         */
+        private ItemSpliterator( Inventory inventory, int origin, int fence, 
+                int expectedVersion ) {
+            this.inventory = inventory;
+            this.index = origin;
+            this.fence = fence;
+            this.expectedVersion = expectedVersion;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super IItem> action) {
+            this.checkVersion();
+            if(this.index >= this.fence) {
+                return false;
+            }
+            action.accept(this.inventory.contents.get(this.index++));
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super IItem> action) {
+            // Check before every item, since an action which changes the 
+            // inventory could leave the next index past the end of the 
+            // storage
+            IInventoryStorage contents = this.inventory.contents;
+            while(this.index < this.fence) {
+                this.checkVersion();
+                action.accept(contents.get(this.index++));
+            }
+            this.checkVersion();
+        }
+        
+        @Override
+        public Spliterator<IItem> trySplit() {
+            int mid = (this.index + this.fence) >>> 1;
+            if(mid <= this.index) {
+                return null;
+            }
             
-            // Print the index of the current item
-            System.out.printf("%2d: ",i);
-            // If this slot isn't empty, print the item details
-            if( this.contents[i] != null ) {                
-                System.out.printf("%-7s --> ", this.contents[i].getName());
-                System.out.println(this.contents[i].getDescription());
-            } else {
-                // Print empty if the slot doesn't contain an item
-                System.out.printf("%-7s\n", "EMPTY");
-            }            
-        }
-    }
-    
-    /** 
-     * Inserts an item at the specified index, shuffling other elements down
-     * the array as appropriate.
-     * 
-     * @param item The item to be inserted
-     * @param index The index at which to insert the array
-     */
-    private void insertItemAt(IItem item, int index) {    
-        // Iterate over array contents and shuffle elements down
-        for(int i=index; i<this.contents.length; i++) {
-            // If we find a null item, we can stop early. We're at the end of 
-            // the list of items
-            if ( item == null ) {
-                break;
+            // Hand the first half to the new spliterator
+            Spliterator<IItem> prefix = new ItemSpliterator(this.inventory, 
+                    this.index, mid, this.expectedVersion);
+            this.index = mid;
+            return prefix;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return this.fence - this.index;
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | 
+                    Spliterator.SIZED | Spliterator.SUBSIZED | 
+                    Spliterator.NONNULL;
+        }
+        
+        @Override
+        public Comparator<? super IItem> getComparator() {
+            return Inventory.BY_NAME;
+        }
+        
+        /**
+         * Make sure the inventory hasn't changed since the spliterator was 
+         * created
+         */
+        private void checkVersion() {
+            if(this.inventory.version != this.expectedVersion) {
+                throw new ConcurrentModificationException();
             }
-            IItem temp = this.contents[i];
-            this.contents[i] = item;
-            item = temp;
         }
     }
 }
@@ -0,0 +1,358 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+
+/**
+ * The numeric stats of every item in an inventory, kept up to date as items
+ * are inserted and dropped.
+ * 
+ * Stats are stored column by column rather than item by item: there is one
+ * int array per attribute, plus one array holding the type tag of each item,
+ * all in the same order as the inventory. A query such as "the total weight 
+ * of everything" or "every sword with damage over 10" is then a single loop 
+ * over one or two flat arrays, instead of a virtual call (or several) on 
+ * every item in the inventory.
+ * 
+ * The queries by type are written without branches or long arithmetic, so
+ * that the JIT compiler can turn them into SIMD instructions. Comparisons 
+ * are done with sign bits rather than if statements, type tags are kept as 
+ * ints so every column has the same element width, and totals by type are 
+ * built up from 16-bit halves so they can be added in ints without 
+ * overflowing.
+ * 
+ * Like InventoryIndex, this isn't thread safe. Queries must not run at the
+ * same time as changes to the inventory.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryAttributes implements IInventoryListener {
+    /**
+     * Every attribute, in ordinal order
+     */
+    private static final ItemAttribute [] ATTRIBUTES = ItemAttribute.values();
+    
+    /**
+     * The number of rows allocated when the columns are first needed
+     */
+    private static final int MIN_ALLOCATION = 8;
+    
+    /**
+     * The number of rows added up at a time when totalling a column by type.
+     * Small enough that the sum of that many 16-bit halves fits in an int
+     */
+    private static final int SUM_BLOCK = 1 << 15;
+    
+    /**
+     * The inventory whose stats are being kept
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The value of each attribute for each item, indexed by attribute 
+     * ordinal and then by position in the inventory
+     */
+    private final int [][] columns;
+    
+    /**
+     * The type tag of each item, or 0 for items of an unknown type. Held as
+     * ints to line up with the columns
+     */
+    private int [] tags;
+    
+    /**
+     * The number of items. Rows [0, size) of every column are in use
+     */
+    private int size;
+    
+    /**
+     * Constructor for the InventoryAttributes class. Copies the stats of the
+     * current contents of the inventory, then keeps them up to date as it
+     * changes.
+     * 
+     * @param inventory The inventory whose stats should be kept
+     */
+    public InventoryAttributes( Inventory inventory ) {
+        this.inventory = inventory;
+        this.columns = new int[ATTRIBUTES.length][];
+        this.size = 0;
+        
+        int rows = Math.max(inventory.getNumItems(), MIN_ALLOCATION);
+        for(int a=0; a<this.columns.length; a++) {
+            this.columns[a] = new int[rows];
+        }
+        this.tags = new int[rows];
+        
+        // The inventory is already in order, so rows can simply be appended
+        for(int i=0; i<inventory.getNumItems(); i++) {
+            this.setRow(i, inventory.peekItem(i));
+            this.size++;
+        }
+        
+        inventory.addListener(this);
+    }
+    
+    /**
+     * Stop keeping the stats up to date
+     */
+    public void detach() {
+        this.inventory.removeListener(this);
+    }
+    
+    /**
+     * Get the number of items whose stats are held
+     * 
+     * @return The number of items
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Get one stat of the item at a given position in the inventory
+     * 
+     * @param index The position of the item
+     * @param attribute The stat to get
+     * @return The value of the stat
+     */
+    public int get(int index, ItemAttribute attribute) {
+        if(index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return this.columns[attribute.ordinal()][index];
+    }
+    
+    /**
+     * Add up one stat over every item in the inventory
+     * 
+     * @param attribute The stat to add up
+     * @return The total
+     */
+    public long sum(ItemAttribute attribute) {
+        int [] column = this.columns[attribute.ordinal()];
+        int n = this.size;
+        
+        // Four independent totals so the additions don't wait on each other
+        long a = 0, b = 0, c = 0, d = 0;
+        int i = 0;
+        for(; i<n-3; i+=4) {
+            a += column[i];
+            b += column[i + 1];
+            c += column[i + 2];
+            d += column[i + 3];
+        }
+        for(; i<n; i++) {
+            a += column[i];
+        }
+        
+        return a + b + c + d;
+    }
+    
+    /**
+     * Add up one stat over every item of a given type
+     * 
+     * @param attribute The stat to add up
+     * @param type The type of item to include
+     * @return The total
+     */
+    public long sum(ItemAttribute attribute, ItemType type) {
+        int [] column = this.columns[attribute.ordinal()];
+        int [] types = this.tags;
+        int tag = type.getTag();
+        int n = this.size;
+        
+        long total = 0;
+        for(int start=0; start<n; start+=SUM_BLOCK) {
+            int end = Math.min(n, start + SUM_BLOCK);
+            
+            // Items of other types are masked to 0 rather than skipped. 
+            // (types[i] ^ tag) - 1 is negative only when the tags match
+            int low = 0, high = 0;
+            for(int i=start; i<end; i++) {
+                int value = column[i] & (((types[i] ^ tag) - 1) >> 31);
+                low += value & 0xFFFF;
+                high += value >> 16;
+            }
+            total += ((long)high << 16) + low;
+        }
+        
+        return total;
+    }
+    
+    /**
+     * Find the largest value of a stat over every item in the inventory
+     * 
+     * @param attribute The stat to look at
+     * @return The largest value, or 0 if the inventory is empty
+     */
+    public int max(ItemAttribute attribute) {
+        int [] column = this.columns[attribute.ordinal()];
+        int n = this.size;
+        
+        if(n == 0) {
+            return 0;
+        }
+        
+        int max = column[0];
+        for(int i=1; i<n; i++) {
+            max = Math.max(max, column[i]);
+        }
+        
+        return max;
+    }
+    
+    /**
+     * Count the items of a given type with a stat above a threshold
+     * 
+     * @param type The type of item to look for
+     * @param attribute The stat to test
+     * @param threshold The value the stat must be greater than
+     * @return The number of matching items
+     */
+    public int countAbove(ItemType type, ItemAttribute attribute, 
+            int threshold) {
+        int [] column = this.columns[attribute.ordinal()];
+        int [] types = this.tags;
+        int tag = type.getTag();
+        int n = this.size;
+        
+        // The sign of (types[i] ^ tag) - 1 is set only when the tags match,
+        // and the sign of above only when column[i] > threshold. The 
+        // subtraction is corrected for overflow (Hacker's Delight, 2-12). 
+        // This is written out here rather than in helper methods, as the 
+        // JIT doesn't reliably vectorize the loop once they're called
+        int count = 0;
+        for(int i=0; i<n; i++) {
+            int difference = threshold - column[i];
+            int above = difference ^ 
+                    ((threshold ^ column[i]) & (difference ^ threshold));
+            count += (((types[i] ^ tag) - 1) & above) >>> 31;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Find the items of a given type with a stat above a threshold
+     * 
+     * @param type The type of item to look for
+     * @param attribute The stat to test
+     * @param threshold The value the stat must be greater than
+     * @return The positions in the inventory of the matching items, in 
+     * order. Use Inventory.peekItem to get the items themselves
+     */
+    public int [] indicesAbove(ItemType type, ItemAttribute attribute, 
+            int threshold) {
+        int [] column = this.columns[attribute.ordinal()];
+        int [] types = this.tags;
+        int tag = type.getTag();
+        int n = this.size;
+        
+        // Write every position and only move on past the ones that match, 
+        // so the loop has no branch on the data. Matches are tested the same
+        // way as in countAbove
+        int [] matches = new int[n];
+        int count = 0;
+        for(int i=0; i<n; i++) {
+            matches[count] = i;
+            int difference = threshold - column[i];
+            int above = difference ^ 
+                    ((threshold ^ column[i]) & (difference ^ threshold));
+            count += (((types[i] ^ tag) - 1) & above) >>> 31;
+        }
+        
+        return Arrays.copyOf(matches, count);
+    }
+    
+    /**
+     * Add the stats of an inserted item
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position at which the item was inserted
+     * @param item The item that was inserted
+     */
+    @Override
+    public void itemInserted(Inventory inventory, int index, IItem item) {
+        if(this.size == this.tags.length) {
+            this.grow();
+        }
+        
+        // Open a gap in every column for the new row
+        int moved = this.size - index;
+        for(int [] column : this.columns) {
+            System.arraycopy(column, index, column, index + 1, moved);
+        }
+        System.arraycopy(this.tags, index, this.tags, index + 1, moved);
+        
+        this.setRow(index, item);
+        this.size++;
+    }
+    
+    /**
+     * Remove the stats of a dropped item
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position the item was dropped from
+     * @param item The item that was dropped
+     */
+    @Override
+    public void itemDropped(Inventory inventory, int index, IItem item) {
+        // Close the gap left by the row
+        int moved = this.size - index - 1;
+        for(int [] column : this.columns) {
+            System.arraycopy(column, index + 1, column, index, moved);
+        }
+        System.arraycopy(this.tags, index + 1, this.tags, index, moved);
+        
+        this.size--;
+    }
+    
+    /**
+     * Fill in one row of the columns from an item
+     * 
+     * @param index The row to fill in
+     * @param item The item whose stats go in the row
+     */
+    private void setRow(int index, IItem item) {
+        for(int a=0; a<ATTRIBUTES.length; a++) {
+            this.columns[a][index] = item.getAttribute(ATTRIBUTES[a]);
+        }
+        
+        ItemType type = ItemType.of(item);
+        this.tags[index] = type == null ? 0 : type.getTag();
+    }
+    
+    /**
+     * Double the number of rows allocated in every column
+     */
+    private void grow() {
+        int rows = this.tags.length * 2;
+        for(int a=0; a<this.columns.length; a++) {
+            this.columns[a] = Arrays.copyOf(this.columns[a], rows);
+        }
+        this.tags = Arrays.copyOf(this.tags, rows);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares answering stat queries from InventoryAttributes with answering 
+ * them by looking at every item in the inventory. Two queries are timed: the
+ * total weight of everything, and the number of swords with damage above a
+ * threshold. Reports the average time per query for a range of inventory 
+ * sizes.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryAttributesBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The number of different kinds of item in the inventory
+     */
+    private static final int NUM_DEFINITIONS = 64;
+    
+    /**
+     * Swords must have more damage than this to be counted
+     */
+    private static final int DAMAGE_THRESHOLD = 50;
+    
+    /**
+     * Where query results are published, so the queries can't be optimised 
+     * away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of items to query in total at each size
+     */
+    public static void main(String[] args) {
+        long work = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        
+        System.out.printf("%8s %14s %14s %14s %14s%n", "items", 
+                "weight obj ns", "weight col ns", "swords obj ns", 
+                "swords col ns");
+        for(int size = 100; size <= 100000; size *= 10) {
+            Inventory inventory = fill(size);
+            InventoryAttributes attributes = 
+                    new InventoryAttributes(inventory);
+            int queries = (int)Math.max(1, work / size);
+            
+            double [] best = new double[4];
+            Arrays.fill(best, Double.MAX_VALUE);
+            for(int round=0; round<ROUNDS; round++) {
+                for(int q=0; q<best.length; q++) {
+                    best[q] = Math.min(best[q], 
+                            run(inventory, attributes, q, queries));
+                }
+            }
+            System.out.printf("%8d %14.1f %14.1f %14.1f %14.1f%n", size, 
+                    best[0], best[1], best[2], best[3]);
+            
+            attributes.detach();
+        }
+    }
+    
+    /**
+     * Repeat one of the queries and time it
+     * 
+     * @param inventory The inventory to query
+     * @param attributes The stats of the inventory
+     * @param query 0 and 1 for total weight, 2 and 3 for strong swords. Even
+     * numbers look at the items, odd numbers use the columns
+     * @param queries The number of times to repeat the query
+     * @return The average time per query in nanoseconds
+     */
+    private static double run(Inventory inventory, 
+            InventoryAttributes attributes, int query, int queries) {
+        long result = 0;
+        
+        long begin = System.nanoTime();
+        for(int i=0; i<queries; i++) {
+            switch(query) {
+                case 0:
+                    result += totalWeight(inventory);
+                    break;
+                case 1:
+                    result += attributes.sum(ItemAttribute.WEIGHT);
+                    break;
+                case 2:
+                    result += strongSwords(inventory);
+                    break;
+                default:
+                    result += attributes.countAbove(ItemType.SWORD, 
+                            ItemAttribute.DAMAGE, DAMAGE_THRESHOLD);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        published = result;
+        return (double)elapsed / queries;
+    }
+    
+    /**
+     * Add up the weight of every item by looking at each one
+     * 
+     * @param inventory The inventory
+     * @return The total weight
+     */
+    private static long totalWeight(Inventory inventory) {
+        long total = 0;
+        for(int i=0; i<inventory.getNumItems(); i++) {
+            total += inventory.peekItem(i).getAttribute(ItemAttribute.WEIGHT);
+        }
+        return total;
+    }
+    
+    /**
+     * Count the swords with damage above the threshold by looking at each 
+     * item
+     * 
+     * @param inventory The inventory
+     * @return The number of matching swords
+     */
+    private static long strongSwords(Inventory inventory) {
+        long count = 0;
+        for(int i=0; i<inventory.getNumItems(); i++) {
+            IItem item = inventory.peekItem(i);
+            if(item instanceof Sword && 
+                    item.getAttribute(ItemAttribute.DAMAGE) > 
+                    DAMAGE_THRESHOLD) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Fill an inventory with items picked at random from a set of 
+     * definitions with random stats
+     * 
+     * @param size The number of items
+     * @return The inventory
+     */
+    private static Inventory fill(int size) {
+        Random random = new Random(size);
+        ItemRegistry registry = new ItemRegistry();
+        ItemType [] types = ItemType.values();
+        
+        ItemDefinition [] definitions = new ItemDefinition[NUM_DEFINITIONS];
+        for(int d=0; d<definitions.length; d++) {
+            Map<ItemAttribute, Integer> stats = 
+                    new EnumMap<>(ItemAttribute.class);
+            for(ItemAttribute attribute : ItemAttribute.values()) {
+                stats.put(attribute, random.nextInt(100));
+            }
+            definitions[d] = registry.define(types[d % types.length], 
+                    "Item " + d, "Generated.", stats);
+        }
+        
+        Inventory inventory = new Inventory(size);
+        for(int i=0; i<size; i++) {
+            ItemDefinition definition = 
+                    definitions[random.nextInt(definitions.length)];
+            inventory.insertItem(definition.getType().create(definition));
+        }
+        return inventory;
+    }
+}
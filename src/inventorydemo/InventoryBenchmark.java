@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the sorted array storage, which places items by binary search
+ * and shifts them with System.arraycopy, against the original approach of 
+ * scanning for the insertion point one slot at a time and shifting with a 
+ * loop. Reports the average time per insert or drop and per lookup by name,
+ * for a range of inventory sizes.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of operations to time at each size
+     */
+    public static void main(String[] args) {
+        int numOps = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        
+        System.out.printf("%8s %14s %14s %14s %14s%n", "items", 
+                "linear chg ns", "binary chg ns", "linear find ns", 
+                "binary find ns");
+        for(int size = 1000; size <= 1000000; size *= 10) {
+            double [] best = new double[4];
+            Arrays.fill(best, Double.MAX_VALUE);
+            for(int round=0; round<ROUNDS; round++) {
+                // The linear version is far too slow to run in full at the 
+                // largest sizes, so it gets fewer operations
+                int linearOps = Math.max(100, numOps / (size / 1000));
+                best[0] = Math.min(best[0], changes(
+                        new LinearArrayStorage(size), size, linearOps));
+                best[1] = Math.min(best[1], changes(
+                        new SortedArrayStorage(size), size, numOps));
+                best[2] = Math.min(best[2], finds(
+                        new LinearArrayStorage(size), size, linearOps));
+                best[3] = Math.min(best[3], finds(
+                        new SortedArrayStorage(size), size, numOps));
+            }
+            System.out.printf("%8d %14.1f %14.1f %14.1f %14.1f%n", size, 
+                    best[0], best[1], best[2], best[3]);
+        }
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then drop and insert items at
+     * random
+     * 
+     * @param storage The storage engine to use
+     * @param size The capacity of the inventory
+     * @param numOps The number of changes to make
+     * @return The average time per change in nanoseconds
+     */
+    private static double changes(IInventoryStorage storage, int size, 
+            int numOps) {
+        Random random = new Random(size);
+        Inventory inventory = fill(storage, size / 2, random);
+        
+        long begin = System.nanoTime();
+        for(int i=0; i<numOps; i++) {
+            if((i & 1) == 0) {
+                inventory.dropItem(random.nextInt(inventory.getNumItems()));
+            } else {
+                inventory.insertItem(randomItem(random));
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        published = inventory.getNumItems();
+        return (double)elapsed / numOps;
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then look up items by name at
+     * random
+     * 
+     * @param storage The storage engine to use
+     * @param size The capacity of the inventory
+     * @param numOps The number of lookups to make
+     * @return The average time per lookup in nanoseconds
+     */
+    private static double finds(IInventoryStorage storage, int size, 
+            int numOps) {
+        Random random = new Random(size);
+        Inventory inventory = fill(storage, size / 2, random);
+        String [] names = new String[1024];
+        for(int i=0; i<names.length; i++) {
+            names[i] = "Sword " + random.nextInt(size);
+        }
+        
+        long found = 0;
+        long begin = System.nanoTime();
+        for(int i=0; i<numOps; i++) {
+            found += inventory.findByName(names[i & (names.length - 1)]);
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        published = found;
+        return (double)elapsed / numOps;
+    }
+    
+    /**
+     * Create an inventory and put some random items in it
+     * 
+     * @param storage The storage engine to use
+     * @param count The number of items to put in it
+     * @param random The source of randomness
+     * @return The inventory
+     */
+    private static Inventory fill(IInventoryStorage storage, int count, 
+            Random random) {
+        Inventory inventory = new Inventory(storage);
+        IItem [] items = new IItem[count];
+        for(int i=0; i<count; i++) {
+            items[i] = randomItem(random);
+        }
+        inventory.insertAll(Arrays.asList(items));
+        return inventory;
+    }
+    
+    /**
+     * Create an item with a random name
+     * 
+     * @param random The source of randomness
+     * @return The item
+     */
+    private static IItem randomItem(Random random) {
+        return new Sword("Sword " + random.nextInt(1000000), "Pointy.");
+    }
+    
+    /**
+     * The way Inventory used to store items, kept here for comparison. The 
+     * insertion point is found by comparing names one slot at a time, and 
+     * items are shifted by one slot at a time
+     */
+    private static final class LinearArrayStorage 
+            implements IInventoryStorage {
+        /**
+         * The items. Slots [0, numItems) are occupied and sorted by name
+         */
+        private final IItem [] contents;
+        
+        /**
+         * The number of items stored
+         */
+        private int numItems;
+        
+        /**
+         * Constructor for the LinearArrayStorage class
+         * 
+         * @param capacity The maximum number of items the storage can hold
+         */
+        private LinearArrayStorage( int capacity ) {
+            this.contents = new IItem[capacity];
+            this.numItems = 0;
+        }
+        
+        @Override
+        public int capacity() {
+            return this.contents.length;
+        }
+        
+        @Override
+        public int size() {
+            return this.numItems;
+        }
+        
+        @Override
+        public IItem get(int index) {
+            return this.contents[index];
+        }
+        
+        @Override
+        public int insert(IItem item) {
+            int i = 0;
+            while(i < this.numItems && 
+                    item.getName().compareTo(this.contents[i].getName()) >= 0) {
+                i++;
+            }
+            for(int j=this.numItems; j>i; j--) {
+                this.contents[j] = this.contents[j - 1];
+            }
+            this.contents[i] = item;
+            this.numItems++;
+            return i;
+        }
+        
+        @Override
+        public void insertAll(IItem [] items, int count) {
+            // Only used to fill the inventory before timing starts, so this
+            // doesn't need to be the original algorithm. Merge from the back
+            int i = this.numItems - 1;
+            int j = count - 1;
+            int k = this.numItems + count - 1;
+            while(j >= 0) {
+                if(i >= 0 && this.contents[i].getName()
+                        .compareTo(items[j].getName()) > 0) {
+                    this.contents[k--] = this.contents[i--];
+                } else {
+                    this.contents[k--] = items[j--];
+                }
+            }
+            this.numItems += count;
+        }
+        
+        @Override
+        public IItem remove(int index) {
+            IItem item = this.contents[index];
+            for(int i=index; i<this.numItems-1; i++) {
+                this.contents[i] = this.contents[i + 1];
+            }
+            this.contents[--this.numItems] = null;
+            return item;
+        }
+        
+        @Override
+        public int indexOf(String name) {
+            for(int i=0; i<this.numItems; i++) {
+                if(this.contents[i].getName().equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes every change to an inventory as an event, for other parts of the
+ * game to read on their own threads. The events only describe what changed,
+ * so readers can keep up with an inventory without copying it.
+ * 
+ * Events are kept in a ring buffer of fixed size, written by the thread 
+ * changing the inventory and read by any number of subscribers. Each event 
+ * is written straight into a slot set aside when the feed was created, so 
+ * publishing never allocates or locks. Subscribers read every event that 
+ * has arrived since they last looked in one go, and only then mark them as 
+ * read. If the slowest subscriber falls a whole buffer behind, the writer 
+ * waits for it to catch up rather than overwrite events it hasn't read.
+ * 
+ * Only one thread may change the inventories feeding events in at a time,
+ * as usual for an Inventory. Subscribers may poll from any thread.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryChangeFeed implements IInventoryListener {
+    /**
+     * Marks an event as an insert
+     */
+    private static final byte INSERT = 0;
+    
+    /**
+     * Marks an event as a drop
+     */
+    private static final byte DROP = 1;
+    
+    /**
+     * The number of times the writer spins while waiting for a subscriber, 
+     * before it starts to sleep between checks
+     */
+    private static final int SPIN_LIMIT = 1000;
+    
+    /**
+     * Used to find the slot for a sequence number. The buffer size is a 
+     * power of two, so this is the size less one
+     */
+    private final int mask;
+    
+    /**
+     * The kind of each event, INSERT or DROP
+     */
+    private final byte [] kinds;
+    
+    /**
+     * The inventory each event happened to
+     */
+    private final Inventory [] inventories;
+    
+    /**
+     * The index each event happened at
+     */
+    private final int [] indices;
+    
+    /**
+     * The end of the range of indices affected by each event
+     */
+    private final int [] ends;
+    
+    /**
+     * The item inserted or dropped by each event
+     */
+    private final IItem [] items;
+    
+    /**
+     * The sequence number of the next event to be written. Only used by the
+     * writer
+     */
+    private long next;
+    
+    /**
+     * The sequence number of the event after the last one published. 
+     * Subscribers may read every event before it
+     */
+    private final AtomicLong published;
+    
+    /**
+     * The lowest position any subscriber had reached, last time the writer
+     * looked. Saves looking at every subscriber for every event
+     */
+    private long slowest;
+    
+    /**
+     * The subscribers reading from the feed
+     */
+    private volatile Subscription [] subscriptions;
+    
+    /**
+     * The inventories feeding events in
+     */
+    private Inventory [] sources;
+    
+    /**
+     * Constructor for the InventoryChangeFeed class
+     * 
+     * @param bufferSize The number of events the feed can hold before the 
+     * writer has to wait for subscribers. Must be a power of two
+     */
+    public InventoryChangeFeed( int bufferSize ) {
+        if(bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException(
+                    "Buffer size must be a power of two");
+        }
+        
+        this.mask = bufferSize - 1;
+        this.kinds = new byte[bufferSize];
+        this.inventories = new Inventory[bufferSize];
+        this.indices = new int[bufferSize];
+        this.ends = new int[bufferSize];
+        this.items = new IItem[bufferSize];
+        this.next = 0;
+        this.published = new AtomicLong(0);
+        this.slowest = 0;
+        this.subscriptions = new Subscription[0];
+        this.sources = new Inventory[0];
+    }
+    
+    /**
+     * Start publishing the changes made to an inventory
+     * 
+     * @param inventory The inventory to watch
+     */
+    public void attach(Inventory inventory) {
+        inventory.addListener(this);
+        this.sources = Arrays.copyOf(this.sources, this.sources.length + 1);
+        this.sources[this.sources.length - 1] = inventory;
+    }
+    
+    /**
+     * Stop publishing changes from every inventory
+     */
+    public void detach() {
+        for(Inventory inventory : this.sources) {
+            inventory.removeListener(this);
+        }
+        this.sources = new Inventory[0];
+    }
+    
+    /**
+     * Start reading events. The subscriber sees every event published from 
+     * now on
+     * 
+     * @return The subscription, used to read events
+     */
+    public synchronized Subscription subscribe() {
+        Subscription subscription = new Subscription(this, 
+                this.published.get());
+        Subscription [] subscriptions = Arrays.copyOf(this.subscriptions, 
+                this.subscriptions.length + 1);
+        subscriptions[subscriptions.length - 1] = subscription;
+        this.subscriptions = subscriptions;
+        
+        // The writer may have moved on before it could see the new 
+        // subscriber, and reused slots after the position we started from.
+        // Start again from wherever it has got to now
+        subscription.position.set(this.published.get());
+        return subscription;
+    }
+    
+    /**
+     * Get the sequence number the next event will be published with
+     * 
+     * @return The number of events published so far
+     */
+    public long getPublished() {
+        return this.published.get();
+    }
+    
+    @Override
+    public void itemInserted(Inventory inventory, int index, IItem item) {
+        this.publish(INSERT, inventory, index, inventory.getNumItems(), item);
+    }
+    
+    @Override
+    public void itemDropped(Inventory inventory, int index, IItem item) {
+        this.publish(DROP, inventory, index, inventory.getNumItems() + 1, 
+                item);
+    }
+    
+    /**
+     * Write an event into the next slot and make it visible to subscribers
+     * 
+     * @param kind INSERT or DROP
+     * @param inventory The inventory that changed
+     * @param index The index the change happened at
+     * @param end The end of the range of indices affected
+     * @param item The item inserted or dropped
+     */
+    private void publish(byte kind, Inventory inventory, int index, int end,
+            IItem item) {
+        long sequence = this.next;
+        
+        // The slot we want still holds the event from a buffer ago. Make 
+        // sure every subscriber has read it first
+        long wrapPoint = sequence - this.kinds.length;
+        if(wrapPoint >= this.slowest) {
+            this.slowest = this.awaitSubscribers(wrapPoint);
+        }
+        
+        int slot = (int)sequence & this.mask;
+        this.kinds[slot] = kind;
+        this.inventories[slot] = inventory;
+        this.indices[slot] = index;
+        this.ends[slot] = end;
+        this.items[slot] = item;
+        
+        this.next = sequence + 1;
+        
+        // The slot is written before the new position is, so subscribers 
+        // which see the new position will also see the event
+        this.published.lazySet(sequence + 1);
+    }
+    
+    /**
+     * Wait until every subscriber has read past a sequence number
+     * 
+     * @param wrapPoint The sequence number every subscriber must be past
+     * @return The lowest position any subscriber has reached
+     */
+    private long awaitSubscribers(long wrapPoint) {
+        int spins = 0;
+        while(true) {
+            long slowest = this.next;
+            for(Subscription subscription : this.subscriptions) {
+                slowest = Math.min(slowest, subscription.position.get());
+            }
+            if(slowest > wrapPoint) {
+                return slowest;
+            }
+            
+            // Spin for a while in case the subscriber is just about to 
+            // catch up, then back off so it gets a chance to run
+            if(spins < SPIN_LIMIT) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+    
+    /**
+     * Stop a subscriber holding up the writer
+     * 
+     * @param subscription The subscription to remove
+     */
+    private synchronized void unsubscribe(Subscription subscription) {
+        Subscription [] subscriptions = this.subscriptions;
+        for(int i=0; i<subscriptions.length; i++) {
+            if(subscriptions[i] == subscription) {
+                Subscription [] remaining = 
+                        new Subscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, remaining, 0, i);
+                System.arraycopy(subscriptions, i + 1, remaining, i, 
+                        remaining.length - i);
+                this.subscriptions = remaining;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * A subscriber's place in the feed. Should only be used by one thread 
+     * at a time
+     */
+    public static final class Subscription {
+        /**
+         * The feed being read
+         */
+        private final InventoryChangeFeed feed;
+        
+        /**
+         * The sequence number of the next event to read. Read by the writer
+         * to tell which slots it may reuse
+         */
+        private final AtomicLong position;
+        
+        /**
+         * Constructor for the Subscription class
+         * 
+         * @param feed The feed being read
+         * @param position The sequence number of the first event to read
+         */
+        private Subscription( InventoryChangeFeed feed, long position ) {
+            this.feed = feed;
+            this.position = new AtomicLong(position);
+        }
+        
+        /**
+         * Read every event which has arrived since the last poll
+         * 
+         * @param handler Called for each event, in order
+         * @return The number of events read
+         */
+        public int poll(IInventoryChangeHandler handler) {
+            return this.poll(handler, Integer.MAX_VALUE);
+        }
+        
+        /**
+         * Read the events which have arrived since the last poll, up to a 
+         * limit
+         * 
+         * @param handler Called for each event, in order
+         * @param limit The most events to read
+         * @return The number of events read
+         */
+        public int poll(IInventoryChangeHandler handler, int limit) {
+            InventoryChangeFeed feed = this.feed;
+            long start = this.position.get();
+            long end = Math.min(feed.published.get(), start + limit);
+            
+            for(long sequence=start; sequence<end; sequence++) {
+                int slot = (int)sequence & feed.mask;
+                if(feed.kinds[slot] == INSERT) {
+                    handler.itemInserted(feed.inventories[slot], sequence, 
+                            feed.indices[slot], feed.ends[slot], 
+                            feed.items[slot]);
+                } else {
+                    handler.itemDropped(feed.inventories[slot], sequence, 
+                            feed.indices[slot], feed.ends[slot], 
+                            feed.items[slot]);
+                }
+            }
+            
+            // Hand the whole batch of slots back to the writer at once
+            if(end > start) {
+                this.position.lazySet(end);
+            }
+            return (int)(end - start);
+        }
+        
+        /**
+         * Get the number of events published but not yet read
+         * 
+         * @return The number of events waiting
+         */
+        public long backlog() {
+            return this.feed.published.get() - this.position.get();
+        }
+        
+        /**
+         * Stop reading events, so the writer no longer waits for this 
+         * subscriber
+         */
+        public void close() {
+            this.feed.unsubscribe(this);
+        }
+    }
+}
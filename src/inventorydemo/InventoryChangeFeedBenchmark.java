@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how many events an InventoryChangeFeed can carry. One thread 
+ * inserts and drops items as fast as it can, while a number of subscriber 
+ * threads read the events and replay them to keep a count of the items. 
+ * Reports the events per second, and checks that every subscriber ended up
+ * with the right count.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryChangeFeedBenchmark {
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of subscribers, the number of events to 
+     * publish and the buffer size
+     * @throws InterruptedException If interrupted while waiting for the 
+     * subscribers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numSubscribers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int numEvents = args.length > 1 ? Integer.parseInt(args[1]) : 20000000;
+        int bufferSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        
+        Inventory inventory = new Inventory(64);
+        InventoryChangeFeed feed = new InventoryChangeFeed(bufferSize);
+        feed.attach(inventory);
+        
+        AtomicBoolean done = new AtomicBoolean();
+        Thread [] threads = new Thread[numSubscribers];
+        int [][] counts = new int[numSubscribers][1];
+        for(int i=0; i<numSubscribers; i++) {
+            InventoryChangeFeed.Subscription subscription = feed.subscribe();
+            int [] count = counts[i];
+            IInventoryChangeHandler handler = new IInventoryChangeHandler() {
+                @Override
+                public void itemInserted(Inventory inventory, long sequence,
+                        int index, int end, IItem item) {
+                    count[0]++;
+                }
+                
+                @Override
+                public void itemDropped(Inventory inventory, long sequence, 
+                        int index, int end, IItem item) {
+                    count[0]--;
+                }
+            };
+            
+            threads[i] = new Thread(() -> {
+                // Keep reading until the writer has finished and there's 
+                // nothing left
+                while(!done.get() || subscription.backlog() > 0) {
+                    if(subscription.poll(handler) == 0) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        
+        // Fill the inventory half way, then keep dropping and inserting
+        IItem [] items = new IItem[16];
+        for(int i=0; i<items.length; i++) {
+            items[i] = new Sword("Sword " + i, "Pointy.");
+        }
+        long begin = System.nanoTime();
+        for(int i=0; i<numEvents; i++) {
+            if(inventory.getNumItems() < 32 || (i & 1) == 0) {
+                inventory.insertItem(items[i & 15]);
+            } else {
+                inventory.dropItem(i & 31);
+            }
+        }
+        done.set(true);
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        System.out.printf("events: %d in %.2f s (%.0f/s) to %d subscribers%n",
+                feed.getPublished(), elapsed / 1e9, 
+                feed.getPublished() / (elapsed / 1e9), numSubscribers);
+        for(int i=0; i<numSubscribers; i++) {
+            if(counts[i][0] != inventory.getNumItems()) {
+                System.out.printf("subscriber %d counted %d items, not %d%n",
+                        i, counts[i][0], inventory.getNumItems());
+            }
+        }
+    }
+}
@@ -24,7 +24,11 @@
 
 package inventorydemo;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /**
  * Demonstrates the behaviour of the Inventory class
@@ -34,6 +38,18 @@ public class InventoryDemo {
     public static Inventory inventory = new Inventory();
     public static IItem holding = null;
     
+    /**
+     * Reads the user's input. Shared by every prompt so that input typed 
+     * ahead isn't lost
+     */
+    private static final Scanner input = new Scanner(System.in);
+    
+    /**
+     * Remembers the rendered inventory, so it is only formatted again after
+     * it changes
+     */
+    private static final RenderCache renderCache = new RenderCache(256, 16);
+    
     /**
      * Create a new item and put it in the inventory
      */
@@ -47,8 +63,6 @@ public class InventoryDemo {
         System.out.println("3: Potion");
         
         // Get user selection
-        Scanner input = new Scanner(System.in);
-        
         // Validate
         if(input.hasNextInt()) {
             int idx = input.nextInt();
@@ -112,8 +126,6 @@ public class InventoryDemo {
             System.out.print(
                     "Enter the index of the item you'd like to take: ");
             
-            Scanner input = new Scanner(System.in);
-            
             if(input.hasNextInt()) {
                 int index = input.nextInt();
                 holding = inventory.getItem(index);
@@ -133,9 +145,11 @@ public class InventoryDemo {
         if(holding == null) {
             System.out.println("You're not holding anything that can be put in "
                     + "the inventory.");
-        } else {
-            inventory.insertItem(holding);
+        } else if(inventory.insertItem(holding)) {
             holding = null;
+        } else {
+            // Keep hold of the item rather than lose it
+            System.out.println("The inventory is full.");
         }        
     }
     
@@ -151,13 +165,60 @@ public class InventoryDemo {
         }        
     }
     
+    /**
+     * Print the contents of the inventory, one page at a time
+     * 
+     * @throws IOException If writing to the command line fails
+     */
+    public static void displayContents() throws IOException {
+        WritableByteChannel out = Channels.newChannel(System.out);
+        for(int page=0; page<renderCache.getNumPages(inventory); page++) {
+            out.write(renderCache.page(inventory, page));
+        }
+        System.out.flush();
+    }
+    
     /**
      * Main function. Kick off the demonstration
+     * 
+     * Run with "--server [port]" to serve the same commands over a socket
+     * instead, with a separate inventory for each connection. See 
+     * InventoryServer for the protocol. Run with "--nio-server [port]" to 
+     * serve the binary protocol described in InventoryNioServer, with metrics
+     * for all sessions published over JMX.
+     * 
      * @param args the command line arguments
+     * @throws IOException If the server socket can't be opened
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         char action;
         
+        if(args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? 
+                    Integer.parseInt(args[1]) : InventoryServer.DEFAULT_PORT;
+            try(InventoryServer server = new InventoryServer(port)) {
+                System.out.println("Serving on port " + server.getPort());
+                server.serve();
+            }
+            return;
+        }
+        
+        if(args.length > 0 && args[0].equals("--nio-server")) {
+            int port = args.length > 1 ? 
+                    Integer.parseInt(args[1]) : InventoryNioServer.DEFAULT_PORT;
+            try(InventoryNioServer server = new InventoryNioServer(port)) {
+                try {
+                    server.getMetrics().register("server");
+                } catch(JMException e) {
+                    System.out.println("Metrics unavailable: " + 
+                            e.getMessage());
+                }
+                System.out.println("Serving on port " + server.getPort());
+                server.serve();
+            }
+            return;
+        }
+        
         do {
             // Display interface
             System.out.println("\nHAND:");
@@ -165,7 +226,7 @@ public class InventoryDemo {
             displayHolding();
             System.out.println("\nINVENTORY: " + inventory.getNumItems()+"/"+inventory.getMaxCapacity());
             System.out.println("---------");
-            inventory.listContents();
+            displayContents();
             
             System.out.println("\nWhat would you like to do?");
             System.out.println("\tc: Create new Item");
@@ -174,9 +235,6 @@ public class InventoryDemo {
             System.out.println("\td: Drop current Item");
             System.out.println("\tq: Quit the program");
             
-            // Create a scanner to read user input
-            Scanner input = new Scanner(System.in);
-            
             // Get command from the user
             if (input.hasNext()) {
                 action = input.nextLine().charAt(0);                
@@ -0,0 +1,467 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary indexes over the contents of an inventory, kept up to date as 
+ * items are inserted and dropped. 
+ * 
+ * Items are indexed by their concrete class, so all of the Potions (say) in
+ * an inventory can be found without looking at any other item. Each class 
+ * keeps its items sorted by name, in the same order they appear in the 
+ * inventory, in a chunked list so that an item can be added or removed at 
+ * any position in logarithmic time.
+ * 
+ * Items with the same name sit in the inventory in the order they arrived. 
+ * Each item is tagged with the order it arrived in, and a copy of the 
+ * inventory's order is kept alongside the indexes, so when an item is 
+ * dropped we can tell exactly which of the items with its name it was 
+ * without looking at the others.
+ * 
+ * Because the inventory itself is sorted by name, all of the items whose 
+ * names start with a given prefix sit next to each other. Prefix queries 
+ * simply binary search for the ends of that run, so they don't need an index
+ * of their own.
+ * 
+ * Queries return read-only views rather than copies. A view reflects the 
+ * inventory at the time of the query and shouldn't be used after the 
+ * inventory changes.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryIndex implements IInventoryListener {
+    /**
+     * The inventory being indexed
+     */
+    private final Inventory inventory;
+    
+    /**
+     * Every item in the inventory, in the same order as the inventory
+     */
+    private final ChunkedListStorage all;
+    
+    /**
+     * The items of each class in the inventory, sorted by name and then by
+     * the order they arrived in
+     */
+    private final Map<Class<?>, ChunkedListStorage> byType;
+    
+    /**
+     * The order in which the next item to arrive arrived
+     */
+    private long nextSequence;
+    
+    /**
+     * Constructor for the InventoryIndex class. Indexes the current contents
+     * of the inventory, then keeps the indexes up to date as it changes.
+     * 
+     * @param inventory The inventory to index
+     */
+    public InventoryIndex( Inventory inventory ) {
+        this.inventory = inventory;
+        this.all = new ChunkedListStorage(Integer.MAX_VALUE);
+        this.byType = new HashMap<>();
+        this.nextSequence = 0;
+        
+        // The inventory is already sorted, so items simply go on the end
+        for(int i=0; i<inventory.getNumItems(); i++) {
+            this.add(inventory.peekItem(i));
+        }
+        
+        inventory.addListener(this);
+    }
+    
+    /**
+     * Stop keeping the indexes up to date
+     */
+    public void detach() {
+        this.inventory.removeListener(this);
+    }
+    
+    /**
+     * Get all of the items of a given class in the inventory
+     * 
+     * @param type The class of item to look for
+     * @return A view of the items of that class, sorted by name
+     */
+    public List<IItem> itemsOfType(Class<? extends IItem> type) {
+        ChunkedListStorage items = this.byType.get(type);
+        if(items == null) {
+            return Collections.emptyList();
+        }
+        return new TypeView(items, 0, items.size());
+    }
+    
+    /**
+     * Get the number of items of a given class in the inventory
+     * 
+     * @param type The class of item to count
+     * @return The number of items of that class
+     */
+    public int countOfType(Class<? extends IItem> type) {
+        ChunkedListStorage items = this.byType.get(type);
+        return items == null ? 0 : items.size();
+    }
+    
+    /**
+     * Get all of the items of a given class in the inventory whose names 
+     * start with a prefix
+     * 
+     * @param type The class of item to look for
+     * @param prefix The start of the names to look for
+     * @return A view of the matching items, sorted by name
+     */
+    public List<IItem> itemsOfType(Class<? extends IItem> type, 
+            String prefix) {
+        List<IItem> items = this.itemsOfType(type);
+        int low = prefixStart(items, prefix);
+        int high = prefixEnd(items, prefix, low);
+        return items.subList(low, high);
+    }
+    
+    /**
+     * Get all of the items in the inventory whose names start with a prefix
+     * 
+     * @param prefix The start of the names to look for
+     * @return A view of the matching items, sorted by name
+     */
+    public List<IItem> itemsWithPrefix(String prefix) {
+        List<IItem> items = new InventoryView(this.inventory, 0, 
+                this.inventory.getNumItems());
+        int low = prefixStart(items, prefix);
+        int high = prefixEnd(items, prefix, low);
+        return new InventoryView(this.inventory, low, high);
+    }
+    
+    /**
+     * Get the index in the inventory of the first item whose name starts with
+     * a prefix
+     * 
+     * @param prefix The start of the names to look for
+     * @return The index of the first matching item, or -1 if there are none
+     */
+    public int indexOfPrefix(String prefix) {
+        List<IItem> items = new InventoryView(this.inventory, 0, 
+                this.inventory.getNumItems());
+        int low = prefixStart(items, prefix);
+        if(low < items.size() && items.get(low).getName().startsWith(prefix)) {
+            return low;
+        }
+        return -1;
+    }
+    
+    /**
+     * Add an inserted item to the indexes
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position at which the item was inserted
+     * @param item The item that was inserted
+     */
+    @Override
+    public void itemInserted(Inventory inventory, int index, IItem item) {
+        // The inventory puts new items after any with the same name, and so
+        // do the chunked lists, so the item lands at the same index
+        this.add(item);
+    }
+    
+    /**
+     * Remove a dropped item from the indexes
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position the item was dropped from
+     * @param item The item that was dropped
+     */
+    @Override
+    public void itemDropped(Inventory inventory, int index, IItem item) {
+        // Some storage engines hand back a copy of a stored item rather than
+        // the item itself, so the copy of the inventory's order tells us 
+        // which item went
+        Entry entry = (Entry)this.all.remove(index);
+        ChunkedListStorage items = this.byType.get(entry.item.getClass());
+        items.remove(sequencePosition(items, entry));
+    }
+    
+    /**
+     * Add an item to the copy of the inventory's order and to the items of 
+     * its class, after any items with the same name
+     * 
+     * @param item The item to add
+     */
+    private void add(IItem item) {
+        Entry entry = new Entry(item, this.nextSequence++);
+        this.all.insert(entry);
+        
+        ChunkedListStorage items = this.byType.get(item.getClass());
+        if(items == null) {
+            items = new ChunkedListStorage(Integer.MAX_VALUE);
+            this.byType.put(item.getClass(), items);
+        }
+        items.insert(entry);
+    }
+    
+    /**
+     * Find an entry in the items of its class. Items with the same name are
+     * in the order they arrived in, so we can binary search on that order
+     * 
+     * @param items The items of the same class as the entry
+     * @param entry The entry to find
+     * @return The index of the entry in items
+     */
+    private static int sequencePosition(ChunkedListStorage items, 
+            Entry entry) {
+        String name = entry.getName();
+        int low = items.indexOf(name);
+        int high = items.size();
+        
+        // Find the first item which either has a later name or arrived no 
+        // earlier than the entry
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            Entry other = (Entry)items.get(mid);
+            if(other.getName().equals(name) && 
+                    other.sequence < entry.sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Find the first item in a sorted list whose name is not less than a 
+     * prefix. This is where the items starting with the prefix begin.
+     * 
+     * @param items The items, sorted by name
+     * @param prefix The prefix
+     * @return The index of the first item with a name >= prefix
+     */
+    private static int prefixStart(List<IItem> items, String prefix) {
+        int low = 0;
+        int high = items.size();
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(items.get(mid).getName().compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Find the first item in a sorted list, at or after the start of the 
+     * items starting with a prefix, whose name doesn't start with it
+     * 
+     * @param items The items, sorted by name
+     * @param prefix The prefix
+     * @param start The index of the first item with a name >= prefix
+     * @return The index just after the last item whose name starts with 
+     * prefix
+     */
+    private static int prefixEnd(List<IItem> items, String prefix, 
+            int start) {
+        int low = start;
+        int high = items.size();
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(items.get(mid).getName().startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * An item in the index, tagged with the order in which it arrived
+     */
+    private static final class Entry implements IItem {
+        /**
+         * The item
+         */
+        private final IItem item;
+        
+        /**
+         * The order in which the item arrived
+         */
+        private final long sequence;
+        
+        /**
+         * Constructor for the Entry class
+         * 
+         * @param item The item
+         * @param sequence The order in which the item arrived
+         */
+        private Entry( IItem item, long sequence ) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public String getName() {
+            return this.item.getName();
+        }
+        
+        @Override
+        public String getDescription() {
+            return this.item.getDescription();
+        }
+    }
+    
+    /**
+     * A read-only view of a run of the items of one class
+     */
+    private static final class TypeView extends AbstractList<IItem> {
+        /**
+         * The entries for the items of the class
+         */
+        private final ChunkedListStorage items;
+        
+        /**
+         * The index of the first item in the view
+         */
+        private final int start;
+        
+        /**
+         * The index just after the last item in the view
+         */
+        private final int end;
+        
+        /**
+         * Constructor for the TypeView class
+         * 
+         * @param items The entries for the items of the class
+         * @param start The index of the first item in the view
+         * @param end The index just after the last item in the view
+         */
+        private TypeView( ChunkedListStorage items, int start, int end ) {
+            this.items = items;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public IItem get(int index) {
+            if(index < 0 || index >= this.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return ((Entry)this.items.get(this.start + index)).item;
+        }
+        
+        @Override
+        public int size() {
+            return this.end - this.start;
+        }
+        
+        @Override
+        public Iterator<IItem> iterator() {
+            // Walk the chunks rather than looking up each index in turn
+            Iterator<IItem> entries = this.items.iterator(this.start, 
+                    this.end);
+            return new Iterator<IItem>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+                
+                @Override
+                public IItem next() {
+                    return ((Entry)entries.next()).item;
+                }
+            };
+        }
+        
+        @Override
+        public List<IItem> subList(int from, int to) {
+            if(from < 0 || to > this.size() || from > to) {
+                throw new IndexOutOfBoundsException(
+                        "From: " + from + ", to: " + to);
+            }
+            return new TypeView(this.items, this.start + from, 
+                    this.start + to);
+        }
+    }
+    
+    /**
+     * A read-only view of a run of items in an inventory
+     */
+    private static final class InventoryView extends AbstractList<IItem> {
+        /**
+         * The inventory being viewed
+         */
+        private final Inventory inventory;
+        
+        /**
+         * The index of the first item in the view
+         */
+        private final int start;
+        
+        /**
+         * The index just after the last item in the view
+         */
+        private final int end;
+        
+        /**
+         * Constructor for the InventoryView class
+         * 
+         * @param inventory The inventory being viewed
+         * @param start The index of the first item in the view
+         * @param end The index just after the last item in the view
+         */
+        private InventoryView( Inventory inventory, int start, int end ) {
+            this.inventory = inventory;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public IItem get(int index) {
+            if(index < 0 || index >= this.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return this.inventory.peekItem(this.start + index);
+        }
+        
+        @Override
+        public int size() {
+            return this.end - this.start;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures what an InventoryIndex costs to keep up to date and what it saves
+ * on queries. Reports the average time per insert or drop with and without 
+ * an index attached, and the time to find all of the items of one class, 
+ * and of one class with a name prefix, by scanning the inventory and by 
+ * asking the index. Each size is run with mostly distinct names and with 
+ * only a hundred names, so that there are many items sharing each name.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryIndexBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The number of distinct names used when names are shared
+     */
+    private static final int SHARED_NAMES = 100;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of changes to time at each size
+     */
+    public static void main(String[] args) {
+        int numOps = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        
+        System.out.printf("%8s %6s %10s %10s %12s %12s %12s %12s%n", 
+                "items", "names", "plain ns", "indexed ns", "scan type us",
+                "index type us", "scan pfx us", "index pfx us");
+        for(int size = 10000; size <= 1000000; size *= 10) {
+            for(int names : new int [] {size, SHARED_NAMES}) {
+                double [] best = new double[6];
+                Arrays.fill(best, Double.MAX_VALUE);
+                for(int round=0; round<ROUNDS; round++) {
+                    best[0] = Math.min(best[0], 
+                            changes(size, names, numOps, false));
+                    best[1] = Math.min(best[1], 
+                            changes(size, names, numOps, true));
+                    double [] queries = queries(size, names);
+                    for(int i=0; i<4; i++) {
+                        best[2 + i] = Math.min(best[2 + i], queries[i]);
+                    }
+                }
+                System.out.printf(
+                        "%8d %6d %10.1f %10.1f %12.1f %12.1f %12.1f %12.1f%n",
+                        size, names, best[0], best[1], best[2], best[3], 
+                        best[4], best[5]);
+            }
+        }
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then drop and insert items at
+     * random
+     * 
+     * @param size The capacity of the inventory
+     * @param names The number of distinct names to use
+     * @param numOps The number of changes to make
+     * @param indexed True to keep an index up to date while changing
+     * @return The average time per change in nanoseconds
+     */
+    private static double changes(int size, int names, int numOps, 
+            boolean indexed) {
+        Random random = new Random(size);
+        Inventory inventory = fill(size, names, random);
+        InventoryIndex index = indexed ? new InventoryIndex(inventory) : null;
+        
+        long begin = System.nanoTime();
+        for(int i=0; i<numOps; i++) {
+            if((i & 1) == 0) {
+                inventory.dropItem(random.nextInt(inventory.getNumItems()));
+            } else {
+                inventory.insertItem(randomItem(random, names));
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        if(index != null) {
+            index.detach();
+        }
+        published = inventory.getNumItems();
+        return (double)elapsed / numOps;
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then find all of its Potions 
+     * and all of its Potions with a name prefix, both by scanning and 
+     * through an index
+     * 
+     * @param size The capacity of the inventory
+     * @param names The number of distinct names to use
+     * @return The time taken by a scan for Potions, the index for Potions, a
+     * scan for the prefix and the index for the prefix, in microseconds
+     */
+    private static double [] queries(int size, int names) {
+        Random random = new Random(size);
+        Inventory inventory = fill(size, names, random);
+        InventoryIndex index = new InventoryIndex(inventory);
+        String prefix = "Item 1";
+        double [] times = new double[4];
+        long found = 0;
+        
+        long begin = System.nanoTime();
+        for(IItem item : inventory) {
+            if(item.getClass() == Potion.class) {
+                found += item.getName().length();
+            }
+        }
+        times[0] = (System.nanoTime() - begin) / 1e3;
+        
+        begin = System.nanoTime();
+        for(IItem item : index.itemsOfType(Potion.class)) {
+            found += item.getName().length();
+        }
+        times[1] = (System.nanoTime() - begin) / 1e3;
+        
+        begin = System.nanoTime();
+        for(IItem item : inventory) {
+            if(item.getClass() == Potion.class && 
+                    item.getName().startsWith(prefix)) {
+                found += item.getName().length();
+            }
+        }
+        times[2] = (System.nanoTime() - begin) / 1e3;
+        
+        begin = System.nanoTime();
+        List<IItem> matches = index.itemsOfType(Potion.class, prefix);
+        for(IItem item : matches) {
+            found += item.getName().length();
+        }
+        times[3] = (System.nanoTime() - begin) / 1e3;
+        
+        index.detach();
+        published = found;
+        return times;
+    }
+    
+    /**
+     * Create an inventory and fill it to half its capacity with random items
+     * 
+     * @param size The capacity of the inventory
+     * @param names The number of distinct names to use
+     * @param random Used to choose the items
+     * @return The inventory
+     */
+    private static Inventory fill(int size, int names, Random random) {
+        Inventory inventory = new Inventory(size);
+        IItem [] items = new IItem[size / 2];
+        for(int i=0; i<items.length; i++) {
+            items[i] = randomItem(random, names);
+        }
+        inventory.insertAll(Arrays.asList(items));
+        return inventory;
+    }
+    
+    /**
+     * Make a random Sword, Shield or Potion
+     * 
+     * @param random Used to choose the item
+     * @param names The number of distinct names to use
+     * @return The item
+     */
+    private static IItem randomItem(Random random, int names) {
+        String name = "Item " + random.nextInt(names);
+        switch(random.nextInt(3)) {
+            case 0:
+                return new Sword(name, "A sword");
+            case 1:
+                return new Shield(name, "A shield");
+            default:
+                return new Potion(name, "A potion");
+        }
+    }
+}
@@ -0,0 +1,781 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal which saves changes to an inventory as they happen.
+ * Rather than writing out the whole inventory after every change, each 
+ * insert and drop is appended to the journal as a small record. When the 
+ * journal grows past a size limit it is compacted: the whole inventory is 
+ * written out as a snapshot and the journal starts again from empty.
+ * 
+ * Changes must be made through the journal rather than on the inventory 
+ * directly. The record for a change is written before the inventory is 
+ * touched, so if writing fails the inventory is left as it was and the 
+ * change is reported as an IOException. After a failed write the journal 
+ * refuses any more changes, since it can't be sure what made it to disk. 
+ * Reopening the journal recovers whatever was saved.
+ * 
+ * Records are collected in a buffer and written and synced to disk in 
+ * groups. The number of records per sync can be chosen: syncing after every
+ * record is safest, while syncing less often gives much better write 
+ * throughput at the cost of losing the last few changes in a crash.
+ * 
+ * All files live in a single directory. The journal file starts with the 
+ * generation of the snapshot it applies to, and each snapshot file is named
+ * after its generation. A crash part way through compaction therefore 
+ * leaves either the old snapshot and journal or the new ones in use, never a
+ * mix of the two. A crash part way through writing a record leaves a 
+ * partial record at the end of the journal. Each record carries a checksum, 
+ * and anything after the last complete record is thrown away on recovery.
+ * A complete record which can't be applied means the journal is corrupt, and
+ * recovery fails rather than carrying on with the wrong contents.
+ * 
+ * Each record is laid out as follows, with all numbers big-endian:
+ * <pre>
+ * int     length of the payload
+ * byte[]  payload
+ * int     CRC32 checksum of the payload
+ * 
+ * insert payload:
+ *     byte    INSERT
+ *     byte    item type tag
+ *     int     length of the name in bytes, followed by the name as UTF-8
+ *     int     length of the description in bytes, followed by the 
+ *             description as UTF-8
+ * 
+ * drop payload:
+ *     byte    DROP
+ *     int     index of the dropped item
+ * </pre>
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryJournal implements Closeable {
+    /**
+     * Identifies a file as an inventory journal
+     */
+    private static final int MAGIC = 0x494e564a;
+    
+    /**
+     * The size of the journal header in bytes
+     */
+    private static final int HEADER_SIZE = 12;
+    
+    /**
+     * The size of a record's length and checksum in bytes
+     */
+    private static final int RECORD_OVERHEAD = 8;
+    
+    /**
+     * Marks a record for an inserted item
+     */
+    private static final byte INSERT = 1;
+    
+    /**
+     * Marks a record for a dropped item
+     */
+    private static final byte DROP = 2;
+    
+    /**
+     * The size of the buffer used to collect records before they are written
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The name of the journal file
+     */
+    private static final String JOURNAL_FILE = "journal";
+    
+    /**
+     * The prefix of the name of each snapshot file
+     */
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    
+    /**
+     * The directory holding the journal and snapshots
+     */
+    private final Path directory;
+    
+    /**
+     * The inventory whose changes are being saved
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The number of records to collect before syncing them to disk. If zero,
+     * records are only synced when sync or close is called
+     */
+    private final int syncEvery;
+    
+    /**
+     * The size in bytes the journal may grow to before it is compacted. If
+     * zero, the journal is only compacted when compact is called
+     */
+    private final long compactThreshold;
+    
+    /**
+     * Records which haven't been written to the journal yet
+     */
+    private final ByteBuffer buffer;
+    
+    /**
+     * Used to work out record checksums
+     */
+    private final CRC32 checksum;
+    
+    /**
+     * The open journal file
+     */
+    private FileChannel channel;
+    
+    /**
+     * The generation of the snapshot the journal applies to
+     */
+    private long generation;
+    
+    /**
+     * The number of records added since the journal was last synced
+     */
+    private int unsynced;
+    
+    /**
+     * The position in its buffer of the record currently being written
+     */
+    private int recordStart;
+    
+    /**
+     * Why writing to the journal failed, or null if it hasn't
+     */
+    private IOException failure;
+    
+    /**
+     * Constructor for the InventoryJournal class. Use open to recover an 
+     * inventory and start a journal for it.
+     * 
+     * @param directory The directory holding the journal and snapshots
+     * @param inventory The inventory whose changes are being saved
+     * @param channel The open journal file
+     * @param generation The generation of the snapshot the journal applies to
+     * @param syncEvery The number of records to collect before syncing
+     * @param compactThreshold The size the journal may grow to before it is
+     * compacted
+     */
+    private InventoryJournal( Path directory, Inventory inventory, 
+            FileChannel channel, long generation, int syncEvery, 
+            long compactThreshold ) {
+        this.directory = directory;
+        this.inventory = inventory;
+        this.channel = channel;
+        this.generation = generation;
+        this.syncEvery = syncEvery;
+        this.compactThreshold = compactThreshold;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.checksum = new CRC32();
+        this.unsynced = 0;
+        this.failure = null;
+    }
+    
+    /**
+     * Recover an inventory from a journal directory and start saving its 
+     * changes. The inventory is kept in a sorted array.
+     * 
+     * @param directory The directory holding the journal and snapshots. It
+     * must already exist
+     * @param maxCapacity The capacity of the inventory if a new one has to be
+     * created
+     * @param syncEvery The number of records to collect before syncing them
+     * to disk. 1 syncs every change, 0 only syncs when sync or close is 
+     * called
+     * @param compactThreshold The size in bytes the journal may grow to 
+     * before it is compacted, or 0 to only compact when compact is called
+     * @return The journal. Use getInventory to get the recovered inventory
+     * @throws IOException If reading or writing the files fails, or they are
+     * corrupt
+     */
+    public static InventoryJournal open(Path directory, int maxCapacity, 
+            int syncEvery, long compactThreshold) throws IOException {
+        return open(directory, maxCapacity, SortedArrayStorage::new, 
+                syncEvery, compactThreshold);
+    }
+    
+    /**
+     * Recover an inventory from a journal directory and start saving its 
+     * changes. The latest snapshot is loaded and then every complete record
+     * in the journal is replayed on top of it. If the directory holds no 
+     * journal yet, a new empty inventory is created.
+     * 
+     * @param directory The directory holding the journal and snapshots. It
+     * must already exist
+     * @param maxCapacity The capacity of the inventory if a new one has to be
+     * created
+     * @param storage Creates storage for the inventory given its capacity,
+     * both when recovering and when starting afresh
+     * @param syncEvery The number of records to collect before syncing them
+     * to disk. 1 syncs every change, 0 only syncs when sync or close is 
+     * called
+     * @param compactThreshold The size in bytes the journal may grow to 
+     * before it is compacted, or 0 to only compact when compact is called
+     * @return The journal. Use getInventory to get the recovered inventory
+     * @throws IOException If reading or writing the files fails, or they are
+     * corrupt
+     */
+    public static InventoryJournal open(Path directory, int maxCapacity, 
+            IntFunction<? extends IInventoryStorage> storage, int syncEvery, 
+            long compactThreshold) throws IOException {
+        Path journalFile = directory.resolve(JOURNAL_FILE);
+        
+        // Start a new journal if there isn't one
+        if(!Files.exists(journalFile)) {
+            writeEmptyJournal(directory, 0).close();
+        }
+        
+        FileChannel channel = FileChannel.open(journalFile, 
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        try {
+            // Read the generation of the snapshot this journal applies to
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is full or the file ends
+            }
+            header.flip();
+            if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not an inventory journal: " 
+                        + journalFile);
+            }
+            long generation = header.getLong();
+            
+            // Load the snapshot. Only a journal which has never been 
+            // compacted starts from an empty inventory
+            Inventory inventory;
+            Path snapshotFile = snapshotFile(directory, generation);
+            if(generation > 0) {
+                if(!Files.exists(snapshotFile)) {
+                    throw new IOException("Missing snapshot for journal: " 
+                            + snapshotFile);
+                }
+                try(InventorySnapshot snapshot = 
+                        InventorySnapshot.open(snapshotFile)) {
+                    inventory = snapshot.load(0, storage);
+                }
+            } else {
+                inventory = new Inventory(storage.apply(maxCapacity));
+            }
+            
+            // Replay the journal and throw away any partial record at the 
+            // end of it
+            long end = replay(channel, inventory);
+            channel.truncate(end);
+            channel.position(end);
+            channel.force(false);
+            
+            return new InventoryJournal(directory, inventory, channel, 
+                    generation, syncEvery, compactThreshold);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Get the inventory whose changes are being saved. It can be read 
+     * freely, but changes made to it directly are not saved
+     * 
+     * @return The inventory
+     */
+    public Inventory getInventory() {
+        return this.inventory;
+    }
+    
+    /**
+     * Insert a new item into the inventory, saving the change to the journal
+     * first
+     * 
+     * @param item The item that we're adding to the inventory
+     * @return True if item successfully added, false if the inventory is 
+     * full
+     * @throws IOException If the change can't be saved. The inventory is 
+     * left unchanged
+     * @throws IllegalArgumentException If the item isn't a Sword, Shield or
+     * Potion, which are the only items that can be saved
+     */
+    public boolean insertItem(IItem item) throws IOException {
+        if(item == null || this.inventory.getNumItems() >= 
+                this.inventory.getMaxCapacity()) {
+            return false;
+        }
+        ItemType type = ItemType.of(item);
+        if(type == null) {
+            throw new IllegalArgumentException("Unable to save item of type "
+                    + item.getClass().getName());
+        }
+        this.prepareChange();
+        
+        byte [] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        byte [] description = 
+                item.getDescription().getBytes(StandardCharsets.UTF_8);
+        
+        ByteBuffer record = this.startRecord(
+                2 + 4 + name.length + 4 + description.length);
+        record.put(INSERT);
+        record.put(type.getTag());
+        record.putInt(name.length);
+        record.put(name);
+        record.putInt(description.length);
+        record.put(description);
+        this.finishRecord(record);
+        
+        int before = this.inventory.getNumItems();
+        boolean inserted = false;
+        try {
+            inserted = this.inventory.insertItem(item);
+        } finally {
+            this.checkApplied(before + 1);
+        }
+        return inserted;
+    }
+    
+    /**
+     * Retrieve an item from the inventory, saving the change to the journal 
+     * first. The item is removed from the inventory.
+     * 
+     * @param index The index of the item we are looking for
+     * @return The item at index. Will be null if the index is invalid
+     * @throws IOException If the change can't be saved. The inventory is 
+     * left unchanged
+     */
+    public IItem getItem(int index) throws IOException {
+        if(index < 0 || index >= this.inventory.getNumItems()) {
+            return null;
+        }
+        this.prepareChange();
+        
+        ByteBuffer record = this.startRecord(1 + 4);
+        record.put(DROP);
+        record.putInt(index);
+        this.finishRecord(record);
+        
+        int before = this.inventory.getNumItems();
+        try {
+            return this.inventory.getItem(index);
+        } finally {
+            this.checkApplied(before - 1);
+        }
+    }
+    
+    /**
+     * Delete an item from the inventory, saving the change to the journal 
+     * first
+     * 
+     * @param index The index of the item to be deleted
+     * @return True if the delete succeeded. False if the index is invalid
+     * @throws IOException If the change can't be saved. The inventory is 
+     * left unchanged
+     */
+    public boolean dropItem(int index) throws IOException {
+        return this.getItem(index) != null;
+    }
+    
+    /**
+     * Write any buffered records to the journal and sync it to disk
+     * 
+     * @throws IOException If writing the journal fails
+     */
+    public void sync() throws IOException {
+        this.checkFailure();
+        try {
+            this.flush();
+            this.channel.force(false);
+            this.unsynced = 0;
+        } catch(IOException e) {
+            throw this.fail(e);
+        }
+    }
+    
+    /**
+     * Write the whole inventory out as a new snapshot and start the journal 
+     * again from empty
+     * 
+     * @throws IOException If writing the files fails
+     */
+    public void compact() throws IOException {
+        this.sync();
+        
+        try {
+            // Write the new snapshot and make sure it's on disk before 
+            // anything refers to it
+            long next = this.generation + 1;
+            Path snapshotFile = snapshotFile(this.directory, next);
+            InventorySnapshot.write(snapshotFile, this.inventory);
+            try(FileChannel snapshot = FileChannel.open(snapshotFile, 
+                    StandardOpenOption.WRITE)) {
+                snapshot.force(true);
+            }
+            
+            // Switch to an empty journal for the new snapshot. The old 
+            // journal stays in use until the new one is moved over it
+            FileChannel old = this.channel;
+            this.channel = writeEmptyJournal(this.directory, next);
+            old.close();
+            
+            // The old snapshot is no longer needed
+            Files.deleteIfExists(
+                    snapshotFile(this.directory, this.generation));
+            this.generation = next;
+        } catch(IOException e) {
+            throw this.fail(e);
+        }
+    }
+    
+    /**
+     * Sync any buffered records to disk, stop saving changes and close the 
+     * journal
+     * 
+     * @throws IOException If writing the journal fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if(this.failure == null) {
+                this.sync();
+            }
+        } finally {
+            this.channel.close();
+        }
+    }
+    
+    /**
+     * Make sure the journal can take another change, compacting it first if
+     * it has grown too big. Compacting here rather than after a change means
+     * a failure is reported before the inventory is touched
+     * 
+     * @throws IOException If writing has already failed, or compaction fails
+     */
+    private void prepareChange() throws IOException {
+        this.checkFailure();
+        if(this.compactThreshold > 0 && this.channel.position() 
+                + this.buffer.position() > this.compactThreshold) {
+            this.compact();
+        }
+    }
+    
+    /**
+     * Check that the inventory was changed after the record for the change 
+     * was saved. If the inventory threw before changing, the record is 
+     * taken back out of the buffer. If it has already been written out it 
+     * can't be, and the journal refuses any more changes
+     * 
+     * @param expected The number of items the inventory should now hold
+     */
+    private void checkApplied(int expected) {
+        if(this.inventory.getNumItems() == expected) {
+            return;
+        }
+        
+        if(this.unsynced > 0 && this.buffer.position() > this.recordStart) {
+            this.buffer.position(this.recordStart);
+            this.unsynced--;
+        } else {
+            this.failure = new IOException(
+                    "Journal holds a change the inventory rejected");
+        }
+    }
+    
+    /**
+     * Throw if writing to the journal has already failed
+     * 
+     * @throws IOException If writing to the journal has failed
+     */
+    private void checkFailure() throws IOException {
+        if(this.failure != null) {
+            throw new IOException("Journal failed earlier, reopen it to "
+                    + "recover", this.failure);
+        }
+    }
+    
+    /**
+     * Remember that writing to the journal failed, so that no more changes
+     * are accepted
+     * 
+     * @param e Why writing failed
+     * @return The same exception, for the caller to throw
+     */
+    private IOException fail(IOException e) {
+        if(this.failure == null) {
+            this.failure = e;
+        }
+        return e;
+    }
+    
+    /**
+     * Make room in the buffer for a record and start writing it
+     * 
+     * @param length The length of the record's payload
+     * @return The buffer to write the payload into
+     * @throws IOException If writing out the buffer fails
+     */
+    private ByteBuffer startRecord(int length) throws IOException {
+        try {
+            if(this.buffer.remaining() < length + RECORD_OVERHEAD) {
+                this.flush();
+            }
+        } catch(IOException e) {
+            throw this.fail(e);
+        }
+        
+        // Records too big for the buffer get one of their own
+        ByteBuffer record = this.buffer;
+        if(record.remaining() < length + RECORD_OVERHEAD) {
+            record = ByteBuffer.allocate(length + RECORD_OVERHEAD);
+        }
+        
+        this.recordStart = record.position();
+        record.putInt(length);
+        return record;
+    }
+    
+    /**
+     * Add the checksum to a record and then write or sync the journal if 
+     * it's time to
+     * 
+     * @param record The buffer holding the record
+     * @throws IOException If writing the journal fails
+     */
+    private void finishRecord(ByteBuffer record) throws IOException {
+        // Work out the checksum of the payload we just wrote
+        ByteBuffer payload = record.duplicate();
+        payload.limit(record.position());
+        payload.position(this.recordStart + 4);
+        this.checksum.reset();
+        this.checksum.update(payload);
+        record.putInt((int)this.checksum.getValue());
+        
+        try {
+            if(record != this.buffer) {
+                record.flip();
+                while(record.hasRemaining()) {
+                    this.channel.write(record);
+                }
+            }
+        } catch(IOException e) {
+            throw this.fail(e);
+        }
+        
+        this.unsynced++;
+        if(this.syncEvery > 0 && this.unsynced >= this.syncEvery) {
+            this.sync();
+        }
+    }
+    
+    /**
+     * Write any buffered records to the journal
+     * 
+     * @throws IOException If writing the journal fails
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+    
+    /**
+     * Replay the records in a journal against an inventory
+     * 
+     * @param channel The journal file, positioned after the header
+     * @param inventory The inventory to apply the records to
+     * @return The position in the file just after the last complete record
+     * @throws IOException If reading the journal fails
+     */
+    private static long replay(FileChannel channel, Inventory inventory) 
+            throws IOException {
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        CRC32 checksum = new CRC32();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        
+        while(position + RECORD_OVERHEAD <= size) {
+            // Read the length of the record
+            lengthBuffer.clear();
+            channel.read(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            if(length <= 0 || position + RECORD_OVERHEAD + length > size) {
+                break;
+            }
+            
+            // Read the rest of the record and check it's intact
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            while(record.hasRemaining() && channel.read(record, 
+                    position + 4 + record.position()) >= 0) {
+                // Keep reading until the record is full or the file ends
+            }
+            record.flip();
+            ByteBuffer payload = record.duplicate();
+            payload.limit(length);
+            checksum.reset();
+            checksum.update(payload);
+            if((int)checksum.getValue() != record.getInt(length)) {
+                break;
+            }
+            
+            // The record is intact, so if it can't be applied the journal
+            // doesn't match the snapshot
+            if(!apply(record, inventory)) {
+                throw new IOException("Journal is corrupt at " + position);
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * Apply a single journal record to an inventory
+     * 
+     * @param record The record's payload
+     * @param inventory The inventory to apply the record to
+     * @return True if the record was applied, false if it wasn't understood
+     * or the inventory rejected it
+     */
+    private static boolean apply(ByteBuffer record, Inventory inventory) {
+        try {
+            switch(record.get()) {
+                case INSERT:
+                    ItemType type = ItemType.fromTag(record.get());
+                    if(type == null) {
+                        return false;
+                    }
+                    String name = readString(record);
+                    String description = readString(record);
+                    return inventory.insertItem(
+                            type.create(name, description));
+                case DROP:
+                    return inventory.dropItem(record.getInt());
+                default:
+                    return false;
+            }
+        } catch(BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Read a length prefixed UTF-8 string from a record
+     * 
+     * @param record The record
+     * @return The string
+     */
+    private static String readString(ByteBuffer record) {
+        byte [] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Write an empty journal for a snapshot generation and move it into 
+     * place, replacing any existing journal
+     * 
+     * @param directory The directory holding the journal and snapshots
+     * @param generation The generation of the snapshot the journal applies to
+     * @return The new journal file, open for writing at its end
+     * @throws IOException If writing the journal fails
+     */
+    private static FileChannel writeEmptyJournal(Path directory, 
+            long generation) throws IOException {
+        Path journalFile = directory.resolve(JOURNAL_FILE);
+        Path tempFile = directory.resolve(JOURNAL_FILE + ".tmp");
+        
+        try(FileChannel temp = FileChannel.open(tempFile, 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putLong(generation);
+            header.flip();
+            while(header.hasRemaining()) {
+                temp.write(header);
+            }
+            temp.force(true);
+        }
+        
+        Files.move(tempFile, journalFile, StandardCopyOption.ATOMIC_MOVE, 
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(directory);
+        
+        FileChannel channel = FileChannel.open(journalFile, 
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+    
+    /**
+     * Sync a directory to disk, so that files created or moved in it 
+     * survive a crash. Some platforms can't open a directory, and there the
+     * rename is trusted to be durable by itself
+     * 
+     * @param directory The directory to sync
+     * @throws IOException If syncing the directory fails
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch(IOException e) {
+            return;
+        }
+        
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Get the name of the snapshot file for a generation
+     * 
+     * @param directory The directory holding the journal and snapshots
+     * @param generation The generation of the snapshot
+     * @return The path to the snapshot file
+     */
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation);
+    }
+}
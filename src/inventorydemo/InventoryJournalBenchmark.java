@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Checks that an InventoryJournal recovers the right contents after a crash
+ * and then measures how many changes per second it can save. 
+ * 
+ * The crash checks cut the journal short at every byte and check that 
+ * reopening it recovers exactly the changes whose records were complete. 
+ * They also check that compaction survives a reopen, that a missing 
+ * snapshot or a record the inventory rejects is reported as corruption, and
+ * that a failed write leaves the inventory unchanged.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryJournalBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The numbers of records per sync to measure
+     */
+    private static final int [] SYNC_EVERY = {1, 16, 256, 0};
+    
+    /**
+     * The capacity of the inventories used
+     */
+    private static final int CAPACITY = 1000;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the checks and the benchmark
+     * 
+     * @param args The number of changes to time for each setting
+     * @throws IOException If the journal can't be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int numChanges = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        
+        checkTruncation();
+        checkCompaction();
+        checkCorrupt();
+        checkFailedWrite();
+        System.out.println("Crash checks passed");
+        
+        System.out.printf("%10s %12s%n", "sync every", "changes/s");
+        for(int syncEvery : SYNC_EVERY) {
+            // Syncing every change is far slower, so it gets fewer changes
+            int changes = syncEvery == 1 ? numChanges / 10 : numChanges;
+            double best = 0;
+            for(int round=0; round<ROUNDS; round++) {
+                best = Math.max(best, throughput(syncEvery, changes));
+            }
+            System.out.printf("%10d %12.0f%n", syncEvery, best);
+        }
+    }
+    
+    /**
+     * Make random changes through a journal that syncs every record, then 
+     * cut the journal short at every possible length and check that 
+     * reopening it gives the contents as of the last complete record
+     * 
+     * @throws IOException If the journal can't be written or read
+     */
+    private static void checkTruncation() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        Path crashed = Files.createTempDirectory("journal");
+        try {
+            List<Long> lengths = new ArrayList<>();
+            List<List<String>> states = new ArrayList<>();
+            Random random = new Random(1);
+            
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 50, 1, 0)) {
+                lengths.add(Files.size(directory.resolve("journal")));
+                states.add(contents(journal.getInventory()));
+                for(int i=0; i<300; i++) {
+                    change(journal, random);
+                    lengths.add(Files.size(directory.resolve("journal")));
+                    states.add(contents(journal.getInventory()));
+                }
+            }
+            
+            byte [] full = Files.readAllBytes(directory.resolve("journal"));
+            int state = 0;
+            for(int length = lengths.get(0).intValue(); 
+                    length <= full.length; length++) {
+                while(state + 1 < lengths.size() && 
+                        lengths.get(state + 1) <= length) {
+                    state++;
+                }
+                
+                Files.write(crashed.resolve("journal"), 
+                        Arrays.copyOf(full, length));
+                try(InventoryJournal journal = 
+                        InventoryJournal.open(crashed, 50, 1, 0)) {
+                    if(!contents(journal.getInventory())
+                            .equals(states.get(state))) {
+                        throw new IllegalStateException(
+                                "Wrong contents when cut at " + length);
+                    }
+                }
+                if(Files.size(crashed.resolve("journal")) != 
+                        lengths.get(state)) {
+                    throw new IllegalStateException(
+                            "Partial record kept when cut at " + length);
+                }
+            }
+        } finally {
+            delete(directory);
+            delete(crashed);
+        }
+    }
+    
+    /**
+     * Make enough changes to compact the journal many times, then check that
+     * reopening it gives the same contents, and that it can't be reopened 
+     * once its snapshot is lost
+     * 
+     * @throws IOException If the journal can't be written or read
+     */
+    private static void checkCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            Random random = new Random(2);
+            List<String> expected;
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 50, 7, 2048)) {
+                for(int i=0; i<5000; i++) {
+                    change(journal, random);
+                }
+                expected = contents(journal.getInventory());
+            }
+            
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 50, 7, 2048)) {
+                if(!contents(journal.getInventory()).equals(expected)) {
+                    throw new IllegalStateException(
+                            "Wrong contents after compaction");
+                }
+            }
+            
+            // Exactly one snapshot should be left, and the journal can't 
+            // be recovered without it
+            Path [] snapshots;
+            try(Stream<Path> files = Files.list(directory)) {
+                snapshots = files.filter(file -> file.getFileName()
+                        .toString().startsWith("snapshot-"))
+                        .toArray(Path[]::new);
+            }
+            if(snapshots.length != 1) {
+                throw new IllegalStateException(
+                        snapshots.length + " snapshots left");
+            }
+            Files.delete(snapshots[0]);
+            expectCorrupt(directory, 50);
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    /**
+     * Append records which are intact but can't be applied, and check that
+     * reopening the journal fails rather than carrying on
+     * 
+     * @throws IOException If the journal can't be written or read
+     */
+    private static void checkCorrupt() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 3, 1, 0)) {
+                for(int i=0; i<3; i++) {
+                    journal.insertItem(new Sword("Sword " + i, "A sword"));
+                }
+            }
+            byte [] good = Files.readAllBytes(directory.resolve("journal"));
+            
+            // Drop an item that isn't there
+            ByteBuffer drop = ByteBuffer.allocate(5);
+            drop.put((byte)2).putInt(1000);
+            appendRecord(directory, drop.array());
+            expectCorrupt(directory, 3);
+            
+            // Insert into an inventory which is already full
+            Files.write(directory.resolve("journal"), good);
+            byte [] name = "Extra".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer insert = ByteBuffer.allocate(2 + 4 + name.length + 4);
+            insert.put((byte)1).put(ItemType.SWORD.getTag())
+                    .putInt(name.length).put(name).putInt(0);
+            appendRecord(directory, insert.array());
+            expectCorrupt(directory, 3);
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    /**
+     * Make compaction fail by putting a directory where the next snapshot 
+     * goes, and check that the change which triggered it isn't made, that
+     * the journal refuses later changes, and that reopening it recovers 
+     * every change made before the failure
+     * 
+     * @throws IOException If the journal can't be written or read
+     */
+    private static void checkFailedWrite() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            Files.createDirectory(directory.resolve("snapshot-1"));
+            List<String> before;
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 50, 1, 256)) {
+                Random random = new Random(3);
+                while(true) {
+                    before = contents(journal.getInventory());
+                    try {
+                        change(journal, random);
+                    } catch(IOException e) {
+                        break;
+                    }
+                }
+                if(!contents(journal.getInventory()).equals(before)) {
+                    throw new IllegalStateException(
+                            "Inventory changed by a failed write");
+                }
+                try {
+                    journal.insertItem(new Sword());
+                    throw new IllegalStateException(
+                            "Change accepted after a failed write");
+                } catch(IOException e) {
+                    // Expected
+                }
+            }
+            
+            Files.delete(directory.resolve("snapshot-1"));
+            try(InventoryJournal journal = 
+                    InventoryJournal.open(directory, 50, 1, 0)) {
+                if(!contents(journal.getInventory()).equals(before)) {
+                    throw new IllegalStateException(
+                            "Wrong contents after a failed write");
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    /**
+     * Time random changes through a journal
+     * 
+     * @param syncEvery The number of records to collect before syncing
+     * @param numChanges The number of changes to make
+     * @return The number of changes saved per second
+     * @throws IOException If the journal can't be written
+     */
+    private static double throughput(int syncEvery, int numChanges) 
+            throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            Random random = new Random(syncEvery);
+            long begin = System.nanoTime();
+            try(InventoryJournal journal = InventoryJournal.open(directory, 
+                    CAPACITY, syncEvery, 1 << 20)) {
+                for(int i=0; i<numChanges; i++) {
+                    change(journal, random);
+                }
+                published = journal.getInventory().getNumItems();
+            }
+            long elapsed = System.nanoTime() - begin;
+            return numChanges * 1e9 / elapsed;
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    /**
+     * Insert or drop a random item through a journal
+     * 
+     * @param journal The journal to make the change through
+     * @param random Used to choose the change
+     * @throws IOException If the change can't be saved
+     */
+    private static void change(InventoryJournal journal, Random random) 
+            throws IOException {
+        Inventory inventory = journal.getInventory();
+        if(inventory.getNumItems() > 0 && (random.nextBoolean() || 
+                inventory.getNumItems() == inventory.getMaxCapacity())) {
+            journal.dropItem(random.nextInt(inventory.getNumItems()));
+        } else {
+            int n = random.nextInt(100);
+            journal.insertItem(n % 2 == 0 ? 
+                    new Sword("Sword " + n, "Sword number " + n) :
+                    new Potion("Potion " + n, "Potion number " + n));
+        }
+    }
+    
+    /**
+     * List the contents of an inventory in a form that can be compared
+     * 
+     * @param inventory The inventory to list
+     * @return The type, name and description of each item, in order
+     */
+    private static List<String> contents(Inventory inventory) {
+        List<String> contents = new ArrayList<>();
+        for(IItem item : inventory) {
+            contents.add(item.getClass().getSimpleName() + ":" + 
+                    item.getName() + ":" + item.getDescription());
+        }
+        return contents;
+    }
+    
+    /**
+     * Append a record with a valid length and checksum to a journal
+     * 
+     * @param directory The directory holding the journal
+     * @param payload The record's payload
+     * @throws IOException If the journal can't be written
+     */
+    private static void appendRecord(Path directory, byte [] payload) 
+            throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(payload.length + 8);
+        record.putInt(payload.length).put(payload)
+                .putInt((int)checksum.getValue());
+        record.flip();
+        try(FileChannel channel = FileChannel.open(
+                directory.resolve("journal"), StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+    }
+    
+    /**
+     * Check that a journal can't be reopened
+     * 
+     * @param directory The directory holding the journal
+     * @param maxCapacity The capacity of the inventory
+     */
+    private static void expectCorrupt(Path directory, int maxCapacity) {
+        try(InventoryJournal journal = 
+                InventoryJournal.open(directory, maxCapacity, 1, 0)) {
+            published = journal.getInventory().getNumItems();
+        } catch(IOException e) {
+            return;
+        }
+        throw new IllegalStateException("Opened a corrupt journal");
+    }
+    
+    /**
+     * Delete a directory and everything in it
+     * 
+     * @param directory The directory to delete
+     * @throws IOException If something can't be deleted
+     */
+    private static void delete(Path directory) throws IOException {
+        try(Stream<Path> files = Files.walk(directory)) {
+            for(Path file : files.sorted((a, b) -> b.compareTo(a))
+                    .toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puts load on an InventoryServer by opening many sessions at once, each 
+ * running a mix of create, get, put and drop commands. Reports the median 
+ * and 99th percentile time taken to answer a request.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryLoadClient {
+    /**
+     * The requests each session sends, over and over
+     */
+    private static final String [] REQUESTS = {
+        "c\t1\tSword\tPointy.",
+        "c\t3\tPotion\tCould be magical.",
+        "g\t0",
+        "p",
+        "g\t1",
+        "d",
+        "n"
+    };
+    
+    /**
+     * Run the load test
+     * 
+     * @param args The port of the server on the loopback address, the number 
+     * of sessions and the number of requests per session
+     * @throws InterruptedException If interrupted while waiting for sessions
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? 
+                Integer.parseInt(args[0]) : InventoryServer.DEFAULT_PORT;
+        int numSessions = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int numRequests = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        
+        long [][] latencies = new long[numSessions][];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(numSessions);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = 
+                InventoryServer.newThreadPerTaskExecutor();
+        
+        // Connect every session first, then set them all going at once
+        for(int i=0; i<numSessions; i++) {
+            int session = i;
+            executor.execute(() -> {
+                try {
+                    latencies[session] = runSession(port, numRequests, 
+                            ready, start);
+                } catch(IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                    ready.countDown();
+                }
+            });
+        }
+        
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - begin;
+        
+        // Gather up the latencies of every request
+        long [] all = Arrays.stream(latencies)
+                .filter(l -> l != null)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        
+        System.out.printf("sessions: %d (%d failed)%n", numSessions, 
+                failures.get());
+        System.out.printf("requests: %d in %.2f s (%.0f/s)%n", all.length,
+                elapsed / 1e9, all.length / (elapsed / 1e9));
+        if(all.length > 0) {
+            System.out.printf("p50: %.1f us%n", 
+                    percentile(all, 0.50) / 1e3);
+            System.out.printf("p99: %.1f us%n", 
+                    percentile(all, 0.99) / 1e3);
+            System.out.printf("max: %.1f us%n", all[all.length - 1] / 1e3);
+        }
+    }
+    
+    /**
+     * Run one session against the server
+     * 
+     * @param port The port of the server
+     * @param numRequests The number of requests to send
+     * @param ready Counted down once the session is connected
+     * @param start Waited on before sending any requests
+     * @return The time taken to answer each request in nanoseconds
+     * @throws IOException If talking to the server fails
+     * @throws InterruptedException If interrupted while waiting to start
+     */
+    private static long [] runSession(int port, int numRequests, 
+            CountDownLatch ready, CountDownLatch start) 
+            throws IOException, InterruptedException {
+        long [] latencies = new long[numRequests];
+        
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            ready.countDown();
+            start.await();
+            
+            for(int i=0; i<numRequests; i++) {
+                long begin = System.nanoTime();
+                out.write(REQUESTS[i % REQUESTS.length]);
+                out.write('\n');
+                out.flush();
+                if(in.readLine() == null) {
+                    throw new IOException("Server closed the connection");
+                }
+                latencies[i] = System.nanoTime() - begin;
+            }
+            
+            out.write("q\n");
+            out.flush();
+        }
+        
+        return latencies;
+    }
+    
+    /**
+     * Get a percentile of some sorted values
+     * 
+     * @param sorted The values, in ascending order
+     * @param fraction The percentile as a fraction between 0 and 1
+     * @return The value at that percentile
+     */
+    private static long percentile(long [] sorted, double fraction) {
+        int index = (int)Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of the inventory belonging to each player, and runs bulk 
+ * operations over all of them in parallel.
+ * 
+ * Bulk operations split the inventories into ranges and hand them to a fork
+ * join pool, so idle threads steal work from busy ones. Each inventory is 
+ * locked while an operation works on it, so one inventory is never worked on
+ * by two threads at once. Code outside the manager which changes a managed 
+ * inventory while bulk operations may be running should also synchronize on
+ * the inventory.
+ * 
+ * Items can also be moved between players' inventories as a single step, so
+ * an item is never lost or duplicated part way through a trade. Transfers 
+ * are optimistic: the items are found while holding one inventory lock at a
+ * time, and only then are all of the inventories involved locked together,
+ * in order of owner id, to check that none of them changed in the meantime
+ * and make the moves. If one did change the transfer starts again. There is
+ * no lock over all inventories, so transfers between different players 
+ * don't get in each other's way.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryManager {
+    /**
+     * The number of inventories below which a bulk operation stops splitting
+     * its work and just runs through them
+     */
+    private static final int SPLIT_THRESHOLD = 256;
+    
+    /**
+     * The inventory of each player, by owner id
+     */
+    private final Map<Long, Inventory> inventories;
+    
+    /**
+     * The pool which runs bulk operations
+     */
+    private final ForkJoinPool pool;
+    
+    /**
+     * The number of times a transfer had to start again because an 
+     * inventory changed while it was finding its items
+     */
+    private final LongAdder conflicts;
+    
+    /**
+     * Default constructor for the InventoryManager class. Bulk operations run
+     * on the common fork join pool.
+     */
+    public InventoryManager() {
+        this(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Constructor for the InventoryManager class
+     * 
+     * @param pool The pool which runs bulk operations
+     */
+    public InventoryManager( ForkJoinPool pool ) {
+        this.inventories = new ConcurrentHashMap<>();
+        this.pool = pool;
+        this.conflicts = new LongAdder();
+    }
+    
+    /**
+     * Add a player's inventory, replacing any inventory they already have
+     * 
+     * @param owner The id of the player who owns the inventory
+     * @param inventory The inventory
+     * @return The player's previous inventory, or null if they had none
+     */
+    public Inventory register(long owner, Inventory inventory) {
+        return this.inventories.put(owner, inventory);
+    }
+    
+    /**
+     * Get a player's inventory
+     * 
+     * @param owner The id of the player
+     * @return The player's inventory, or null if they have none
+     */
+    public Inventory get(long owner) {
+        return this.inventories.get(owner);
+    }
+    
+    /**
+     * Stop managing a player's inventory
+     * 
+     * @param owner The id of the player
+     * @return The player's inventory, or null if they had none
+     */
+    public Inventory remove(long owner) {
+        return this.inventories.remove(owner);
+    }
+    
+    /**
+     * Get the number of inventories being managed
+     * 
+     * @return The number of inventories
+     */
+    public int size() {
+        return this.inventories.size();
+    }
+    
+    /**
+     * Move an item from one player's inventory to another's
+     * 
+     * @param from The id of the player giving the item
+     * @param item The item to move
+     * @param to The id of the player receiving the item
+     * @return True if the item was moved. False if either player has no 
+     * inventory, the item isn't in the giver's inventory or the receiver's 
+     * inventory is full, in which case nothing changes
+     */
+    public boolean transfer(long from, IItem item, long to) {
+        return this.transferAll(new Transfer(from, item, to));
+    }
+    
+    /**
+     * Swap an item in one player's inventory for an item in another's
+     * 
+     * @param first The id of the first player
+     * @param firstItem The item the first player gives
+     * @param second The id of the second player
+     * @param secondItem The item the second player gives
+     * @return True if the items were swapped, false if nothing changed
+     */
+    public boolean trade(long first, IItem firstItem, long second, 
+            IItem secondItem) {
+        return this.transferAll(new Transfer(first, firstItem, second), 
+                new Transfer(second, secondItem, first));
+    }
+    
+    /**
+     * Make a number of transfers between any number of players as a single
+     * step. Either every item moves or none do
+     * 
+     * @param transfers The transfers to make
+     * @return True if every item was moved. False if any player involved has
+     * no inventory, any item isn't in its giver's inventory, any item is 
+     * given more than once or any inventory would end up over capacity, in 
+     * which case nothing changes
+     */
+    public boolean transferAll(Transfer... transfers) {
+        // Find the players involved. Their inventories are always locked in
+        // order of owner id, so two transfers can never deadlock
+        long [] owners = new long[transfers.length * 2];
+        for(int i=0; i<transfers.length; i++) {
+            owners[2 * i] = transfers[i].from;
+            owners[2 * i + 1] = transfers[i].to;
+        }
+        Arrays.sort(owners);
+        int numOwners = 0;
+        for(long owner : owners) {
+            if(numOwners == 0 || owners[numOwners - 1] != owner) {
+                owners[numOwners++] = owner;
+            }
+        }
+        
+        Inventory [] involved = new Inventory[numOwners];
+        for(int k=0; k<numOwners; k++) {
+            involved[k] = this.inventories.get(owners[k]);
+            if(involved[k] == null) {
+                return false;
+            }
+        }
+        
+        // Work out which inventory each item comes from and goes to
+        int [] sources = new int[transfers.length];
+        int [] destinations = new int[transfers.length];
+        for(int i=0; i<transfers.length; i++) {
+            if(transfers[i].item == null) {
+                return false;
+            }
+            for(int j=0; j<i; j++) {
+                if(transfers[j].item == transfers[i].item) {
+                    return false;
+                }
+            }
+            sources[i] = Arrays.binarySearch(owners, 0, numOwners, 
+                    transfers[i].from);
+            destinations[i] = Arrays.binarySearch(owners, 0, numOwners, 
+                    transfers[i].to);
+        }
+        
+        int [] versions = new int[numOwners];
+        int [] indices = new int[transfers.length];
+        while(true) {
+            // Find every item, looking at one inventory at a time, and note 
+            // the version of each inventory as we saw it
+            for(int k=0; k<numOwners; k++) {
+                Inventory inventory = involved[k];
+                synchronized(inventory) {
+                    versions[k] = inventory.getVersion();
+                    for(int i=0; i<transfers.length; i++) {
+                        if(sources[i] == k) {
+                            indices[i] = indexOfItem(inventory, 
+                                    transfers[i].item);
+                            if(indices[i] < 0) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+            }
+            
+            // Lock everything, and make the moves if nothing has changed
+            Boolean result = lockAll(involved, 0, () -> applyTransfers(
+                    involved, versions, transfers, sources, destinations, 
+                    indices));
+            if(result != null) {
+                return result;
+            }
+            
+            this.conflicts.increment();
+        }
+    }
+    
+    /**
+     * Get the number of times a transfer had to start again because an 
+     * inventory changed while it was finding its items
+     * 
+     * @return The number of conflicts
+     */
+    public long getConflicts() {
+        return this.conflicts.sum();
+    }
+    
+    /**
+     * Run an operation on every inventory in parallel and combine the 
+     * results. Each inventory is locked while the operation works on it.
+     * 
+     * @param <R> The type of result
+     * @param operation The operation to run on each inventory
+     * @param combiner Combines the results of two operations
+     * @param identity The result if there are no inventories. Combining it 
+     * with any result must give that result back
+     * @return The combined results
+     */
+    public <R> R reduce(Function<Inventory, R> operation, 
+            BinaryOperator<R> combiner, R identity) {
+        Inventory [] all = this.inventories.values().toArray(new Inventory[0]);
+        return this.pool.invoke(new BulkTask<>(all, 0, all.length, operation,
+                combiner, identity));
+    }
+    
+    /**
+     * Drop every item matching a condition from every inventory. Useful for
+     * getting rid of items which have expired.
+     * 
+     * @param condition The condition items must match to be dropped
+     * @return The total number of items dropped
+     */
+    public long dropItems(Predicate<IItem> condition) {
+        return this.reduce(inventory -> {
+            // Find the items to drop, then drop them in a single pass
+            int [] indices = new int[inventory.getNumItems()];
+            int count = 0;
+            int index = 0;
+            for(IItem item : inventory) {
+                if(condition.test(item)) {
+                    indices[count++] = index;
+                }
+                index++;
+            }
+            
+            if(count == 0) {
+                return 0L;
+            }
+            return (long)inventory.removeAll(
+                    Arrays.copyOf(indices, count));
+        }, Long::sum, 0L);
+    }
+    
+    /**
+     * Count the items of each type across every inventory
+     * 
+     * @return The number of items of each type. Items which aren't a Sword,
+     * Shield or Potion aren't counted
+     */
+    public Map<ItemType, Long> countByType() {
+        return this.reduce(inventory -> {
+            Map<ItemType, Long> counts = new EnumMap<>(ItemType.class);
+            for(IItem item : inventory) {
+                ItemType type = ItemType.of(item);
+                if(type != null) {
+                    counts.merge(type, 1L, Long::sum);
+                }
+            }
+            return counts;
+        }, (a, b) -> {
+            Map<ItemType, Long> counts = new EnumMap<>(a);
+            b.forEach((type, count) -> counts.merge(type, count, Long::sum));
+            return counts;
+        }, new EnumMap<>(ItemType.class));
+    }
+    
+    /**
+     * Count the items across every inventory
+     * 
+     * @return The total number of items
+     */
+    public long countItems() {
+        return this.reduce(inventory -> (long)inventory.getNumItems(), 
+                Long::sum, 0L);
+    }
+    
+    /**
+     * Make a set of transfers. Every inventory involved must be locked
+     * 
+     * @param involved The inventories involved, in order of owner id
+     * @param versions The version of each inventory when its items were 
+     * found
+     * @param transfers The transfers to make
+     * @param sources The inventory each item comes from
+     * @param destinations The inventory each item goes to
+     * @param indices The index of each item in the inventory it comes from
+     * @return True if the transfers were made, false if they can't be made
+     * because an inventory would end up over capacity, or null if an 
+     * inventory has changed and the items have to be found again
+     */
+    private static Boolean applyTransfers(Inventory [] involved, 
+            int [] versions, Transfer [] transfers, int [] sources, 
+            int [] destinations, int [] indices) {
+        for(int k=0; k<involved.length; k++) {
+            if(involved[k].getVersion() != versions[k]) {
+                return null;
+            }
+        }
+        
+        // Make sure every inventory has room for what it will end up with
+        int [] numItems = new int[involved.length];
+        for(int k=0; k<involved.length; k++) {
+            numItems[k] = involved[k].getNumItems();
+        }
+        for(int i=0; i<transfers.length; i++) {
+            numItems[sources[i]]--;
+            numItems[destinations[i]]++;
+        }
+        for(int k=0; k<involved.length; k++) {
+            if(numItems[k] > involved[k].getMaxCapacity()) {
+                return false;
+            }
+        }
+        
+        // Take every item out first, so there is room for them all to go in
+        for(int k=0; k<involved.length; k++) {
+            int [] outgoing = new int[transfers.length];
+            int count = 0;
+            for(int i=0; i<transfers.length; i++) {
+                if(sources[i] == k) {
+                    outgoing[count++] = indices[i];
+                }
+            }
+            if(count > 0) {
+                involved[k].removeAll(Arrays.copyOf(outgoing, count));
+            }
+        }
+        for(int i=0; i<transfers.length; i++) {
+            involved[destinations[i]].insertItem(transfers[i].item);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Lock a number of inventories, one inside the other, and run an action
+     * while holding all of the locks
+     * 
+     * @param <R> The type of result
+     * @param inventories The inventories to lock, in the order to lock them
+     * @param next The index of the next inventory to lock
+     * @param action The action to run
+     * @return The result of the action
+     */
+    private static <R> R lockAll(Inventory [] inventories, int next, 
+            Supplier<R> action) {
+        if(next == inventories.length) {
+            return action.get();
+        }
+        synchronized(inventories[next]) {
+            return lockAll(inventories, next + 1, action);
+        }
+    }
+    
+    /**
+     * Find an item in an inventory. The item itself must be there, not just
+     * an item with the same name
+     * 
+     * @param inventory The inventory to search
+     * @param item The item to find
+     * @return The index of the item, or -1 if it isn't in the inventory
+     */
+    private static int indexOfItem(Inventory inventory, IItem item) {
+        int index = inventory.findByName(item.getName());
+        if(index < 0) {
+            return -1;
+        }
+        
+        // Look through the items with the same name for this one
+        for(; index < inventory.getNumItems(); index++) {
+            IItem candidate = inventory.peekItem(index);
+            if(candidate == item) {
+                return index;
+            }
+            if(!candidate.getName().equals(item.getName())) {
+                break;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * One item moving from one player's inventory to another's
+     */
+    public static final class Transfer {
+        /**
+         * The id of the player giving the item
+         */
+        private final long from;
+        
+        /**
+         * The item to move
+         */
+        private final IItem item;
+        
+        /**
+         * The id of the player receiving the item
+         */
+        private final long to;
+        
+        /**
+         * Constructor for the Transfer class
+         * 
+         * @param from The id of the player giving the item
+         * @param item The item to move
+         * @param to The id of the player receiving the item
+         */
+        public Transfer( long from, IItem item, long to ) {
+            this.from = from;
+            this.item = item;
+            this.to = to;
+        }
+    }
+    
+    /**
+     * A task which runs an operation over a range of inventories, splitting
+     * itself in two until the range is small enough to run directly
+     * 
+     * @param <R> The type of result
+     */
+    private static final class BulkTask<R> extends RecursiveTask<R> {
+        /**
+         * Version of the serialized form, which ForkJoinTask requires
+         */
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * All of the inventories
+         */
+        private final Inventory [] inventories;
+        
+        /**
+         * The index of the first inventory in the range
+         */
+        private final int start;
+        
+        /**
+         * The index just after the last inventory in the range
+         */
+        private final int end;
+        
+        /**
+         * The operation to run on each inventory
+         */
+        private final Function<Inventory, R> operation;
+        
+        /**
+         * Combines the results of two operations
+         */
+        private final BinaryOperator<R> combiner;
+        
+        /**
+         * The result for an empty range
+         */
+        private final R identity;
+        
+        /**
+         * Constructor for the BulkTask class
+         * 
+         * @param inventories All of the inventories
+         * @param start The index of the first inventory in the range
+         * @param end The index just after the last inventory in the range
+         * @param operation The operation to run on each inventory
+         * @param combiner Combines the results of two operations
+         * @param identity The result for an empty range
+         */
+        private BulkTask( Inventory [] inventories, int start, int end, 
+                Function<Inventory, R> operation, BinaryOperator<R> combiner,
+                R identity ) {
+            this.inventories = inventories;
+            this.start = start;
+            this.end = end;
+            this.operation = operation;
+            this.combiner = combiner;
+            this.identity = identity;
+        }
+        
+        @Override
+        protected R compute() {
+            if(this.end - this.start <= SPLIT_THRESHOLD) {
+                // Small enough to run through directly
+                R result = this.identity;
+                for(int i=this.start; i<this.end; i++) {
+                    Inventory inventory = this.inventories[i];
+                    R partial;
+                    synchronized(inventory) {
+                        partial = this.operation.apply(inventory);
+                    }
+                    result = this.combiner.apply(result, partial);
+                }
+                return result;
+            }
+            
+            // Split the range in two, running the second half here while the
+            // first half is available to be stolen by another thread
+            int mid = (this.start + this.end) >>> 1;
+            BulkTask<R> left = new BulkTask<>(this.inventories, this.start, 
+                    mid, this.operation, this.combiner, this.identity);
+            BulkTask<R> right = new BulkTask<>(this.inventories, mid, 
+                    this.end, this.operation, this.combiner, this.identity);
+            left.fork();
+            R rightResult = right.compute();
+            return this.combiner.apply(left.join(), rightResult);
+        }
+    }
+}
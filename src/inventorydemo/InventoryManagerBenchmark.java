@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how InventoryManager bulk operations scale with the number of 
+ * threads. A million small inventories are registered with a manager, and 
+ * the same sweeps are timed on fork join pools of increasing size: counting
+ * the items, counting the items of each type, and looking for expired items
+ * to drop. Nothing is ever expired, so every round does the same work. 
+ * Reports the time for each sweep and its speed up over a single thread.
+ * 
+ * Speed up can't exceed the number of processors the JVM sees, which is 
+ * printed first. Pools larger than that only show the cost of the extra 
+ * threads.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryManagerBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The number of items in each inventory
+     */
+    private static final int ITEMS_PER_INVENTORY = 8;
+    
+    /**
+     * The number of definitions items are drawn from
+     */
+    private static final int CATALOGUE_SIZE = 1000;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of inventories, then the pool sizes to try
+     */
+    public static void main(String[] args) {
+        int numInventories = args.length > 0 ? 
+                Integer.parseInt(args[0]) : 1000000;
+        int processors = Runtime.getRuntime().availableProcessors();
+        int [] poolSizes = args.length > 1 ? 
+                Arrays.stream(args, 1, args.length)
+                .mapToInt(Integer::parseInt).toArray() : 
+                new int [] {1, 2, 4, 8};
+        
+        System.out.printf("%d inventories, %d processors%n", numInventories,
+                processors);
+        Map<Long, Inventory> inventories = fill(numInventories);
+        
+        System.out.printf("%7s %10s %8s %10s %8s %10s %8s%n", "threads", 
+                "count ms", "speedup", "types ms", "speedup", "expire ms", 
+                "speedup");
+        double [] single = null;
+        for(int threads : poolSizes) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            InventoryManager manager = new InventoryManager(pool);
+            inventories.forEach(manager::register);
+            
+            double [] best = new double[3];
+            Arrays.fill(best, Double.MAX_VALUE);
+            for(int round=0; round<ROUNDS; round++) {
+                long begin = System.nanoTime();
+                published = manager.countItems();
+                best[0] = Math.min(best[0], (System.nanoTime() - begin) / 1e6);
+                
+                begin = System.nanoTime();
+                published = manager.countByType().size();
+                best[1] = Math.min(best[1], (System.nanoTime() - begin) / 1e6);
+                
+                begin = System.nanoTime();
+                published = manager.dropItems(
+                        item -> item.getName().startsWith("Expired"));
+                best[2] = Math.min(best[2], (System.nanoTime() - begin) / 1e6);
+            }
+            pool.shutdown();
+            
+            if(single == null) {
+                single = best;
+            }
+            System.out.printf("%7d %10.1f %8.2f %10.1f %8.2f %10.1f %8.2f%n",
+                    threads, best[0], single[0] / best[0], best[1], 
+                    single[1] / best[1], best[2], single[2] / best[2]);
+        }
+    }
+    
+    /**
+     * Create inventories filled with items from a shared catalogue
+     * 
+     * @param numInventories The number of inventories to create
+     * @return The inventories, by owner id
+     */
+    private static Map<Long, Inventory> fill(int numInventories) {
+        ItemRegistry registry = new ItemRegistry();
+        ItemType [] types = ItemType.values();
+        ItemDefinition [] catalogue = new ItemDefinition[CATALOGUE_SIZE];
+        for(int i=0; i<CATALOGUE_SIZE; i++) {
+            catalogue[i] = registry.define(types[i % types.length], 
+                    "Item " + i, "Item number " + i);
+        }
+        
+        Random random = new Random(1);
+        Map<Long, Inventory> inventories = 
+                new HashMap<>(numInventories * 2);
+        for(int p=0; p<numInventories; p++) {
+            Inventory inventory = new Inventory(ITEMS_PER_INVENTORY * 2);
+            for(int i=0; i<ITEMS_PER_INVENTORY; i++) {
+                inventory.insertItem(
+                        catalogue[random.nextInt(CATALOGUE_SIZE)].newItem());
+            }
+            inventories.put((long)p, inventory);
+        }
+        return inventories;
+    }
+}
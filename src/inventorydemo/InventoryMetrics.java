@@ -0,0 +1,432 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures what inventories are doing: how many items go in and out, how 
+ * often they are turned away, how full the inventories are, how far items 
+ * have to move to keep the contents sorted and how long each change takes.
+ * 
+ * An inventory does nothing extra unless metrics are attached to it. Once 
+ * attached, only one change in every sampleInterval is sampled: timed, has 
+ * its shift distance recorded, and reports the changes the inventory has 
+ * counted since the last sample. The rest cost a plain increment in the 
+ * inventory. Reading the clock or updating shared counters on every change 
+ * would otherwise cost as much as the change itself. Batch inserts and drops
+ * are counted straight away but not sampled.
+ * 
+ * The same metrics can be attached to many inventories, on many threads, to
+ * measure them all together. Counters are LongAdders, so threads don't fight
+ * over them. The metrics can be read through JMX once registered, or as 
+ * text in the Prometheus exposition format.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryMetrics implements IInventoryMetricsMXBean {
+    /**
+     * The default number of changes per timed change
+     */
+    private static final int DEFAULT_SAMPLE_INTERVAL = 64;
+    
+    /**
+     * Used to decide which changes are timed. The inventory version is
+     * masked with this, and the change is timed if the result is zero
+     */
+    private final int sampleMask;
+    
+    /**
+     * The number of items inserted
+     */
+    private final LongAdder inserts;
+    
+    /**
+     * The number of items turned away because the inventory was full
+     */
+    private final LongAdder insertRejections;
+    
+    /**
+     * The number of items dropped or taken
+     */
+    private final LongAdder drops;
+    
+    /**
+     * The number of drops or takes with an invalid index
+     */
+    private final LongAdder dropMisses;
+    
+    /**
+     * The number of items held by every inventory being measured when it 
+     * was attached, less the number held when it was detached. Adding the 
+     * inserts and taking away the drops gives the number held now
+     */
+    private final LongAdder attachedItems;
+    
+    /**
+     * The capacity of every inventory being measured
+     */
+    private final LongAdder capacity;
+    
+    /**
+     * The time taken by each timed insert
+     */
+    private final LogHistogram insertLatency;
+    
+    /**
+     * The time taken by each timed drop
+     */
+    private final LogHistogram dropLatency;
+    
+    /**
+     * The number of items moved by each insert
+     */
+    private final LogHistogram insertShift;
+    
+    /**
+     * The number of items moved by each drop
+     */
+    private final LogHistogram dropShift;
+    
+    /**
+     * Default constructor for the InventoryMetrics class. Times one change 
+     * in every DEFAULT_SAMPLE_INTERVAL
+     */
+    public InventoryMetrics() {
+        this(InventoryMetrics.DEFAULT_SAMPLE_INTERVAL);
+    }
+    
+    /**
+     * Constructor for the InventoryMetrics class
+     * 
+     * @param sampleInterval The number of changes per timed change. Must be
+     * a power of two. Use 1 to time every change
+     */
+    public InventoryMetrics( int sampleInterval ) {
+        if(sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1) {
+            throw new IllegalArgumentException(
+                    "Sample interval must be a power of two");
+        }
+        
+        this.sampleMask = sampleInterval - 1;
+        this.inserts = new LongAdder();
+        this.insertRejections = new LongAdder();
+        this.drops = new LongAdder();
+        this.dropMisses = new LongAdder();
+        this.attachedItems = new LongAdder();
+        this.capacity = new LongAdder();
+        this.insertLatency = new LogHistogram();
+        this.dropLatency = new LogHistogram();
+        this.insertShift = new LogHistogram();
+        this.dropShift = new LogHistogram();
+    }
+    
+    /**
+     * Make the metrics visible through the platform MBean server
+     * 
+     * @param name The name to register the metrics under, to tell apart 
+     * several sets of metrics
+     * @return The name the metrics were registered as
+     * @throws JMException If the metrics can't be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(
+                "inventorydemo:type=InventoryMetrics,name=" + 
+                ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, 
+                objectName);
+        return objectName;
+    }
+    
+    @Override
+    public long getInserts() {
+        return this.inserts.sum();
+    }
+    
+    @Override
+    public long getInsertRejections() {
+        return this.insertRejections.sum();
+    }
+    
+    @Override
+    public double getRejectionRate() {
+        long rejections = this.insertRejections.sum();
+        long attempts = this.inserts.sum() + rejections;
+        return attempts == 0 ? 0 : (double)rejections / attempts;
+    }
+    
+    @Override
+    public long getDrops() {
+        return this.drops.sum();
+    }
+    
+    @Override
+    public long getDropMisses() {
+        return this.dropMisses.sum();
+    }
+    
+    @Override
+    public double getFillRatio() {
+        long capacity = this.capacity.sum();
+        long items = this.attachedItems.sum() + this.inserts.sum() - 
+                this.drops.sum();
+        return capacity == 0 ? 0 : (double)items / capacity;
+    }
+    
+    @Override
+    public long getInsertLatencyP50() {
+        return this.insertLatency.getValueAtPercentile(0.50);
+    }
+    
+    @Override
+    public long getInsertLatencyP99() {
+        return this.insertLatency.getValueAtPercentile(0.99);
+    }
+    
+    @Override
+    public long getDropLatencyP50() {
+        return this.dropLatency.getValueAtPercentile(0.50);
+    }
+    
+    @Override
+    public long getDropLatencyP99() {
+        return this.dropLatency.getValueAtPercentile(0.99);
+    }
+    
+    @Override
+    public long getInsertShiftP99() {
+        return this.insertShift.getValueAtPercentile(0.99);
+    }
+    
+    @Override
+    public long getDropShiftP99() {
+        return this.dropShift.getValueAtPercentile(0.99);
+    }
+    
+    @Override
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        try {
+            this.writeText(text);
+        } catch (IOException e) {
+            // StringBuilder never throws, but Appendable says it might
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+    
+    @Override
+    public void reset() {
+        this.insertLatency.reset();
+        this.dropLatency.reset();
+        this.insertShift.reset();
+        this.dropShift.reset();
+    }
+    
+    /**
+     * Write the metrics in the Prometheus text exposition format
+     * 
+     * @param out Where to write the metrics
+     * @throws IOException If writing fails
+     */
+    public void writeText(Appendable out) throws IOException {
+        writeCounter(out, "inventory_inserts_total", 
+                "Items inserted", this.getInserts());
+        writeCounter(out, "inventory_insert_rejections_total", 
+                "Items turned away from full inventories", 
+                this.getInsertRejections());
+        writeCounter(out, "inventory_drops_total", 
+                "Items dropped or taken", this.getDrops());
+        writeCounter(out, "inventory_drop_misses_total", 
+                "Drops or takes with an invalid index", this.getDropMisses());
+        
+        out.append("# HELP inventory_fill_ratio ")
+                .append("Items held as a fraction of capacity\n");
+        out.append("# TYPE inventory_fill_ratio gauge\n");
+        out.append("inventory_fill_ratio ")
+                .append(Double.toString(this.getFillRatio())).append('\n');
+        
+        writeSummary(out, "inventory_insert_latency_nanoseconds", 
+                "Time taken to insert an item", this.insertLatency);
+        writeSummary(out, "inventory_drop_latency_nanoseconds", 
+                "Time taken to drop an item", this.dropLatency);
+        writeSummary(out, "inventory_insert_shift_items", 
+                "Items moved to make room for an insert", this.insertShift);
+        writeSummary(out, "inventory_drop_shift_items", 
+                "Items moved to close the gap left by a drop", 
+                this.dropShift);
+    }
+    
+    /**
+     * Start measuring an inventory. Called by the inventory when the metrics
+     * are attached to it
+     * 
+     * @param inventory The inventory
+     */
+    void attached(Inventory inventory) {
+        this.attachedItems.add(inventory.getNumItems());
+        this.capacity.add(inventory.getMaxCapacity());
+    }
+    
+    /**
+     * Stop measuring an inventory. Called by the inventory when the metrics
+     * are detached from it
+     * 
+     * @param inventory The inventory
+     */
+    void detached(Inventory inventory) {
+        this.attachedItems.add(-inventory.getNumItems());
+        this.capacity.add(-inventory.getMaxCapacity());
+    }
+    
+    /**
+     * Decide whether to time a change
+     * 
+     * @param version The version of the inventory before the change
+     * @return The current time in nanoseconds if the change should be 
+     * sampled, otherwise 0
+     */
+    long start(int version) {
+        return (version & this.sampleMask) == 0 ? System.nanoTime() : 0;
+    }
+    
+    /**
+     * Record a sampled insert, along with the inserts counted since the last
+     * sample
+     * 
+     * @param count The number of items inserted since the last sample, 
+     * including this one
+     * @param shift The number of items moved to make room for this one
+     * @param start The value returned by start before the insert
+     */
+    void inserted(int count, int shift, long start) {
+        this.insertLatency.record(System.nanoTime() - start);
+        this.insertShift.record(shift);
+        this.inserts.add(count);
+    }
+    
+    /**
+     * Record items being inserted in a batch
+     * 
+     * @param count The number of items inserted
+     * @param rejected The number of items turned away
+     */
+    void insertedAll(int count, int rejected) {
+        if(count > 0) {
+            this.inserts.add(count);
+        }
+        if(rejected > 0) {
+            this.insertRejections.add(rejected);
+        }
+    }
+    
+    /**
+     * Record an item being turned away because the inventory is full
+     */
+    void insertRejected() {
+        this.insertRejections.increment();
+    }
+    
+    /**
+     * Record a sampled drop, along with the drops counted since the last 
+     * sample
+     * 
+     * @param count The number of items dropped or taken since the last 
+     * sample, including this one
+     * @param shift The number of items moved to close the gap
+     * @param start The value returned by start before the drop
+     */
+    void dropped(int count, int shift, long start) {
+        this.dropLatency.record(System.nanoTime() - start);
+        this.dropShift.record(shift);
+        this.drops.add(count);
+    }
+    
+    /**
+     * Record items being dropped in a batch
+     * 
+     * @param count The number of items dropped
+     */
+    void droppedAll(int count) {
+        if(count > 0) {
+            this.drops.add(count);
+        }
+    }
+    
+    /**
+     * Record an attempt to drop or take an item with an invalid index
+     */
+    void dropMissed() {
+        this.dropMisses.increment();
+    }
+    
+    /**
+     * Write a counter in the text exposition format
+     * 
+     * @param out Where to write the counter
+     * @param name The name of the counter
+     * @param help A description of the counter
+     * @param value The value of the counter
+     * @throws IOException If writing fails
+     */
+    private static void writeCounter(Appendable out, String name, String help,
+            long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(Long.toString(value))
+                .append('\n');
+    }
+    
+    /**
+     * Write a histogram as a summary in the text exposition format
+     * 
+     * @param out Where to write the summary
+     * @param name The name of the summary
+     * @param help A description of the summary
+     * @param histogram The recorded values
+     * @throws IOException If writing fails
+     */
+    private static void writeSummary(Appendable out, String name, String help,
+            LogHistogram histogram) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+        for(String quantile : new String[] { "0.5", "0.9", "0.99", "1" }) {
+            out.append(name).append("{quantile=\"").append(quantile)
+                    .append("\"} ")
+                    .append(Long.toString(histogram.getValueAtPercentile(
+                            Double.parseDouble(quantile))))
+                    .append('\n');
+        }
+        out.append(name).append("_count ")
+                .append(Long.toString(histogram.getCount())).append('\n');
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * Keeps an immutable copy of an inventory up to date as it changes, so that
+ * other threads can read the contents without locking the inventory. Each 
+ * change to the inventory publishes a new PersistentInventory, and a reader 
+ * holding an earlier one keeps seeing the contents as they were when it got
+ * it.
+ * 
+ * The inventory itself should only be changed by one thread at a time, as 
+ * usual. Readers on any thread may call current at any time.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryMirror implements IInventoryListener {
+    /**
+     * The inventory being mirrored
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The latest copy of the inventory
+     */
+    private volatile PersistentInventory current;
+    
+    /**
+     * Constructor for the InventoryMirror class. Copies the current contents
+     * of the inventory, then keeps the copy up to date as it changes.
+     * 
+     * @param inventory The inventory to mirror
+     */
+    public InventoryMirror( Inventory inventory ) {
+        this.inventory = inventory;
+        this.current = PersistentInventory.of(inventory);
+        inventory.addListener(this);
+    }
+    
+    /**
+     * Stop keeping the copy up to date
+     */
+    public void detach() {
+        this.inventory.removeListener(this);
+    }
+    
+    /**
+     * Get the latest copy of the inventory
+     * 
+     * @return The contents of the inventory as of its last change
+     */
+    public PersistentInventory current() {
+        return this.current;
+    }
+    
+    @Override
+    public void itemInserted(Inventory inventory, int index, IItem item) {
+        // Both inventories place an item after others with the same name, so
+        // the item lands at the same index in the copy
+        this.current = this.current.withItem(item);
+    }
+    
+    @Override
+    public void itemDropped(Inventory inventory, int index, IItem item) {
+        this.current = this.current.withoutItem(index);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puts load on an InventoryNioServer by opening many sessions at once, each 
+ * sending batches of create, get, put and drop commands without waiting for
+ * the responses in between. Reports the median and 99th percentile time 
+ * taken to answer a batch.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryNioLoadClient {
+    /**
+     * Run the load test
+     * 
+     * @param args The port of the server on the loopback address, the number 
+     * of sessions, the number of batches per session and the number of 
+     * requests per batch
+     * @throws InterruptedException If interrupted while waiting for sessions
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? 
+                Integer.parseInt(args[0]) : InventoryNioServer.DEFAULT_PORT;
+        int numSessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int numBatches = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        
+        long [][] latencies = new long[numSessions][];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(numSessions);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = 
+                InventoryServer.newThreadPerTaskExecutor();
+        
+        // Connect every session first, then set them all going at once
+        for(int i=0; i<numSessions; i++) {
+            int session = i;
+            executor.execute(() -> {
+                try {
+                    latencies[session] = runSession(port, numBatches, 
+                            batchSize, ready, start);
+                } catch(IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                    ready.countDown();
+                }
+            });
+        }
+        
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - begin;
+        
+        // Gather up the latencies of every batch
+        long [] all = Arrays.stream(latencies)
+                .filter(l -> l != null)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        long numRequests = (long)all.length * batchSize;
+        
+        System.out.printf("sessions: %d (%d failed)%n", numSessions, 
+                failures.get());
+        System.out.printf("requests: %d in %.2f s (%.0f/s)%n", numRequests,
+                elapsed / 1e9, numRequests / (elapsed / 1e9));
+        if(all.length > 0) {
+            System.out.printf("batch p50: %.1f us%n", 
+                    percentile(all, 0.50) / 1e3);
+            System.out.printf("batch p99: %.1f us%n", 
+                    percentile(all, 0.99) / 1e3);
+            System.out.printf("batch max: %.1f us%n", 
+                    all[all.length - 1] / 1e3);
+        }
+    }
+    
+    /**
+     * Open a connection to the server
+     * 
+     * @param port The port of the server
+     * @return The connection
+     * @throws IOException If the connection can't be made
+     */
+    private static SocketChannel connect(int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+        return channel;
+    }
+    
+    /**
+     * Define an item on the server
+     * 
+     * @param channel The connection to the server
+     * @param type The type of the item
+     * @param name The name of the item
+     * @param description The description of the item
+     * @return The item's definition id
+     * @throws IOException If talking to the server fails
+     */
+    private static int define(SocketChannel channel, ItemType type, 
+            String name, String description) throws IOException {
+        byte [] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte [] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+        
+        ByteBuffer request = ByteBuffer.allocate(
+                6 + nameBytes.length + descriptionBytes.length);
+        request.put((byte)'D');
+        request.put(type.getTag());
+        request.putShort((short)nameBytes.length);
+        request.put(nameBytes);
+        request.putShort((short)descriptionBytes.length);
+        request.put(descriptionBytes);
+        request.flip();
+        while(request.hasRemaining()) {
+            channel.write(request);
+        }
+        
+        ByteBuffer response = ByteBuffer.allocate(
+                InventoryNioServer.RESPONSE_SIZE);
+        readFully(channel, response);
+        if(response.get(0) != InventoryNioServer.STATUS_OK) {
+            throw new IOException("Couldn't define " + name);
+        }
+        return response.getInt(2);
+    }
+    
+    /**
+     * Build a batch of requests which each session sends over and over
+     * 
+     * @param sword The definition id of a sword
+     * @param potion The definition id of a potion
+     * @param batchSize The number of requests in the batch
+     * @return The requests, ready to be written
+     */
+    private static ByteBuffer createBatch(int sword, int potion, 
+            int batchSize) {
+        ByteBuffer batch = ByteBuffer.allocate(batchSize * 5);
+        for(int i=0; i<batchSize; i++) {
+            switch(i % 7) {
+                case 0: batch.put((byte)'c').putInt(sword); break;
+                case 1: batch.put((byte)'c').putInt(potion); break;
+                case 2: batch.put((byte)'g').putInt(0); break;
+                case 3: batch.put((byte)'p'); break;
+                case 4: batch.put((byte)'g').putInt(1); break;
+                case 5: batch.put((byte)'d'); break;
+                default: batch.put((byte)'n'); break;
+            }
+        }
+        batch.flip();
+        return batch;
+    }
+    
+    /**
+     * Run one session against the server. The session defines its items 
+     * first, since definition ids only hold on the connection which made 
+     * them, then creates items by id alone
+     * 
+     * @param port The port of the server
+     * @param numBatches The number of batches to send
+     * @param batchSize The number of requests in each batch
+     * @param ready Counted down once the session is connected
+     * @param start Waited on before sending any requests
+     * @return The time taken to answer each batch in nanoseconds
+     * @throws IOException If talking to the server fails
+     * @throws InterruptedException If interrupted while waiting to start
+     */
+    private static long [] runSession(int port, int numBatches, int batchSize,
+            CountDownLatch ready, CountDownLatch start) 
+            throws IOException, InterruptedException {
+        long [] latencies = new long[numBatches];
+        ByteBuffer responses = ByteBuffer.allocate(
+                batchSize * InventoryNioServer.RESPONSE_SIZE);
+        
+        try(SocketChannel channel = connect(port)) {
+            int sword = define(channel, ItemType.SWORD, "Sword", "Pointy.");
+            int potion = define(channel, ItemType.POTION, "Potion", 
+                    "Could be magical.");
+            ByteBuffer batch = createBatch(sword, potion, batchSize);
+            ready.countDown();
+            start.await();
+            
+            for(int i=0; i<numBatches; i++) {
+                long begin = System.nanoTime();
+                batch.rewind();
+                while(batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                responses.clear();
+                readFully(channel, responses);
+                latencies[i] = System.nanoTime() - begin;
+            }
+            
+            channel.write(ByteBuffer.wrap(new byte[] { 'q' }));
+        }
+        
+        return latencies;
+    }
+    
+    /**
+     * Fill a buffer from the server
+     * 
+     * @param channel The connection to the server
+     * @param buffer The buffer to fill
+     * @throws IOException If the server closes the connection first
+     */
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) 
+            throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+    }
+    
+    /**
+     * Get a percentile of some sorted values
+     * 
+     * @param sorted The values, in ascending order
+     * @param fraction The percentile as a fraction between 0 and 1
+     * @return The value at that percentile
+     */
+    private static long percentile(long [] sorted, double fraction) {
+        int index = (int)Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Serves the InventoryDemo commands over a compact binary protocol, using a 
+ * single thread and a selector rather than a thread per connection. Each 
+ * connection gets its own session, with its own inventory and hand.
+ * 
+ * Clients may send many requests without waiting for the responses. Every 
+ * complete request in a packet is decoded straight from the receive buffer
+ * and answered in order, and the responses are collected in buffers which 
+ * are written back together with a single gathering write. Items are created
+ * from definition ids rather than names, so the commands themselves never 
+ * create any Strings. Definitions belong to the connection which made them,
+ * and each connection may make at most MAX_DEFINITIONS, so clients can't 
+ * grow any registry shared with other connections.
+ * 
+ * A client which sends requests faster than it reads the responses is made
+ * to wait: once MAX_QUEUED_BUFFERS buffers of responses are waiting to be 
+ * sent the server stops reading from the connection, and starts again once
+ * they have all been sent. A connection which sends an unknown command, or 
+ * whose request fails unexpectedly, is closed without affecting any other.
+ * 
+ * Requests start with a one byte command, followed by its arguments. All 
+ * numbers are big-endian:
+ * <pre>
+ * 'D'  byte type, short length, name as UTF-8, short length, description
+ *      as UTF-8         define an item (type 1: Sword, 2: Shield, 3: Potion)
+ *                       and respond with its definition id, which is 
+ *                       only valid on this connection
+ * 'c'  int definition   create an item and put it in the inventory
+ * 'g'  int index        take an item from the inventory and respond with
+ *                       its definition id
+ * 'p'                   put the held item back in the inventory
+ * 'd'                   drop the held item
+ * 'n'                   respond with the number of items and the capacity
+ * 'q'                   end the session
+ * </pre>
+ * 
+ * Every response is RESPONSE_SIZE bytes: a status byte (STATUS_OK or 
+ * STATUS_ERROR), the command byte it answers and two ints whose meaning 
+ * depends on the command.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryNioServer implements Closeable {
+    /**
+     * The port to listen on if none is given
+     */
+    public static final int DEFAULT_PORT = 7778;
+    
+    /**
+     * The size of every response in bytes
+     */
+    public static final int RESPONSE_SIZE = 10;
+    
+    /**
+     * Status of a request which succeeded
+     */
+    public static final byte STATUS_OK = 0;
+    
+    /**
+     * Status of a request which failed
+     */
+    public static final byte STATUS_ERROR = 1;
+    
+    /**
+     * The most items each connection may define
+     */
+    public static final int MAX_DEFINITIONS = 1024;
+    
+    /**
+     * The size of each connection's receive buffer, and so the largest 
+     * request that can be sent
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 16 * 1024;
+    
+    /**
+     * The size of each buffer responses are collected in
+     */
+    private static final int SEND_BUFFER_SIZE = 4 * 1024;
+    
+    /**
+     * The number of full buffers of responses waiting to be sent at which 
+     * the server stops reading requests from a connection
+     */
+    private static final int MAX_QUEUED_BUFFERS = 16;
+    
+    /**
+     * Measures the inventories of every session
+     */
+    private final InventoryMetrics metrics;
+    
+    /**
+     * Waits for connections to be ready
+     */
+    private final Selector selector;
+    
+    /**
+     * The socket accepting connections
+     */
+    private final ServerSocketChannel serverChannel;
+    
+    /**
+     * Constructor for the InventoryNioServer class. Listens on the loopback
+     * address only.
+     * 
+     * @param port The port to listen on, or 0 to pick any free port
+     * @throws IOException If the socket can't be opened
+     */
+    public InventoryNioServer( int port ) throws IOException {
+        this.metrics = new InventoryMetrics();
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 1024);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+    
+    /**
+     * Get the port the server is listening on
+     * 
+     * @return The port
+     */
+    public int getPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+    
+    /**
+     * Get the metrics measuring the inventories of every session
+     * 
+     * @return The metrics
+     */
+    public InventoryMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Handle connections until the server is closed
+     * 
+     * @throws IOException If waiting for connections fails
+     */
+    public void serve() throws IOException {
+        while(this.selector.isOpen()) {
+            this.selector.select();
+            if(!this.selector.isOpen()) {
+                break;
+            }
+            
+            Iterator<SelectionKey> keys = 
+                    this.selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                
+                try {
+                    if(key.isAcceptable()) {
+                        this.accept();
+                    } else {
+                        Connection connection = (Connection)key.attachment();
+                        if(key.isReadable()) {
+                            connection.read();
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                } catch(IOException | RuntimeException e) {
+                    // The client went away, or its request failed. Nothing 
+                    // to do but end its session, leaving the others running
+                    if(key.attachment() instanceof Connection) {
+                        ((Connection)key.attachment()).close();
+                    } else {
+                        key.channel().close();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stop accepting connections and end all sessions
+     * 
+     * @throws IOException If closing the sockets fails
+     */
+    @Override
+    public void close() throws IOException {
+        for(SelectionKey key : this.selector.keys()) {
+            key.channel().close();
+        }
+        this.selector.close();
+    }
+    
+    /**
+     * Accept a waiting connection
+     * 
+     * @throws IOException If accepting the connection fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if(channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(this.selector, 
+                SelectionKey.OP_READ);
+        Connection connection = new Connection(channel, key);
+        connection.session.getInventory().setMetrics(this.metrics);
+        key.attach(connection);
+    }
+    
+    /**
+     * The state of a single connection
+     */
+    private static final class Connection {
+        /**
+         * The registry holding the items this connection has defined
+         */
+        private final ItemRegistry registry;
+        
+        /**
+         * The connection's socket
+         */
+        private final SocketChannel channel;
+        
+        /**
+         * The connection's registration with the selector
+         */
+        private final SelectionKey key;
+        
+        /**
+         * The player's session
+         */
+        private final InventorySession session;
+        
+        /**
+         * Requests which have been received but not yet handled
+         */
+        private final ByteBuffer received;
+        
+        /**
+         * The buffer new responses are added to
+         */
+        private ByteBuffer filling;
+        
+        /**
+         * Full buffers of responses waiting to be sent, oldest first
+         */
+        private final ArrayDeque<ByteBuffer> sending;
+        
+        /**
+         * Empty buffers which can be reused for responses
+         */
+        private final ArrayDeque<ByteBuffer> spare;
+        
+        /**
+         * Used to hand the waiting buffers to a gathering write
+         */
+        private ByteBuffer [] gather;
+        
+        /**
+         * True once the client has asked to end the session
+         */
+        private boolean closing;
+        
+        /**
+         * True while too many responses are waiting to be sent, and requests
+         * aren't being read
+         */
+        private boolean paused;
+        
+        /**
+         * Constructor for the Connection class
+         * 
+         * @param channel The connection's socket
+         * @param key The connection's registration with the selector
+         */
+        private Connection( SocketChannel channel, SelectionKey key ) {
+            this.registry = new ItemRegistry(MAX_DEFINITIONS);
+            this.channel = channel;
+            this.key = key;
+            this.session = new InventorySession();
+            this.received = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+            this.filling = ByteBuffer.allocate(SEND_BUFFER_SIZE);
+            this.sending = new ArrayDeque<>();
+            this.spare = new ArrayDeque<>();
+            this.gather = new ByteBuffer[4];
+            this.closing = false;
+            this.paused = false;
+        }
+        
+        /**
+         * Read whatever the client has sent and handle every complete 
+         * request in it
+         * 
+         * @throws IOException If reading or writing the socket fails
+         */
+        private void read() throws IOException {
+            if(this.channel.read(this.received) < 0) {
+                this.close();
+                return;
+            }
+            this.process();
+        }
+        
+        /**
+         * Handle every complete request which has been received, until too 
+         * many responses are waiting to be sent, then send what we can
+         * 
+         * @throws IOException If writing the socket fails
+         */
+        private void process() throws IOException {
+            // Handle each complete request, leaving any partial request at
+            // the end in the buffer for next time
+            this.received.flip();
+            while(!this.closing && this.sending.size() < MAX_QUEUED_BUFFERS
+                    && this.handle()) {
+                // Keep going until we run out of complete requests
+            }
+            this.paused = this.sending.size() >= MAX_QUEUED_BUFFERS;
+            this.received.compact();
+            
+            // A full buffer is only a problem if we weren't holding back
+            if(!this.paused && !this.received.hasRemaining()) {
+                throw new IOException("Request too large");
+            }
+            
+            this.write();
+        }
+        
+        /**
+         * Handle the request at the start of the received buffer
+         * 
+         * @return True if a request was handled, false if there isn't a 
+         * complete request in the buffer
+         */
+        private boolean handle() {
+            ByteBuffer in = this.received;
+            if(!in.hasRemaining()) {
+                return false;
+            }
+            
+            int start = in.position();
+            byte command = in.get(start);
+            switch(command) {
+                case 'D': {
+                    // Work out whether the whole request has arrived before 
+                    // reading any of it
+                    if(in.remaining() < 4) {
+                        return false;
+                    }
+                    int nameLength = in.getShort(start + 2) & 0xffff;
+                    if(in.remaining() < 6 + nameLength) {
+                        return false;
+                    }
+                    int descriptionLength = 
+                            in.getShort(start + 4 + nameLength) & 0xffff;
+                    if(in.remaining() < 6 + nameLength + descriptionLength) {
+                        return false;
+                    }
+                    
+                    ItemType type = ItemType.fromTag(in.get(start + 1));
+                    in.position(start + 4);
+                    String name = readString(in, nameLength);
+                    in.position(in.position() + 2);
+                    String description = readString(in, descriptionLength);
+                    
+                    if(type == null) {
+                        this.respond(STATUS_ERROR, command, 0, 0);
+                    } else {
+                        ItemDefinition definition = 
+                                this.registry.define(type, name, description);
+                        if(definition == null) {
+                            this.respond(STATUS_ERROR, command, 0, 0);
+                        } else {
+                            this.respond(STATUS_OK, command, 
+                                    definition.getId(), 0);
+                        }
+                    }
+                    return true;
+                }
+                case 'c': {
+                    if(in.remaining() < 5) {
+                        return false;
+                    }
+                    in.get();
+                    ItemDefinition definition = this.registry.get(in.getInt());
+                    boolean ok = definition != null && 
+                            this.session.createItem(definition);
+                    this.respond(ok ? STATUS_OK : STATUS_ERROR, command, 0, 0);
+                    return true;
+                }
+                case 'g': {
+                    if(in.remaining() < 5) {
+                        return false;
+                    }
+                    in.get();
+                    IItem item = this.session.getItem(in.getInt());
+                    ItemDefinition definition = item == null ? 
+                            null : this.registry.define(item);
+                    if(definition == null) {
+                        this.respond(STATUS_ERROR, command, 0, 0);
+                    } else {
+                        this.respond(STATUS_OK, command, 
+                                definition.getId(), 0);
+                    }
+                    return true;
+                }
+                case 'p':
+                    in.get();
+                    this.respond(this.session.putItem() ? 
+                            STATUS_OK : STATUS_ERROR, command, 0, 0);
+                    return true;
+                case 'd':
+                    in.get();
+                    this.respond(this.session.dropItem() ? 
+                            STATUS_OK : STATUS_ERROR, command, 0, 0);
+                    return true;
+                case 'n': {
+                    in.get();
+                    Inventory inventory = this.session.getInventory();
+                    this.respond(STATUS_OK, command, inventory.getNumItems(),
+                            inventory.getMaxCapacity());
+                    return true;
+                }
+                case 'q':
+                    in.get();
+                    this.respond(STATUS_OK, command, 0, 0);
+                    this.closing = true;
+                    return true;
+                default:
+                    // We can't tell where an unknown request ends, so we 
+                    // can't find the next one either. Answer with an error 
+                    // and end the session
+                    in.position(in.limit());
+                    this.respond(STATUS_ERROR, command, 0, 0);
+                    this.closing = true;
+                    return true;
+            }
+        }
+        
+        /**
+         * Queue a response to be sent
+         * 
+         * @param status STATUS_OK or STATUS_ERROR
+         * @param command The command being answered
+         * @param first The first value of the response
+         * @param second The second value of the response
+         */
+        private void respond(byte status, byte command, int first, 
+                int second) {
+            if(this.filling.remaining() < RESPONSE_SIZE) {
+                this.finishFilling();
+            }
+            
+            ByteBuffer out = this.filling;
+            out.put(status);
+            out.put(command);
+            out.putInt(first);
+            out.putInt(second);
+        }
+        
+        /**
+         * Queue the buffer responses are being added to for sending, and 
+         * start a new one
+         */
+        private void finishFilling() {
+            this.filling.flip();
+            this.sending.add(this.filling);
+            this.filling = this.spare.isEmpty() ? 
+                    ByteBuffer.allocate(SEND_BUFFER_SIZE) : this.spare.poll();
+        }
+        
+        /**
+         * Send as many of the queued responses as the socket will take, and
+         * ask to be told when it can take more if any are left
+         * 
+         * @throws IOException If writing the socket fails
+         */
+        private void write() throws IOException {
+            if(this.filling.position() > 0) {
+                this.finishFilling();
+            }
+            
+            if(!this.sending.isEmpty()) {
+                // Send every waiting buffer with a single write
+                if(this.gather.length < this.sending.size()) {
+                    this.gather = new ByteBuffer[this.sending.size() * 2];
+                }
+                int count = 0;
+                for(ByteBuffer out : this.sending) {
+                    this.gather[count++] = out;
+                }
+                this.channel.write(this.gather, 0, count);
+                
+                // Recycle the buffers which have been sent in full
+                while(!this.sending.isEmpty() && 
+                        !this.sending.peek().hasRemaining()) {
+                    ByteBuffer out = this.sending.poll();
+                    out.clear();
+                    this.spare.add(out);
+                }
+            }
+            
+            boolean drained = this.sending.isEmpty();
+            if(drained && this.closing) {
+                this.close();
+            } else if(drained && this.paused) {
+                // Everything has been sent, so carry on with the requests we
+                // held back, which starts reading again once they are done
+                this.paused = false;
+                this.process();
+            } else if(this.channel.isOpen()) {
+                int ops = drained ? 0 : SelectionKey.OP_WRITE;
+                if(!this.paused) {
+                    ops |= SelectionKey.OP_READ;
+                }
+                this.key.interestOps(ops);
+            }
+        }
+        
+        /**
+         * End the session. The inventory stops being measured, and the 
+         * socket is closed
+         * 
+         * @throws IOException If closing the socket fails
+         */
+        private void close() throws IOException {
+            if(this.channel.isOpen()) {
+                this.session.getInventory().setMetrics(null);
+                this.channel.close();
+            }
+        }
+        
+        /**
+         * Read a UTF-8 string from a buffer
+         * 
+         * @param in The buffer
+         * @param length The length of the string in bytes
+         * @return The string
+         */
+        private static String readString(ByteBuffer in, int length) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(),
+                    length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+    }
+}
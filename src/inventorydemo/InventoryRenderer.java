@@ -0,0 +1,460 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders the contents of an inventory as text, one line per slot. This is 
+ * the same listing that Inventory.listContents prints to the command line, 
+ * but it can be written to any Appendable (such as a Writer or 
+ * StringBuilder) or encoded as UTF-8 straight into a ByteBuffer or an 
+ * OutputStream.
+ * 
+ * The listing is built up piece by piece rather than going through a format
+ * string, so rendering an inventory doesn't create any objects per item. The
+ * one exception is encoding a name or description containing non-ASCII 
+ * characters into a ByteBuffer. Characters which can't be encoded, such as
+ * half of a surrogate pair, are replaced with '?'.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryRenderer {
+    /**
+     * The minimum width of the index column
+     */
+    private static final int INDEX_WIDTH = 2;
+    
+    /**
+     * The minimum width of the name column
+     */
+    private static final int NAME_WIDTH = 7;
+    
+    /**
+     * Text shown in place of the name for slots that haven't been filled
+     */
+    private static final String EMPTY = "EMPTY";
+    
+    /**
+     * Text placed between the index and the rest of the line
+     */
+    private static final String INDEX_SEPARATOR = ": ";
+    
+    /**
+     * Text placed between the name and the description of an item
+     */
+    private static final String NAME_SEPARATOR = " --> ";
+    
+    /**
+     * Pre-encoded INDEX_SEPARATOR
+     */
+    private static final byte [] INDEX_SEPARATOR_BYTES = 
+            INDEX_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * Pre-encoded NAME_SEPARATOR
+     */
+    private static final byte [] NAME_SEPARATOR_BYTES = 
+            NAME_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * Pre-encoded EMPTY, padded out to the width of the name column
+     */
+    private static final byte [] EMPTY_BYTES = 
+            String.format("%-" + NAME_WIDTH + "s", EMPTY)
+                    .getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * The size of the buffer used to write a listing to a stream
+     */
+    private static final int WRITE_BUFFER_SIZE = 8192;
+    
+    /**
+     * True if slots that haven't been filled should be left out
+     */
+    private final boolean skipEmpty;
+    
+    /**
+     * Lines are encoded into this before being written to a stream. Only 
+     * allocated once something is written to a stream
+     */
+    private ByteBuffer writeBuffer;
+    
+    /**
+     * Default constructor for the InventoryRenderer class. Empty slots are 
+     * shown as "EMPTY"
+     */
+    public InventoryRenderer() {
+        this(false);
+    }
+    
+    /**
+     * Constructor for the InventoryRenderer class
+     * 
+     * @param skipEmpty True if slots that haven't been filled should be left
+     * out of the listing
+     */
+    public InventoryRenderer( boolean skipEmpty ) {
+        this.skipEmpty = skipEmpty;
+        this.writeBuffer = null;
+    }
+    
+    /**
+     * Write a listing of an inventory's contents
+     * 
+     * @param inventory The inventory to list
+     * @param out Where to write the listing
+     * @throws IOException If writing to out fails
+     */
+    public void render(Inventory inventory, Appendable out) 
+            throws IOException {
+        int numItems = inventory.getNumItems();
+        int slots = this.skipEmpty ? numItems : inventory.getMaxCapacity();
+        
+        for(int i=0; i<slots; i++) {
+            // Write the index of the current item
+            appendIndex(out, i);
+            out.append(INDEX_SEPARATOR);
+            
+            // If this slot isn't empty, write the item details
+            if( i < numItems ) {
+                IItem item = inventory.peekItem(i);
+                String name = item.getName();
+                out.append(name);
+                appendPadding(out, NAME_WIDTH - name.length());
+                out.append(NAME_SEPARATOR);
+                out.append(item.getDescription());
+            } else {
+                // Write empty if the slot doesn't contain an item
+                out.append(EMPTY);
+                appendPadding(out, NAME_WIDTH - EMPTY.length());
+            }
+            out.append('\n');
+        }
+    }
+    
+    /**
+     * Encode a listing of an inventory's contents as UTF-8 into a buffer. 
+     * The listing is written at the buffer's position, which is moved on past
+     * it.
+     * 
+     * @param inventory The inventory to list
+     * @param out The buffer to write the listing into
+     * @throws BufferOverflowException If the listing doesn't fit in
+     * the buffer's remaining space
+     */
+    public void render(Inventory inventory, ByteBuffer out) {
+        int numItems = inventory.getNumItems();
+        int slots = this.skipEmpty ? numItems : inventory.getMaxCapacity();
+        
+        for(int i=0; i<slots; i++) {
+            putLine(out, i, i < numItems ? inventory.peekItem(i) : null);
+        }
+    }
+    
+    /**
+     * Write a listing of an inventory's contents to a stream as UTF-8. The 
+     * lines are encoded into a buffer which is written out in bulk whenever 
+     * it fills up, so the stream sees a handful of large writes rather than 
+     * one per character
+     * 
+     * @param inventory The inventory to list
+     * @param out The stream to write the listing to
+     * @throws IOException If writing to out fails
+     */
+    public synchronized void write(Inventory inventory, OutputStream out) 
+            throws IOException {
+        if(this.writeBuffer == null) {
+            this.writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        }
+        
+        int numItems = inventory.getNumItems();
+        int slots = this.skipEmpty ? numItems : inventory.getMaxCapacity();
+        
+        ByteBuffer buffer = this.writeBuffer;
+        buffer.clear();
+        for(int i=0; i<slots; i++) {
+            // Write out what we have if the line might not fit
+            IItem item = i < numItems ? inventory.peekItem(i) : null;
+            int length = maxLineLength(i, item);
+            if(length > buffer.remaining()) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+                
+                // Grow the buffer if the line might not fit even when empty
+                if(length > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(
+                            Math.max(length, buffer.capacity() * 2));
+                    this.writeBuffer = buffer;
+                }
+            }
+            putLine(buffer, i, item);
+        }
+        out.write(buffer.array(), 0, buffer.position());
+        out.flush();
+    }
+    
+    /**
+     * Put a single line of a listing
+     * 
+     * @param out The buffer to put the line into
+     * @param index The index of the slot the line is for
+     * @param item The item in the slot, or null if the slot is empty
+     * @throws BufferOverflowException If the line doesn't fit in the 
+     * buffer's remaining space
+     */
+    private static void putLine(ByteBuffer out, int index, IItem item) {
+        // Write the index of the current item
+        putIndex(out, index);
+        out.put(INDEX_SEPARATOR_BYTES);
+        
+        // If this slot isn't empty, write the item details
+        if( item != null ) {
+            String name = item.getName();
+            putString(out, name);
+            putPadding(out, NAME_WIDTH - name.length());
+            out.put(NAME_SEPARATOR_BYTES);
+            putString(out, item.getDescription());
+        } else {
+            // Write empty if the slot doesn't contain an item
+            out.put(EMPTY_BYTES);
+        }
+        out.put((byte)'\n');
+    }
+    
+    /**
+     * Work out the most space a single line of a listing could take up. 
+     * Each char takes at most three bytes in UTF-8
+     * 
+     * @param index The index of the slot the line is for
+     * @param item The item in the slot, or null if the slot is empty
+     * @return The longest the line could be in bytes
+     */
+    private static int maxLineLength(int index, IItem item) {
+        int length = lineStartLength(index) + 1;
+        if( item != null ) {
+            length += 3 * item.getName().length() + NAME_WIDTH + 
+                    NAME_SEPARATOR_BYTES.length + 
+                    3 * item.getDescription().length();
+        } else {
+            length += EMPTY_BYTES.length;
+        }
+        return length;
+    }
+    
+    /**
+     * Encode the details of an item as they appear in a listing: the name, 
+     * padded to the width of the name column, then the description
+     * 
+     * @param item The item to encode
+     * @return The details as UTF-8
+     */
+    static byte [] encodeItem(IItem item) {
+        byte [] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        byte [] description = 
+                item.getDescription().getBytes(StandardCharsets.UTF_8);
+        int padding = Math.max(0, NAME_WIDTH - item.getName().length());
+        
+        ByteBuffer out = ByteBuffer.allocate(name.length + padding + 
+                NAME_SEPARATOR_BYTES.length + description.length);
+        out.put(name);
+        putPadding(out, padding);
+        out.put(NAME_SEPARATOR_BYTES);
+        out.put(description);
+        return out.array();
+    }
+    
+    /**
+     * Encode the text shown in place of the details of an empty slot
+     * 
+     * @return The text as UTF-8
+     */
+    static byte [] encodeEmpty() {
+        return EMPTY_BYTES.clone();
+    }
+    
+    /**
+     * Get the length of the start of a line in a listing, up to the details
+     * 
+     * @param index The index of the slot the line is for
+     * @return The length in bytes of the index and the separator after it
+     */
+    static int lineStartLength(int index) {
+        return Math.max(INDEX_WIDTH, countDigits(index)) + 
+                INDEX_SEPARATOR_BYTES.length;
+    }
+    
+    /**
+     * Put the start of a line in a listing: the index, right aligned, and 
+     * the separator after it
+     * 
+     * @param out The buffer to put the start of the line into
+     * @param index The index of the slot the line is for
+     */
+    static void putLineStart(ByteBuffer out, int index) {
+        putIndex(out, index);
+        out.put(INDEX_SEPARATOR_BYTES);
+    }
+    
+    /**
+     * Write an index right aligned to the width of the index column
+     * 
+     * @param out Where to write the index
+     * @param index The index to write
+     * @throws IOException If writing to out fails
+     */
+    private static void appendIndex(Appendable out, int index) 
+            throws IOException {
+        int digits = countDigits(index);
+        appendPadding(out, INDEX_WIDTH - digits);
+        
+        // Write the digits from most to least significant
+        for(int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            out.append((char)('0' + (index / divisor) % 10));
+        }
+    }
+    
+    /**
+     * Write a number of spaces
+     * 
+     * @param out Where to write the spaces
+     * @param count The number of spaces. Nothing is written if this is not 
+     * positive
+     * @throws IOException If writing to out fails
+     */
+    private static void appendPadding(Appendable out, int count) 
+            throws IOException {
+        for(int i=0; i<count; i++) {
+            out.append(' ');
+        }
+    }
+    
+    /**
+     * Put an index right aligned to the width of the index column
+     * 
+     * @param out The buffer to put the index into
+     * @param index The index to put
+     */
+    private static void putIndex(ByteBuffer out, int index) {
+        int digits = countDigits(index);
+        putPadding(out, INDEX_WIDTH - digits);
+        
+        // Put the digits from most to least significant
+        for(int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            out.put((byte)('0' + (index / divisor) % 10));
+        }
+    }
+    
+    /**
+     * Put a number of spaces
+     * 
+     * @param out The buffer to put the spaces into
+     * @param count The number of spaces. Nothing is put if this is not 
+     * positive
+     */
+    private static void putPadding(ByteBuffer out, int count) {
+        for(int i=0; i<count; i++) {
+            out.put((byte)' ');
+        }
+    }
+    
+    /**
+     * Encode a string as UTF-8 into a buffer. Characters which can't be 
+     * encoded are replaced rather than cutting the string short
+     * 
+     * @param out The buffer to put the string into
+     * @param s The string to put
+     * @throws BufferOverflowException If the string doesn't fit in the 
+     * buffer's remaining space
+     */
+    private static void putString(ByteBuffer out, String s) {
+        int length = s.length();
+        
+        // ASCII characters encode to a single byte each, so there's no need 
+        // to go through an encoder for them
+        int i = 0;
+        while(i < length) {
+            char c = s.charAt(i);
+            if(c >= 0x80) {
+                break;
+            }
+            out.put((byte)c);
+            i++;
+        }
+        
+        // Fall back to an encoder for the rest of the string as soon as we 
+        // hit something that isn't ASCII
+        if(i < length) {
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CoderResult result = 
+                    encoder.encode(CharBuffer.wrap(s, i, length), out, true);
+            if(!result.isUnderflow()) {
+                throw new BufferOverflowException();
+            }
+            if(!encoder.flush(out).isUnderflow()) {
+                throw new BufferOverflowException();
+            }
+        }
+    }
+    
+    /**
+     * Count the number of decimal digits in a non-negative number
+     * 
+     * @param n The number
+     * @return The number of digits needed to write n
+     */
+    private static int countDigits(int n) {
+        int digits = 1;
+        while(n >= 10) {
+            n /= 10;
+            digits++;
+        }
+        return digits;
+    }
+    
+    /**
+     * Raise 10 to a non-negative power
+     * 
+     * @param exponent The power
+     * @return 10 to the power of exponent
+     */
+    private static int pow10(int exponent) {
+        int result = 1;
+        for(int i=0; i<exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures how long an InventorySearchIndex takes to answer queries over 
+ * inventories of millions of items. Items are drawn from a catalogue of 
+ * definitions whose names and descriptions are made of words from a fixed
+ * vocabulary, with some words much more common than others. Reports the 
+ * average time per query for a common word, any word, two words and a two 
+ * letter prefix, first with every definition live and then after every item
+ * of half of the definitions has been dropped. A linear scan of the names 
+ * and descriptions with String.contains is timed for comparison.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySearchBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * The number of definitions items are drawn from
+     */
+    private static final int CATALOGUE_SIZE = 200000;
+    
+    /**
+     * The number of words definitions are made from
+     */
+    private static final int VOCABULARY_SIZE = 5000;
+    
+    /**
+     * The number of queries of each kind timed in each round
+     */
+    private static final int QUERIES = 200;
+    
+    /**
+     * The most results asked for by each query
+     */
+    private static final int LIMIT = 20;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of items in millions, one size per argument
+     */
+    public static void main(String[] args) {
+        int [] sizes = args.length > 0 ? 
+                Arrays.stream(args).mapToInt(Integer::parseInt).toArray() :
+                new int [] {1, 2, 4};
+        
+        Random random = new Random(1);
+        String [] vocabulary = vocabulary(random);
+        ItemRegistry registry = new ItemRegistry();
+        ItemDefinition [] catalogue = catalogue(registry, vocabulary, random);
+        
+        System.out.printf("%6s %5s %10s %10s %10s %10s %10s%n", "items", 
+                "live", "common us", "any us", "two us", "prefix us", 
+                "scan us");
+        for(int millions : sizes) {
+            int numItems = millions * 1000000;
+            Inventory inventory = new Inventory(numItems);
+            IItem [] items = new IItem[numItems];
+            for(int i=0; i<numItems; i++) {
+                int definition = (int)((long)i * CATALOGUE_SIZE / numItems);
+                items[i] = catalogue[definition].newItem();
+            }
+            inventory.insertAll(Arrays.asList(items));
+            items = null;
+            InventorySearchIndex index = 
+                    new InventorySearchIndex(inventory, registry);
+            
+            report(numItems, "all", index, inventory, vocabulary);
+            
+            // Drop every item of the odd definitions in one batch
+            int [] odd = new int[inventory.getNumItems()];
+            int numOdd = 0;
+            for(int i=0; i<inventory.getNumItems(); i++) {
+                if((registry.define(inventory.peekItem(i)).getId() & 1) != 0) {
+                    odd[numOdd++] = i;
+                }
+            }
+            inventory.removeAll(Arrays.copyOf(odd, numOdd));
+            report(numItems, "half", index, inventory, vocabulary);
+            
+            index.detach();
+        }
+    }
+    
+    /**
+     * Time each kind of query and print a row of results
+     * 
+     * @param numItems The number of items the inventory was filled with
+     * @param live Which definitions are live
+     * @param index The index to query
+     * @param inventory The inventory being indexed
+     * @param vocabulary The words definitions are made from
+     */
+    private static void report(int numItems, String live, 
+            InventorySearchIndex index, Inventory inventory, 
+            String [] vocabulary) {
+        double [] best = new double[5];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for(int round=0; round<ROUNDS; round++) {
+            Random random = new Random(round);
+            best[0] = Math.min(best[0], time(index, 
+                    queries(random, vocabulary, 10, 1), false));
+            best[1] = Math.min(best[1], time(index, 
+                    queries(random, vocabulary, vocabulary.length, 1), 
+                    false));
+            best[2] = Math.min(best[2], time(index, 
+                    queries(random, vocabulary, vocabulary.length, 2), 
+                    false));
+            best[3] = Math.min(best[3], time(index, 
+                    prefixes(random, vocabulary), true));
+            best[4] = Math.min(best[4], scan(inventory, 
+                    vocabulary[random.nextInt(vocabulary.length)]));
+        }
+        System.out.printf("%5dM %5s %10.1f %10.1f %10.1f %10.1f %10.1f%n", 
+                numItems / 1000000, live, best[0], best[1], best[2], best[3], 
+                best[4]);
+    }
+    
+    /**
+     * Time a set of queries
+     * 
+     * @param index The index to query
+     * @param queries The queries
+     * @param prefix True to search for words starting with the queries
+     * @return The average time per query in microseconds
+     */
+    private static double time(InventorySearchIndex index, String [] queries,
+            boolean prefix) {
+        long found = 0;
+        long begin = System.nanoTime();
+        for(String query : queries) {
+            List<ItemDefinition> results = prefix ? 
+                    index.searchPrefix(query, LIMIT) : 
+                    index.search(query, LIMIT);
+            found += results.size();
+        }
+        long elapsed = System.nanoTime() - begin;
+        published = found;
+        return elapsed / 1e3 / queries.length;
+    }
+    
+    /**
+     * Find the items whose name or description contains a word by checking
+     * every item in turn
+     * 
+     * @param inventory The inventory to search
+     * @param word The word to look for
+     * @return The time taken in microseconds
+     */
+    private static double scan(Inventory inventory, String word) {
+        List<IItem> matches = new ArrayList<>();
+        long begin = System.nanoTime();
+        for(IItem item : inventory) {
+            if(item.getName().toLowerCase(Locale.ROOT).contains(word) || 
+                    item.getDescription().toLowerCase(Locale.ROOT)
+                    .contains(word)) {
+                matches.add(item);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        published = matches.size();
+        return elapsed / 1e3;
+    }
+    
+    /**
+     * Make a set of queries
+     * 
+     * @param random Used to choose the words
+     * @param vocabulary The words to choose from
+     * @param range How many of the most common words to choose from
+     * @param numWords The number of words in each query
+     * @return The queries
+     */
+    private static String [] queries(Random random, String [] vocabulary, 
+            int range, int numWords) {
+        String [] queries = new String[QUERIES];
+        for(int i=0; i<queries.length; i++) {
+            StringBuilder query = new StringBuilder();
+            for(int j=0; j<numWords; j++) {
+                query.append(' ').append(word(random, vocabulary, range));
+            }
+            queries[i] = query.toString();
+        }
+        return queries;
+    }
+    
+    /**
+     * Make a set of two letter prefixes of words in the vocabulary
+     * 
+     * @param random Used to choose the words
+     * @param vocabulary The words to choose from
+     * @return The prefixes
+     */
+    private static String [] prefixes(Random random, String [] vocabulary) {
+        String [] prefixes = new String[QUERIES];
+        for(int i=0; i<prefixes.length; i++) {
+            prefixes[i] = 
+                    word(random, vocabulary, vocabulary.length).substring(0, 2);
+        }
+        return prefixes;
+    }
+    
+    /**
+     * Choose a word, favouring the start of the vocabulary so that a few 
+     * words are much more common than the rest
+     * 
+     * @param random Used to choose the word
+     * @param vocabulary The words to choose from
+     * @param range How many of the most common words to choose from
+     * @return The word
+     */
+    private static String word(Random random, String [] vocabulary, 
+            int range) {
+        double r = random.nextDouble();
+        return vocabulary[(int)(r * r * range)];
+    }
+    
+    /**
+     * Make up a vocabulary of distinct lower case words
+     * 
+     * @param random Used to make the words
+     * @return The words
+     */
+    private static String [] vocabulary(Random random) {
+        List<String> words = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        while(words.size() < VOCABULARY_SIZE) {
+            char [] letters = new char[4 + random.nextInt(5)];
+            for(int i=0; i<letters.length; i++) {
+                letters[i] = (char)('a' + random.nextInt(26));
+            }
+            String word = new String(letters);
+            if(seen.add(word)) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+    
+    /**
+     * Define a catalogue of items with two word names and eight word 
+     * descriptions
+     * 
+     * @param registry The registry in which to define the items
+     * @param vocabulary The words to make names and descriptions from
+     * @param random Used to choose the words
+     * @return The definitions
+     */
+    private static ItemDefinition [] catalogue(ItemRegistry registry, 
+            String [] vocabulary, Random random) {
+        ItemType [] types = ItemType.values();
+        ItemDefinition [] catalogue = new ItemDefinition[CATALOGUE_SIZE];
+        for(int i=0; i<CATALOGUE_SIZE; i++) {
+            String name = word(random, vocabulary, vocabulary.length) + " " + 
+                    word(random, vocabulary, vocabulary.length) + " " + i;
+            StringBuilder description = new StringBuilder();
+            for(int j=0; j<8; j++) {
+                description.append(word(random, vocabulary, vocabulary.length))
+                        .append(j < 7 ? " " : ".");
+            }
+            catalogue[i] = registry.define(types[i % types.length], name, 
+                    description.toString());
+        }
+        return catalogue;
+    }
+}
@@ -0,0 +1,686 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A full text index over the names and descriptions of the items in an 
+ * inventory, kept up to date as items are inserted and dropped.
+ * 
+ * Items which share a definition share the same text, so the index works on
+ * definitions rather than on individual items. Each word maps to a posting
+ * list of the definitions whose name or description contains it, and the 
+ * index keeps a count of how many items of each definition are currently in
+ * the inventory. Definitions whose count drops to zero stay in the posting 
+ * lists but are left out of search results, so dropping an item never has
+ * to touch a posting list. Each posting list counts how many of its 
+ * definitions are live, so words whose items have all been dropped are 
+ * skipped without being read and dead definitions don't make a word look 
+ * more common than it is.
+ * 
+ * Posting lists hold definition ids in ascending order, stored as the 
+ * differences between neighbouring ids encoded as variable length integers.
+ * Most differences fit in a single byte. Queries score straight from the 
+ * encoded lists into arrays indexed by definition id, which are reused from
+ * one query to the next, so a query allocates little more than its results.
+ * 
+ * Results are ranked by how many of the query words match and how rare those
+ * words are, with matches in the name counting for more than matches in the
+ * description. Only Sword, Shield and Potion items are indexed. Like the 
+ * inventory, the index is not thread safe.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySearchIndex implements IInventoryListener {
+    /**
+     * How much more a match in an item's name counts than a match in its
+     * description
+     */
+    private static final double NAME_WEIGHT = 2.0;
+    
+    /**
+     * The inventory being indexed
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The registry holding the definitions of indexed items
+     */
+    private final ItemRegistry registry;
+    
+    /**
+     * Posting lists for the words found in item names
+     */
+    private final TreeMap<String, PostingList> nameWords;
+    
+    /**
+     * Posting lists for the words found in item descriptions
+     */
+    private final TreeMap<String, PostingList> descriptionWords;
+    
+    /**
+     * The number of items of each definition in the inventory, indexed by 
+     * definition id. -1 for definitions which haven't been indexed
+     */
+    private int [] counts;
+    
+    /**
+     * The posting lists containing each definition, indexed by definition id
+     */
+    private PostingList [][] definitionPostings;
+    
+    /**
+     * The number of definitions which have been indexed
+     */
+    private int numDefinitions;
+    
+    /**
+     * The number of indexed definitions with at least one item in the 
+     * inventory
+     */
+    private int liveDefinitions;
+    
+    /**
+     * The score of each definition in the current query, indexed by 
+     * definition id. Cleared after every query
+     */
+    private double [] scores;
+    
+    /**
+     * The number of query words each definition has matched so far, indexed
+     * by definition id. Cleared after every query
+     */
+    private int [] matched;
+    
+    /**
+     * The ids of the definitions which have matched the first query word
+     */
+    private int [] touched;
+    
+    /**
+     * The number of ids in touched
+     */
+    private int numTouched;
+    
+    /**
+     * Constructor for the InventorySearchIndex class. Items are defined in
+     * a registry belonging to the index, so indexing items typed in by 
+     * players doesn't grow any shared registry.
+     * 
+     * @param inventory The inventory to index
+     */
+    public InventorySearchIndex( Inventory inventory ) {
+        this(inventory, new ItemRegistry());
+    }
+    
+    /**
+     * Constructor for the InventorySearchIndex class. Indexes the current 
+     * contents of the inventory, then keeps the index up to date as it 
+     * changes.
+     * 
+     * @param inventory The inventory to index
+     * @param registry The registry in which to define indexed items
+     */
+    public InventorySearchIndex( Inventory inventory, ItemRegistry registry ) {
+        this.inventory = inventory;
+        this.registry = registry;
+        this.nameWords = new TreeMap<>();
+        this.descriptionWords = new TreeMap<>();
+        this.counts = new int[16];
+        Arrays.fill(this.counts, -1);
+        this.definitionPostings = new PostingList[16][];
+        this.numDefinitions = 0;
+        this.liveDefinitions = 0;
+        this.scores = new double[16];
+        this.matched = new int[16];
+        this.touched = new int[16];
+        this.numTouched = 0;
+        
+        for(int i=0; i<inventory.getNumItems(); i++) {
+            this.itemInserted(inventory, i, inventory.peekItem(i));
+        }
+        
+        inventory.addListener(this);
+    }
+    
+    /**
+     * Stop keeping the index up to date
+     */
+    public void detach() {
+        this.inventory.removeListener(this);
+    }
+    
+    /**
+     * Find the items whose names or descriptions contain every word of a 
+     * query
+     * 
+     * @param query The words to look for. Case is ignored
+     * @param limit The maximum number of results to return
+     * @return The definitions of the matching items in the inventory, best 
+     * match first
+     */
+    public List<ItemDefinition> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if(words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // A definition matching the first n words has matched[id] == n, so
+        // each word only adds to definitions which matched all the words
+        // before it
+        for(int i=0; i<words.size(); i++) {
+            String word = words.get(i);
+            this.score(this.nameWords.get(word), NAME_WEIGHT, i);
+            this.score(this.descriptionWords.get(word), 1.0, i);
+        }
+        
+        return this.rank(words.size(), limit);
+    }
+    
+    /**
+     * Find the items whose names or descriptions contain a word starting 
+     * with a prefix
+     * 
+     * @param prefix The start of the word to look for. Case is ignored
+     * @param limit The maximum number of results to return
+     * @return The definitions of the matching items in the inventory, best 
+     * match first
+     */
+    public List<ItemDefinition> searchPrefix(String prefix, int limit) {
+        List<String> words = tokenize(prefix);
+        if(words.size() != 1) {
+            return new ArrayList<>();
+        }
+        String word = words.get(0);
+        
+        // Every word starting with the prefix sorts between the prefix and 
+        // the prefix followed by the largest possible character
+        for(PostingList postings : prefixRange(this.nameWords, word)) {
+            this.score(postings, NAME_WEIGHT, 0);
+        }
+        for(PostingList postings : prefixRange(this.descriptionWords, word)) {
+            this.score(postings, 1.0, 0);
+        }
+        
+        return this.rank(1, limit);
+    }
+    
+    /**
+     * Get the number of items in the inventory with a definition
+     * 
+     * @param definition The definition
+     * @return The number of items of that definition in the inventory
+     */
+    public int count(ItemDefinition definition) {
+        int id = definition.getId();
+        if(id >= this.numDefinitions || this.counts[id] < 0) {
+            return 0;
+        }
+        return this.counts[id];
+    }
+    
+    /**
+     * Index an inserted item
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position at which the item was inserted
+     * @param item The item that was inserted
+     */
+    @Override
+    public void itemInserted(Inventory inventory, int index, IItem item) {
+        ItemDefinition definition = this.registry.define(item);
+        if(definition == null) {
+            return;
+        }
+        
+        int id = definition.getId();
+        if(id >= this.counts.length) {
+            this.grow(id + 1);
+        }
+        
+        // Add the words of a definition to the posting lists the first time
+        // we see it
+        if(this.counts[id] < 0) {
+            List<PostingList> lists = new ArrayList<>();
+            addWords(this.nameWords, definition.getName(), id, lists);
+            addWords(this.descriptionWords, definition.getDescription(), id, 
+                    lists);
+            this.definitionPostings[id] = 
+                    lists.toArray(new PostingList[lists.size()]);
+            this.counts[id] = 0;
+            this.numDefinitions = Math.max(this.numDefinitions, id + 1);
+        }
+        
+        if(this.counts[id]++ == 0) {
+            this.setLive(id, 1);
+        }
+    }
+    
+    /**
+     * Remove a dropped item from the index
+     * 
+     * @param inventory The inventory that changed
+     * @param index The position the item was dropped from
+     * @param item The item that was dropped
+     */
+    @Override
+    public void itemDropped(Inventory inventory, int index, IItem item) {
+        ItemDefinition definition = this.registry.define(item);
+        if(definition != null && this.count(definition) > 0) {
+            int id = definition.getId();
+            if(--this.counts[id] == 0) {
+                this.setLive(id, -1);
+            }
+        }
+    }
+    
+    /**
+     * Count a definition in or out of the live totals, when its first item 
+     * arrives or its last item leaves
+     * 
+     * @param id The id of the definition
+     * @param change 1 if the definition became live, -1 if it died
+     */
+    private void setLive(int id, int change) {
+        this.liveDefinitions += change;
+        for(PostingList postings : this.definitionPostings[id]) {
+            postings.live += change;
+        }
+    }
+    
+    /**
+     * Make room for more definitions in the arrays indexed by definition id
+     * 
+     * @param minLength The number of definitions to make room for
+     */
+    private void grow(int minLength) {
+        int length = this.counts.length;
+        int newLength = Math.max(length * 2, minLength);
+        this.counts = Arrays.copyOf(this.counts, newLength);
+        Arrays.fill(this.counts, length, newLength, -1);
+        this.definitionPostings = 
+                Arrays.copyOf(this.definitionPostings, newLength);
+        this.scores = Arrays.copyOf(this.scores, newLength);
+        this.matched = Arrays.copyOf(this.matched, newLength);
+        this.touched = Arrays.copyOf(this.touched, newLength);
+    }
+    
+    /**
+     * Add to the scores of the live definitions in a posting list which have
+     * matched every earlier query word. Rare words count for more than common
+     * ones. The list is read in place rather than decoded.
+     * 
+     * @param postings The posting list, or null if the word isn't indexed
+     * @param weight How much a match counts for
+     * @param word The position of the word in the query
+     */
+    private void score(PostingList postings, double weight, int word) {
+        if(postings == null || postings.live == 0) {
+            return;
+        }
+        
+        double add = weight * Math.log(1.0 + (double)this.liveDefinitions 
+                / postings.live);
+        byte [] data = postings.data;
+        int position = 0;
+        int id = 0;
+        
+        for(int i=0; i<postings.size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            id = i == 0 ? delta : id + delta;
+            
+            if(this.counts[id] <= 0) {
+                continue;
+            }
+            
+            // The same word can match both the name and the description, in
+            // which case matched[id] has already moved on to word + 1
+            int count = this.matched[id];
+            if(count == word) {
+                if(word == 0) {
+                    this.touched[this.numTouched++] = id;
+                }
+                this.matched[id] = word + 1;
+                this.scores[id] += add;
+            } else if(count == word + 1) {
+                this.scores[id] += add;
+            }
+        }
+    }
+    
+    /**
+     * Turn the scores of the current query into a ranked list of definitions
+     * and clear them ready for the next query
+     * 
+     * @param numWords The number of words a definition must have matched
+     * @param limit The maximum number of definitions to return
+     * @return The definitions with the highest scores, best first
+     */
+    private List<ItemDefinition> rank(int numWords, int limit) {
+        // Keep the best matches in a min-heap, worst at the top
+        int [] heap = new int[Math.max(0, Math.min(limit, this.numTouched))];
+        int heapSize = 0;
+        
+        for(int i=0; i<this.numTouched; i++) {
+            int id = this.touched[i];
+            if(this.matched[id] == numWords && heap.length > 0) {
+                if(heapSize < heap.length) {
+                    heap[heapSize] = id;
+                    this.siftUp(heap, heapSize++);
+                } else if(this.better(id, heap[0])) {
+                    heap[0] = id;
+                    this.siftDown(heap, heapSize);
+                }
+            }
+            this.matched[id] = 0;
+        }
+        
+        // Take the worst match off the heap each time, filling in from the 
+        // back
+        int [] ranked = new int[heapSize];
+        for(int i=heapSize-1; i>=0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[i];
+            this.siftDown(heap, i);
+        }
+        
+        for(int i=0; i<this.numTouched; i++) {
+            this.scores[this.touched[i]] = 0.0;
+        }
+        this.numTouched = 0;
+        
+        List<ItemDefinition> results = new ArrayList<>(ranked.length);
+        for(int id : ranked) {
+            results.add(this.registry.get(id));
+        }
+        return results;
+    }
+    
+    /**
+     * Check whether one definition ranks above another in the current query.
+     * Higher scores rank first, then lower ids
+     * 
+     * @param a The id of the first definition
+     * @param b The id of the second definition
+     * @return True if a ranks above b
+     */
+    private boolean better(int a, int b) {
+        double scoreA = this.scores[a];
+        double scoreB = this.scores[b];
+        return scoreA > scoreB || (scoreA == scoreB && a < b);
+    }
+    
+    /**
+     * Move a definition up the heap of best matches until its parent ranks
+     * below it
+     * 
+     * @param heap The heap, worst match at the top
+     * @param index The position of the definition to move
+     */
+    private void siftUp(int [] heap, int index) {
+        int id = heap[index];
+        while(index > 0) {
+            int parent = (index - 1) / 2;
+            if(!this.better(heap[parent], id)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+    
+    /**
+     * Move the definition at the top of the heap of best matches down until
+     * its children rank above it
+     * 
+     * @param heap The heap, worst match at the top
+     * @param size The number of definitions in the heap
+     */
+    private void siftDown(int [] heap, int size) {
+        if(size == 0) {
+            return;
+        }
+        int id = heap[0];
+        int index = 0;
+        while(true) {
+            int child = 2 * index + 1;
+            if(child >= size) {
+                break;
+            }
+            if(child + 1 < size && this.better(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if(!this.better(id, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+    
+    /**
+     * Add each word of some text to the posting lists
+     * 
+     * @param words The posting lists, by word
+     * @param text The text
+     * @param id The id of the definition the text belongs to
+     * @param lists The list to which to add the posting lists the id is 
+     * added to
+     */
+    private static void addWords(Map<String, PostingList> words, String text,
+            int id, List<PostingList> lists) {
+        for(String word : tokenize(text)) {
+            PostingList postings = words.get(word);
+            if(postings == null) {
+                postings = new PostingList();
+                words.put(word, postings);
+            }
+            postings.add(id);
+            lists.add(postings);
+        }
+    }
+    
+    /**
+     * Get the posting lists of all words starting with a prefix
+     * 
+     * @param words The posting lists, by word
+     * @param prefix The prefix
+     * @return The posting lists of the matching words
+     */
+    private static Iterable<PostingList> prefixRange(
+            TreeMap<String, PostingList> words, String prefix) {
+        SortedMap<String, PostingList> range = 
+                words.subMap(prefix, prefix + Character.MAX_VALUE);
+        return range.values();
+    }
+    
+    /**
+     * Split text into lower case words made up of letters and digits
+     * 
+     * @param text The text to split. May be null
+     * @return The distinct words in the text, in the order they first appear
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if(text == null) {
+            return words;
+        }
+        
+        int start = -1;
+        for(int i=0; i<=text.length(); i++) {
+            boolean inWord = i < text.length() && 
+                    Character.isLetterOrDigit(text.charAt(i));
+            if(inWord && start < 0) {
+                start = i;
+            } else if(!inWord && start >= 0) {
+                String word = text.substring(start, i).toLowerCase();
+                if(!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        
+        return words;
+    }
+    
+    /**
+     * A list of definition ids in ascending order, stored compactly as the 
+     * differences between neighbouring ids. Each difference is written seven
+     * bits at a time, with the top bit of each byte set if more bytes follow.
+     */
+    private static final class PostingList {
+        /**
+         * The encoded differences
+         */
+        private byte [] data;
+        
+        /**
+         * The number of bytes of data in use
+         */
+        private int length;
+        
+        /**
+         * The number of ids in the list
+         */
+        private int size;
+        
+        /**
+         * The last (largest) id in the list
+         */
+        private int last;
+        
+        /**
+         * The number of ids in the list whose definitions have items in the
+         * inventory
+         */
+        private int live;
+        
+        /**
+         * Constructor for the PostingList class. Creates an empty list
+         */
+        private PostingList() {
+            this.data = new byte[4];
+            this.length = 0;
+            this.size = 0;
+            this.last = 0;
+            this.live = 0;
+        }
+        
+        /**
+         * Add an id to the list, if it isn't already in it
+         * 
+         * @param id The id to add
+         */
+        private void add(int id) {
+            if(this.size == 0 || id > this.last) {
+                // Ids usually arrive in increasing order, and can simply be 
+                // appended
+                this.append(this.size == 0 ? id : id - this.last);
+                this.last = id;
+                this.size++;
+                return;
+            }
+            
+            // Otherwise rebuild the list with the id in its place
+            int [] ids = this.decode();
+            int index = Arrays.binarySearch(ids, id);
+            if(index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            
+            this.length = 0;
+            this.size = 0;
+            int previous = 0;
+            for(int i=0; i<=ids.length; i++) {
+                int next = i < index ? ids[i] : i == index ? id : ids[i - 1];
+                this.append(this.size == 0 ? next : next - previous);
+                previous = next;
+                this.size++;
+            }
+            this.last = previous;
+        }
+        
+        /**
+         * Decode the list
+         * 
+         * @return The ids in the list, in ascending order
+         */
+        private int [] decode() {
+            int [] ids = new int[this.size];
+            int position = 0;
+            int id = 0;
+            
+            for(int i=0; i<this.size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = this.data[position++];
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while((b & 0x80) != 0);
+                
+                id = i == 0 ? delta : id + delta;
+                ids[i] = id;
+            }
+            
+            return ids;
+        }
+        
+        /**
+         * Append a number to the encoded data
+         * 
+         * @param value The number, which must not be negative
+         */
+        private void append(int value) {
+            if(this.length + 5 > this.data.length) {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2 + 5);
+            }
+            
+            while(value >= 0x80) {
+                this.data[this.length++] = (byte)(value | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.length++] = (byte)value;
+        }
+    }
+}
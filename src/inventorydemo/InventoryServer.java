@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the InventoryDemo commands over a socket. Each connection gets its
+ * own session, with its own inventory and hand, and is handled by its own 
+ * thread. Virtual threads are used where the Java runtime supports them, so 
+ * tens of thousands of idle connections cost very little.
+ * 
+ * The protocol is line based. Each request is a single line of fields 
+ * separated by tabs, and each gets a single line response which starts with
+ * either "OK" or "ERR":
+ * <pre>
+ * c  type  name  description   create an item (type 1: Sword, 2: Shield,
+ *                              3: Potion) and put it in the inventory
+ * g  index                     take an item from the inventory. Responds 
+ *                              with the item's name and description
+ * p                            put the held item back in the inventory
+ * d                            drop the held item
+ * n                            get the number of items and the capacity
+ * q                            end the session
+ * </pre>
+ * Lines longer than MAX_LINE_LENGTH characters get an error response and 
+ * end the session, so a client can't make the server buffer without limit.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryServer implements Closeable {
+    /**
+     * The port used if none is given
+     */
+    public static final int DEFAULT_PORT = 7777;
+    
+    /**
+     * The longest request line accepted, in characters
+     */
+    public static final int MAX_LINE_LENGTH = 4096;
+    
+    /**
+     * How long to wait after the first failed accept, in milliseconds
+     */
+    private static final long MIN_BACKOFF = 5;
+    
+    /**
+     * The longest to wait after repeated failed accepts, in milliseconds
+     */
+    private static final long MAX_BACKOFF = 1000;
+    
+    /**
+     * The socket accepting connections
+     */
+    private final ServerSocket serverSocket;
+    
+    /**
+     * Runs the thread for each connection
+     */
+    private final ExecutorService sessions;
+    
+    /**
+     * Constructor for the InventoryServer class. Listens on the loopback 
+     * address only.
+     * 
+     * @param port The port to listen on, or 0 to pick any free port
+     * @throws IOException If the socket can't be opened
+     */
+    public InventoryServer( int port ) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 1024);
+        this.sessions = newThreadPerTaskExecutor();
+    }
+    
+    /**
+     * Get the port the server is listening on
+     * 
+     * @return The port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Accept connections until the server is closed. If accepting fails, for
+     * example because the process has run out of file descriptors, wait a 
+     * while before trying again, waiting longer each time it keeps failing
+     */
+    public void serve() {
+        long backoff = MIN_BACKOFF;
+        while(!this.serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch(IOException e) {
+                if(this.serverSocket.isClosed()) {
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch(InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                continue;
+            }
+            
+            backoff = MIN_BACKOFF;
+            this.sessions.execute(() -> handle(socket));
+        }
+    }
+    
+    /**
+     * Stop accepting connections and end all sessions
+     * 
+     * @throws IOException If closing the socket fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.sessions.shutdownNow();
+    }
+    
+    /**
+     * Run a session for a connection until the client quits or disconnects
+     * 
+     * @param socket The connection
+     */
+    private static void handle(Socket socket) {
+        InventorySession session = new InventorySession();
+        
+        try(Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        s.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setTcpNoDelay(true);
+            
+            StringBuilder buffer = new StringBuilder();
+            String line;
+            while((line = readLine(in, buffer)) != null) {
+                if(line.length() > MAX_LINE_LENGTH) {
+                    out.write("ERR Line too long\n");
+                    break;
+                }
+                
+                String response = execute(session, line);
+                out.write(response);
+                out.write('\n');
+                
+                // Only flush once we've answered every request the client
+                // has sent so far
+                if(!in.ready()) {
+                    out.flush();
+                }
+                
+                if(line.equals("q")) {
+                    break;
+                }
+            }
+            out.flush();
+        } catch(IOException e) {
+            // The client went away. Nothing to do but end the session
+        }
+    }
+    
+    /**
+     * Read a line of text, like BufferedReader.readLine, but stop reading 
+     * once the line is longer than MAX_LINE_LENGTH
+     * 
+     * @param in The connection to read from
+     * @param buffer Reused to build up the line
+     * @return The line without its line ending, a string longer than 
+     * MAX_LINE_LENGTH if the line is too long, or null at the end of the 
+     * stream
+     * @throws IOException If reading fails
+     */
+    private static String readLine(BufferedReader in, StringBuilder buffer) 
+            throws IOException {
+        buffer.setLength(0);
+        int c;
+        while((c = in.read()) != '\n') {
+            if(c < 0) {
+                return buffer.length() == 0 ? null : buffer.toString();
+            }
+            buffer.append((char)c);
+            if(buffer.length() > MAX_LINE_LENGTH + 1) {
+                // Allow for a carriage return before the new line
+                return buffer.toString();
+            }
+        }
+        
+        int length = buffer.length();
+        if(length > 0 && buffer.charAt(length - 1) == '\r') {
+            buffer.setLength(length - 1);
+        }
+        return buffer.toString();
+    }
+    
+    /**
+     * Run a single request against a session
+     * 
+     * @param session The session
+     * @param request The request line
+     * @return The response line
+     */
+    static String execute(InventorySession session, String request) {
+        String [] fields = request.split("\t", -1);
+        
+        switch(fields[0]) {
+            case "c":
+                if(fields.length != 4) {
+                    return "ERR Usage: c type name description";
+                }
+                ItemType type = parseType(fields[1]);
+                if(type == null) {
+                    return "ERR Invalid item type";
+                }
+                if(!session.createItem(type, fields[2], fields[3])) {
+                    return "ERR Unable to add item. Item discarded";
+                }
+                return "OK";
+            case "g":
+                if(session.getHolding() != null) {
+                    return "ERR You're already holding something";
+                }
+                IItem item = null;
+                try {
+                    item = session.getItem(Integer.parseInt(fields[1]));
+                } catch(NumberFormatException | 
+                        ArrayIndexOutOfBoundsException e) {
+                    return "ERR Usage: g index";
+                }
+                if(item == null) {
+                    return "ERR There's no item at that index";
+                }
+                return "OK " + item.getName() + "\t" + item.getDescription();
+            case "p":
+                if(session.getHolding() == null) {
+                    return "ERR You're not holding anything";
+                }
+                if(!session.putItem()) {
+                    return "ERR The inventory is full";
+                }
+                return "OK";
+            case "d":
+                if(!session.dropItem()) {
+                    return "ERR You're not holding anything";
+                }
+                return "OK";
+            case "n":
+                Inventory inventory = session.getInventory();
+                return "OK " + inventory.getNumItems() + "/" 
+                        + inventory.getMaxCapacity();
+            case "q":
+                return "OK";
+            default:
+                return "ERR Invalid input";
+        }
+    }
+    
+    /**
+     * Work out the type of item from the number used in the menu
+     * 
+     * @param field The number as text
+     * @return The type of item, or null if the number isn't valid
+     */
+    private static ItemType parseType(String field) {
+        switch(field) {
+            case "1":
+                return ItemType.SWORD;
+            case "2":
+                return ItemType.SHIELD;
+            case "3":
+                return ItemType.POTION;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Create an executor which runs each task on a new thread. Uses virtual
+     * threads if the Java runtime has them, and falls back to a pool of 
+     * ordinary threads otherwise.
+     * 
+     * @return The executor
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * The state of one player's game: their inventory and whatever they are 
+ * holding in their hand. The commands are the same ones offered by 
+ * InventoryDemo, but a session can be driven by anything, such as a network
+ * connection.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySession {
+    /**
+     * The player's inventory
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The item in the player's hand, or null if they aren't holding anything
+     */
+    private IItem holding;
+    
+    /**
+     * Default constructor for the InventorySession class. The player starts
+     * with an empty inventory of the default size.
+     */
+    public InventorySession() {
+        this(new Inventory());
+    }
+    
+    /**
+     * Constructor for the InventorySession class
+     * 
+     * @param inventory The player's inventory
+     */
+    public InventorySession( Inventory inventory ) {
+        this.inventory = inventory;
+        this.holding = null;
+    }
+    
+    /**
+     * Get the player's inventory
+     * 
+     * @return The player's inventory
+     */
+    public Inventory getInventory() {
+        return this.inventory;
+    }
+    
+    /**
+     * Get the item in the player's hand
+     * 
+     * @return The item being held, or null if the player isn't holding 
+     * anything
+     */
+    public IItem getHolding() {
+        return this.holding;
+    }
+    
+    /**
+     * Create a new item and put it in the inventory
+     * 
+     * @param type The type of item to create
+     * @param name The name of the item
+     * @param description A description of the item
+     * @return True if the item was added to the inventory, false if it was 
+     * discarded
+     */
+    public boolean createItem(ItemType type, String name, String description) {
+        return this.inventory.insertItem(type.create(name, description));
+    }
+    
+    /**
+     * Create a new item from a shared definition and put it in the inventory
+     * 
+     * @param definition The definition of the item to create
+     * @return True if the item was added to the inventory, false if it was 
+     * discarded
+     */
+    public boolean createItem(ItemDefinition definition) {
+        return this.inventory.insertItem(definition.newItem());
+    }
+    
+    /**
+     * Get an item from the inventory and put it in the player's hand. Fails
+     * if the player is already holding something.
+     * 
+     * @param index The index of the item to take
+     * @return The item now being held, or null if nothing was taken
+     */
+    public IItem getItem(int index) {
+        if(this.holding != null) {
+            return null;
+        }
+        this.holding = this.inventory.getItem(index);
+        return this.holding;
+    }
+    
+    /**
+     * Put whatever item the player is holding into the inventory. If the
+     * inventory is full the player keeps holding the item.
+     * 
+     * @return True if an item was put in the inventory
+     */
+    public boolean putItem() {
+        if(this.holding == null || !this.inventory.insertItem(this.holding)) {
+            return false;
+        }
+        this.holding = null;
+        return true;
+    }
+    
+    /**
+     * Drop whatever item the player is holding
+     * 
+     * @return True if an item was dropped
+     */
+    public boolean dropItem() {
+        if(this.holding == null) {
+            return false;
+        }
+        this.holding = null;
+        return true;
+    }
+}
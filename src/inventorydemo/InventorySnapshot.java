@@ -0,0 +1,500 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * A compact binary snapshot of one or more inventories saved to a file.
+ *
+ * Every name and description is written once to a shared string table, and
+ * each item is written as a fixed size record holding its type tag and the
+ * positions of its name and description in that table. Items are written in
+ * the order they are stored in, which is already sorted by name, so nothing
+ * needs to be sorted again when an inventory is loaded.
+ *
+ * An open snapshot maps the file into memory rather than reading it. The 
+ * whole file is mapped once when the snapshot is opened and each part of it
+ * is a view onto that mapping. Only the header is looked at when the 
+ * snapshot is opened. Strings are decoded
+ * the first time they're needed and inventories are only read when they are
+ * loaded, so the operating system only pages in the parts of the file that
+ * are actually used. A single mapping can't be larger than 2GB, so neither
+ * can a snapshot.
+ *
+ * The file is laid out as follows, with all numbers big-endian:
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * int     number of strings
+ * int     number of inventories
+ * long    offset of the string table in the file
+ * long    length of the string table
+ * int[]   offset of each string within the string table
+ * long[]  offset of each inventory in the file, plus the end of the file
+ *
+ * string table, for each string:
+ *     int     length in bytes
+ *     byte[]  the string encoded as UTF-8
+ *
+ * for each inventory:
+ *     int     maximum capacity
+ *     int     number of items
+ *     for each item:
+ *         byte    item type tag
+ *         int     name string index
+ *         int     description string index
+ * </pre>
+ *
+ * @author Gary Munnelly
+ */
+public class InventorySnapshot implements Closeable {
+    /**
+     * Identifies a file as an inventory snapshot
+     */
+    private static final int MAGIC = 0x494e5653;
+
+    /**
+     * The version of the snapshot format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the fixed part of the header in bytes
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of an inventory's capacity and item count in bytes
+     */
+    private static final int INVENTORY_HEADER_SIZE = 8;
+
+    /**
+     * The size of an item record in bytes
+     */
+    private static final int RECORD_SIZE = 9;
+
+    /**
+     * The file the snapshot was opened from
+     */
+    private final FileChannel channel;
+
+    /**
+     * The whole of the mapped file
+     */
+    private final ByteBuffer file;
+
+    /**
+     * The mapped header and offset tables
+     */
+    private final ByteBuffer header;
+
+    /**
+     * The mapped string table
+     */
+    private final ByteBuffer strings;
+
+    /**
+     * The position in the file just after the string table, where the 
+     * inventories start
+     */
+    private final long inventoriesOffset;
+
+    /**
+     * Strings which have already been decoded from the string table
+     */
+    private final String [] decoded;
+
+    /**
+     * The number of inventories in the snapshot
+     */
+    private final int numInventories;
+
+    /**
+     * Constructor for the InventorySnapshot class. Use open to read a
+     * snapshot from a file.
+     *
+     * @param channel The file the snapshot was opened from
+     * @param file The whole of the mapped file
+     * @param header The mapped header and offset tables
+     * @param strings The mapped string table
+     * @param inventoriesOffset The position in the file where the 
+     * inventories start
+     * @param numStrings The number of strings in the string table
+     * @param numInventories The number of inventories in the snapshot
+     */
+    private InventorySnapshot( FileChannel channel, ByteBuffer file, 
+            ByteBuffer header, ByteBuffer strings, long inventoriesOffset, 
+            int numStrings, int numInventories ) {
+        this.channel = channel;
+        this.file = file;
+        this.header = header;
+        this.strings = strings;
+        this.inventoriesOffset = inventoriesOffset;
+        this.decoded = new String[numStrings];
+        this.numInventories = numInventories;
+    }
+
+    /**
+     * Write a snapshot of a single inventory to a file, replacing anything
+     * already in the file
+     *
+     * @param file The file to write to
+     * @param inventory The inventory to save
+     * @throws IOException If writing the file fails, the inventory holds
+     * an item that isn't a Sword, Shield or Potion, or the snapshot would be
+     * larger than 2GB
+     */
+    public static void write(Path file, Inventory inventory)
+            throws IOException {
+        write(file, Arrays.asList(inventory));
+    }
+
+    /**
+     * Write a snapshot of a number of inventories to a file, replacing
+     * anything already in the file
+     *
+     * @param file The file to write to
+     * @param inventories The inventories to save
+     * @throws IOException If writing the file fails, an inventory holds
+     * an item that isn't a Sword, Shield or Potion, or the snapshot would be
+     * larger than 2GB
+     */
+    public static void write(Path file, List<Inventory> inventories)
+            throws IOException {
+        // Build the string table, giving each distinct string an index
+        Map<String, Integer> indices = new HashMap<>();
+        List<byte []> table = new ArrayList<>();
+        long stringsLength = 0;
+        for(Inventory inventory : inventories) {
+            for(int i=0; i<inventory.getNumItems(); i++) {
+                IItem item = inventory.peekItem(i);
+                if(ItemType.of(item) == null) {
+                    throw new IOException("Unable to save item of type "
+                            + item.getClass().getName());
+                }
+                for(String s : new String [] {
+                        item.getName(), item.getDescription() }) {
+                    if(!indices.containsKey(s)) {
+                        byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+                        indices.put(s, table.size());
+                        table.add(bytes);
+                        stringsLength += 4 + bytes.length;
+                    }
+                }
+            }
+        }
+
+        // Work out where everything will go in the file
+        long stringsOffset = HEADER_SIZE + 4L * table.size()
+                + 8L * (inventories.size() + 1);
+        long fileSize = stringsOffset + stringsLength;
+        for(Inventory inventory : inventories) {
+            fileSize += INVENTORY_HEADER_SIZE
+                    + (long)RECORD_SIZE * inventory.getNumItems();
+        }
+        if(fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would be larger than 2GB");
+        }
+
+        try(DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            // Header
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(table.size());
+            out.writeInt(inventories.size());
+            out.writeLong(stringsOffset);
+            out.writeLong(stringsLength);
+
+            // String offsets
+            int offset = 0;
+            for(byte [] bytes : table) {
+                out.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+
+            // Inventory offsets
+            long position = stringsOffset + stringsLength;
+            for(Inventory inventory : inventories) {
+                out.writeLong(position);
+                position += INVENTORY_HEADER_SIZE
+                        + (long)RECORD_SIZE * inventory.getNumItems();
+            }
+            out.writeLong(position);
+
+            // String table
+            for(byte [] bytes : table) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            // Inventories, with items in the order they are stored
+            for(Inventory inventory : inventories) {
+                out.writeInt(inventory.getMaxCapacity());
+                out.writeInt(inventory.getNumItems());
+                for(int i=0; i<inventory.getNumItems(); i++) {
+                    IItem item = inventory.peekItem(i);
+                    out.writeByte(ItemType.of(item).getTag());
+                    out.writeInt(indices.get(item.getName()));
+                    out.writeInt(indices.get(item.getDescription()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a snapshot file. The file is mapped into memory rather than read,
+     * and must be closed when it is no longer needed.
+     *
+     * @param file The file to open
+     * @return The opened snapshot
+     * @throws IOException If the file can't be opened or isn't a snapshot
+     */
+    public static InventorySnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            if(size < HEADER_SIZE) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is larger than 2GB: " + file);
+            }
+
+            // Map the whole file once. Everything else is a view onto it
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    size);
+            if(mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+            int numStrings = mapped.getInt();
+            int numInventories = mapped.getInt();
+            long stringsOffset = mapped.getLong();
+            long stringsLength = mapped.getLong();
+
+            // The offset tables must fit between the header and the string
+            // table, and the string table must fit in the file
+            long tablesEnd = HEADER_SIZE + 4L * numStrings
+                    + 8L * (numInventories + 1L);
+            if(numStrings < 0 || numInventories < 0 || stringsLength < 0 ||
+                    stringsOffset < tablesEnd) {
+                throw new IOException("Snapshot is corrupt: " + file);
+            }
+            if(stringsOffset + stringsLength > size) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+
+            ByteBuffer header = mapped.slice(0, (int)stringsOffset);
+            ByteBuffer strings = mapped.slice((int)stringsOffset,
+                    (int)stringsLength);
+
+            return new InventorySnapshot(channel, mapped, header, strings, 
+                    stringsOffset + stringsLength, numStrings, 
+                    numInventories);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of inventories in this snapshot
+     *
+     * @return The number of inventories
+     */
+    public int getNumInventories() {
+        return this.numInventories;
+    }
+
+    /**
+     * Load one of the inventories in this snapshot into a sorted array
+     *
+     * @param index The position of the inventory in the snapshot
+     * @return A new inventory holding the saved items
+     * @throws IOException If reading the file fails or the snapshot is
+     * corrupt
+     */
+    public Inventory load(int index) throws IOException {
+        return this.load(index, SortedArrayStorage::new);
+    }
+
+    /**
+     * Load one of the inventories in this snapshot into a storage engine of
+     * the caller's choosing. The snapshot only records the items, so this 
+     * is how an inventory gets back the engine and capacity policy it was 
+     * saved from
+     *
+     * @param index The position of the inventory in the snapshot
+     * @param storage Creates an empty storage engine given the capacity of
+     * the saved inventory
+     * @return A new inventory holding the saved items
+     * @throws IOException If reading the file fails or the snapshot is
+     * corrupt
+     * @throws IllegalArgumentException If the storage engine isn't empty or
+     * is too small for the saved items
+     */
+    public Inventory load(int index, 
+            IntFunction<? extends IInventoryStorage> storage) 
+            throws IOException {
+        if(index < 0 || index >= this.numInventories) {
+            throw new IndexOutOfBoundsException("No inventory at " + index);
+        }
+
+        // Find the inventory's records. They come after the string table
+        int table = HEADER_SIZE + 4 * this.decoded.length + 8 * index;
+        long start = this.header.getLong(table);
+        long end = this.header.getLong(table + 8);
+        if(start < this.inventoriesOffset || end > this.file.capacity() || 
+                end - start < INVENTORY_HEADER_SIZE) {
+            throw new IOException("Snapshot is truncated");
+        }
+        ByteBuffer records = this.file.slice((int)start, (int)(end - start));
+
+        int maxCapacity = records.getInt();
+        int numItems = records.getInt();
+        if(numItems < 0 || numItems > maxCapacity ||
+                records.remaining() != (long)RECORD_SIZE * numItems) {
+            throw new IOException("Snapshot is corrupt");
+        }
+
+        // Rebuild the items. They were saved in sorted order
+        IItem [] items = new IItem[numItems];
+        for(int i=0; i<numItems; i++) {
+            ItemType type = ItemType.fromTag(records.get());
+            if(type == null) {
+                throw new IOException("Snapshot is corrupt");
+            }
+            String name = this.string(records.getInt());
+            String description = this.string(records.getInt());
+            items[i] = type.create(name, description);
+            if(i > 0 && items[i - 1].getName().compareTo(name) > 0) {
+                throw new IOException("Snapshot is corrupt");
+            }
+        }
+
+        // The items are already in order, so they can be merged straight 
+        // into the storage
+        IInventoryStorage contents = storage.apply(maxCapacity);
+        if(contents.size() != 0 || contents.capacity() < numItems) {
+            throw new IllegalArgumentException(
+                    "Storage must be empty and able to hold the saved items");
+        }
+        contents.insertAll(items, numItems);
+        return new Inventory(contents);
+    }
+
+    /**
+     * Load every inventory in this snapshot
+     *
+     * @return A list of new inventories, in the order they were saved
+     * @throws IOException If reading the file fails or the snapshot is
+     * corrupt
+     */
+    public List<Inventory> loadAll() throws IOException {
+        return this.loadAll(SortedArrayStorage::new);
+    }
+
+    /**
+     * Load every inventory in this snapshot into storage engines of the 
+     * caller's choosing
+     *
+     * @param storage Creates an empty storage engine given the capacity of
+     * a saved inventory
+     * @return A list of new inventories, in the order they were saved
+     * @throws IOException If reading the file fails or the snapshot is
+     * corrupt
+     */
+    public List<Inventory> loadAll(
+            IntFunction<? extends IInventoryStorage> storage) 
+            throws IOException {
+        List<Inventory> inventories = new ArrayList<>(this.numInventories);
+        for(int i=0; i<this.numInventories; i++) {
+            inventories.add(this.load(i, storage));
+        }
+        return inventories;
+    }
+
+    /**
+     * Close the snapshot file
+     *
+     * @throws IOException If closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Get a string from the string table, decoding it if this is the first
+     * time it has been used. Every item using the same string gets the same
+     * String object.
+     *
+     * @param index The index of the string
+     * @return The string
+     * @throws IOException If the index is invalid or the string doesn't lie
+     * within the string table
+     */
+    private String string(int index) throws IOException {
+        if(index < 0 || index >= this.decoded.length) {
+            throw new IOException("Snapshot is corrupt");
+        }
+
+        if(this.decoded[index] == null) {
+            int offset = this.header.getInt(HEADER_SIZE + 4 * index);
+            int limit = this.strings.capacity();
+            if(offset < 0 || offset > limit - 4) {
+                throw new IOException("Snapshot is corrupt");
+            }
+            int length = this.strings.getInt(offset);
+            if(length < 0 || length > limit - 4 - offset) {
+                throw new IOException("Snapshot is corrupt");
+            }
+            byte [] bytes = new byte[length];
+            ByteBuffer view = this.strings.duplicate();
+            view.position(offset + 4);
+            view.get(bytes);
+            this.decoded[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return this.decoded[index];
+    }
+}
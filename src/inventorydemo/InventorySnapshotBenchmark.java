@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Checks that inventories come back from a snapshot unchanged, in whichever
+ * storage engine they are loaded into, and that damaged snapshots are 
+ * rejected with an IOException. Then reports how long it takes to write a 
+ * snapshot and to open it and load every inventory, both for a few large 
+ * inventories and for many small ones.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySnapshotBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile long published;
+    
+    /**
+     * Run the checks and the benchmark
+     * 
+     * @param args The total number of items to save in each measurement
+     * @throws IOException If a snapshot can't be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Path file = Files.createTempFile("inventory", ".snapshot");
+        
+        try {
+            checkRoundTrip(file);
+            checkCorrupt(file);
+            System.out.println("Round trip checks passed");
+            
+            System.out.printf("%12s %10s %12s %12s %14s%n", "inventories", 
+                    "items", "write ms", "load ms", "load ns/item");
+            for(int size = 10; size <= numItems; size *= 100) {
+                List<Inventory> inventories = 
+                        fill(numItems / size, size, new Random(size));
+                double write = Double.MAX_VALUE;
+                double load = Double.MAX_VALUE;
+                for(int round=0; round<ROUNDS; round++) {
+                    long begin = System.nanoTime();
+                    InventorySnapshot.write(file, inventories);
+                    long middle = System.nanoTime();
+                    try(InventorySnapshot snapshot = 
+                            InventorySnapshot.open(file)) {
+                        published = snapshot.loadAll().size();
+                    }
+                    long end = System.nanoTime();
+                    write = Math.min(write, (middle - begin) / 1e6);
+                    load = Math.min(load, (end - middle) / 1e6);
+                }
+                System.out.printf("%12d %10d %12.1f %12.1f %14.1f%n", 
+                        inventories.size(), size, write, load, 
+                        load * 1e6 / numItems);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /**
+     * Save inventories and load them back into every storage engine, 
+     * checking that the items, their order and the capacity all survive
+     * 
+     * @param file The file to use for the snapshot
+     * @throws IOException If the snapshot can't be written or read
+     */
+    private static void checkRoundTrip(Path file) throws IOException {
+        Random random = new Random(1);
+        List<Inventory> saved = fill(3, 500, random);
+        saved.add(new Inventory(20));
+        saved.get(0).insertItem(new Potion("Potion \u00e9\u00e8", 
+                "Non-ASCII \ud83d\ude00"));
+        InventorySnapshot.write(file, saved);
+        
+        List<IntFunction<IInventoryStorage>> engines = new ArrayList<>();
+        engines.add(SortedArrayStorage::new);
+        engines.add(capacity -> 
+                new SortedArrayStorage(capacity, CapacityPolicy.SOFT));
+        engines.add(ChunkedListStorage::new);
+        engines.add(PackedArrayStorage::new);
+        engines.add(OffHeapStorage::new);
+        
+        try(InventorySnapshot snapshot = InventorySnapshot.open(file)) {
+            for(IntFunction<IInventoryStorage> engine : engines) {
+                List<Inventory> loaded = snapshot.loadAll(engine);
+                if(loaded.size() != saved.size()) {
+                    throw new IllegalStateException("Lost an inventory");
+                }
+                for(int i=0; i<saved.size(); i++) {
+                    checkSame(saved.get(i), loaded.get(i));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Damage a snapshot in various ways and check that loading it fails 
+     * with an IOException rather than anything else
+     * 
+     * @param file The file to use for the snapshot
+     * @throws IOException If the snapshot can't be written
+     */
+    private static void checkCorrupt(Path file) throws IOException {
+        InventorySnapshot.write(file, fill(2, 100, new Random(2)));
+        byte [] good = Files.readAllBytes(file);
+        
+        // Cut the file short at every length up to the end of the strings, 
+        // and at a few points in the records
+        int stringsEnd = (int)(ByteBuffer.wrap(good).getLong(16) + 
+                ByteBuffer.wrap(good).getLong(24));
+        for(int length = 0; length < good.length; length += 
+                length < stringsEnd ? 1 : 97) {
+            Files.write(file, Arrays.copyOf(good, length));
+            expectCorrupt(file);
+        }
+        
+        // Point the first string past the end of the string table, then 
+        // give it a length running off the end of it
+        ByteBuffer bad = ByteBuffer.wrap(good.clone());
+        bad.putInt(32, Integer.MAX_VALUE - 2);
+        Files.write(file, bad.array());
+        expectCorrupt(file);
+        
+        bad = ByteBuffer.wrap(good.clone());
+        int stringsOffset = (int)bad.getLong(16);
+        bad.putInt(stringsOffset, Integer.MAX_VALUE);
+        Files.write(file, bad.array());
+        expectCorrupt(file);
+        
+        // Claim a string table far bigger than the file
+        bad = ByteBuffer.wrap(good.clone());
+        bad.putLong(24, 1L << 40);
+        Files.write(file, bad.array());
+        expectCorrupt(file);
+        
+        // A file over 2GB is turned away before anything is mapped
+        try(FileChannel channel = FileChannel.open(file, 
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[1]), 1L << 31);
+        }
+        expectCorrupt(file);
+    }
+    
+    /**
+     * Check that a snapshot can't be loaded
+     * 
+     * @param file The damaged snapshot
+     */
+    private static void expectCorrupt(Path file) {
+        try(InventorySnapshot snapshot = InventorySnapshot.open(file)) {
+            snapshot.loadAll();
+        } catch(IOException e) {
+            return;
+        }
+        throw new IllegalStateException("Loaded a damaged snapshot");
+    }
+    
+    /**
+     * Check that two inventories hold the same items in the same order
+     * 
+     * @param expected The inventory that was saved
+     * @param actual The inventory that was loaded
+     */
+    private static void checkSame(Inventory expected, Inventory actual) {
+        if(expected.getMaxCapacity() != actual.getMaxCapacity() || 
+                expected.getNumItems() != actual.getNumItems()) {
+            throw new IllegalStateException("Size changed");
+        }
+        for(int i=0; i<expected.getNumItems(); i++) {
+            IItem a = expected.peekItem(i);
+            IItem b = actual.peekItem(i);
+            if(a.getClass() != b.getClass() || 
+                    !a.getName().equals(b.getName()) ||
+                    !a.getDescription().equals(b.getDescription())) {
+                throw new IllegalStateException("Item " + i + " changed");
+            }
+        }
+    }
+    
+    /**
+     * Create some inventories and fill each of them to its capacity with 
+     * random items
+     * 
+     * @param count The number of inventories
+     * @param size The capacity of each inventory
+     * @param random Used to choose the items
+     * @return The inventories
+     */
+    private static List<Inventory> fill(int count, int size, Random random) {
+        List<Inventory> inventories = new ArrayList<>(count);
+        for(int i=0; i<count; i++) {
+            Inventory inventory = new Inventory(size + 1);
+            for(int j=0; j<size; j++) {
+                int n = random.nextInt(1000);
+                switch(n % 3) {
+                    case 0:
+                        inventory.insertItem(new Sword("Sword " + n, 
+                                "A sword"));
+                        break;
+                    case 1:
+                        inventory.insertItem(new Shield("Shield " + n, 
+                                "A shield"));
+                        break;
+                    default:
+                        inventory.insertItem(new Potion("Potion " + n, 
+                                "A potion"));
+                }
+            }
+            inventories.add(inventory);
+        }
+        return inventories;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a copy of an inventory on the far side of a connection up to date 
+ * by sending only what changed. 
+ * 
+ * The sending side remembers what it last sent: the definition id of each 
+ * item, in inventory order. To make a patch it walks the remembered ids and
+ * the current contents side by side, the way a merge does, since both are 
+ * sorted by name. Items found only in the remembered ids were removed, and 
+ * items found only in the inventory were inserted. 
+ * 
+ * A patch lists the positions of the removed items in the old contents, 
+ * then the positions of the inserted items in the new contents along with 
+ * their definition ids. Positions are written as the gap since the previous
+ * position, and every number is a variable length integer, so a patch for a
+ * single change is usually three or four bytes. The receiving side applies 
+ * a patch to its own copy of the definition ids with apply, and can build 
+ * the items themselves from the registry.
+ * 
+ * The first patch made holds the whole inventory. Patches must be applied 
+ * in the order they were made.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySync {
+    /**
+     * The inventory being sent
+     */
+    private final Inventory inventory;
+    
+    /**
+     * The registry holding item definitions
+     */
+    private final ItemRegistry registry;
+    
+    /**
+     * The definition id of each item as last sent, in inventory order
+     */
+    private int [] sent;
+    
+    /**
+     * The version of the inventory as last sent. -1 if nothing has been 
+     * sent yet
+     */
+    private long sentVersion;
+    
+    /**
+     * Constructor for the InventorySync class. Uses the default item 
+     * registry
+     * 
+     * @param inventory The inventory to send
+     */
+    public InventorySync( Inventory inventory ) {
+        this(inventory, ItemRegistry.getDefault());
+    }
+    
+    /**
+     * Constructor for the InventorySync class
+     * 
+     * @param inventory The inventory to send
+     * @param registry The registry holding item definitions
+     */
+    public InventorySync( Inventory inventory, ItemRegistry registry ) {
+        this.inventory = inventory;
+        this.registry = registry;
+        this.sent = new int[0];
+        this.sentVersion = -1;
+    }
+    
+    /**
+     * Make a patch taking the far side from what was last sent to what is in
+     * the inventory now
+     * 
+     * @return The patch
+     * @throws IllegalArgumentException If the inventory holds an item which
+     * isn't a Sword, Shield or Potion
+     */
+    public byte [] nextPatch() {
+        // Nothing can have changed if the version is the same
+        if(this.inventory.getVersion() == this.sentVersion) {
+            return new byte[] { 0, 0 };
+        }
+        
+        int [] current = new int[this.inventory.getNumItems()];
+        for(int i=0; i<current.length; i++) {
+            ItemDefinition definition = 
+                    this.registry.define(this.inventory.peekItem(i));
+            if(definition == null) {
+                throw new IllegalArgumentException(
+                        "Item has no definition: " + 
+                        this.inventory.peekItem(i).getName());
+            }
+            current[i] = definition.getId();
+        }
+        
+        byte [] patch = InventorySync.diff(this.sent, current, this.registry);
+        this.sent = current;
+        this.sentVersion = this.inventory.getVersion();
+        return patch;
+    }
+    
+    /**
+     * Make a patch taking one list of definition ids to another. Both lists
+     * must be sorted by name, as an inventory is
+     * 
+     * @param from The ids before
+     * @param to The ids after
+     * @param registry The registry holding the definitions
+     * @return The patch
+     */
+    static byte [] diff(int [] from, int [] to, ItemRegistry registry) {
+        int [] removed = new int[from.length];
+        int [] inserted = new int[to.length];
+        int numRemoved = 0;
+        int numInserted = 0;
+        
+        // Walk both lists in step. Matching ids are kept. Otherwise the one 
+        // with the smaller name can't appear in the other list from here on
+        int i = 0;
+        int j = 0;
+        while(i < from.length && j < to.length) {
+            if(from[i] == to[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            
+            int order = registry.get(from[i]).getName()
+                    .compareTo(registry.get(to[j]).getName());
+            if(order > 0) {
+                inserted[numInserted++] = j++;
+            } else {
+                // Items with the same name but a different definition are 
+                // treated as a removal followed, if need be, by an insert
+                removed[numRemoved++] = i++;
+            }
+        }
+        while(i < from.length) {
+            removed[numRemoved++] = i++;
+        }
+        while(j < to.length) {
+            inserted[numInserted++] = j++;
+        }
+        
+        // Write the patch. Each count is followed by its positions, as gaps
+        // from the one before
+        PatchWriter out = new PatchWriter(2 + numRemoved + numInserted * 3);
+        out.write(numRemoved);
+        int previous = -1;
+        for(int k=0; k<numRemoved; k++) {
+            out.write(removed[k] - previous - 1);
+            previous = removed[k];
+        }
+        out.write(numInserted);
+        previous = -1;
+        for(int k=0; k<numInserted; k++) {
+            out.write(inserted[k] - previous - 1);
+            out.write(to[inserted[k]]);
+            previous = inserted[k];
+        }
+        
+        return out.toByteArray();
+    }
+    
+    /**
+     * Apply a patch to a copy of an inventory
+     * 
+     * @param patch The patch, as made by nextPatch
+     * @param ids The definition id of each item in the copy, in inventory 
+     * order. Use an empty array for the first patch
+     * @return The definition id of each item after the patch
+     * @throws IllegalArgumentException If the patch doesn't fit the copy
+     */
+    public static int [] apply(byte [] patch, int [] ids) {
+        PatchReader in = new PatchReader(patch);
+        
+        // Copy the items we keep, skipping over the removed positions
+        int numRemoved = in.read();
+        if(numRemoved > ids.length) {
+            throw new IllegalArgumentException("Patch doesn't fit");
+        }
+        int [] kept = new int[ids.length - numRemoved];
+        int read = 0;
+        int write = 0;
+        int position = -1;
+        for(int k=0; k<numRemoved; k++) {
+            position += in.read() + 1;
+            if(position >= ids.length) {
+                throw new IllegalArgumentException("Patch doesn't fit");
+            }
+            System.arraycopy(ids, read, kept, write, position - read);
+            write += position - read;
+            read = position + 1;
+        }
+        System.arraycopy(ids, read, kept, write, ids.length - read);
+        
+        // Merge in the inserted items. Their positions are in the final 
+        // list, so everything between them comes from the kept items
+        int numInserted = in.read();
+        int [] result = new int[kept.length + numInserted];
+        read = 0;
+        write = 0;
+        position = -1;
+        for(int k=0; k<numInserted; k++) {
+            position += in.read() + 1;
+            if(position >= result.length || 
+                    position - write > kept.length - read) {
+                throw new IllegalArgumentException("Patch doesn't fit");
+            }
+            System.arraycopy(kept, read, result, write, position - write);
+            read += position - write;
+            result[position] = in.read();
+            write = position + 1;
+        }
+        System.arraycopy(kept, read, result, write, kept.length - read);
+        
+        return result;
+    }
+    
+    /**
+     * Writes variable length integers into a growable array
+     */
+    private static final class PatchWriter {
+        /**
+         * The bytes written so far
+         */
+        private byte [] data;
+        
+        /**
+         * The number of bytes written
+         */
+        private int length;
+        
+        /**
+         * Constructor for the PatchWriter class
+         * 
+         * @param capacity The number of bytes to allow for at first
+         */
+        private PatchWriter( int capacity ) {
+            this.data = new byte[capacity];
+            this.length = 0;
+        }
+        
+        /**
+         * Write a value as a variable length integer, seven bits per byte
+         * with the high bit set on every byte but the last
+         * 
+         * @param value The value, which must not be negative
+         */
+        private void write(int value) {
+            if(this.length + 5 > this.data.length) {
+                this.data = Arrays.copyOf(this.data, 
+                        Math.max(this.data.length * 2, this.length + 5));
+            }
+            while(value >= 0x80) {
+                this.data[this.length++] = (byte)(value | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.length++] = (byte)value;
+        }
+        
+        /**
+         * Get the bytes written
+         * 
+         * @return A copy of the bytes written
+         */
+        private byte [] toByteArray() {
+            return Arrays.copyOf(this.data, this.length);
+        }
+    }
+    
+    /**
+     * Reads variable length integers from an array
+     */
+    private static final class PatchReader {
+        /**
+         * The bytes being read
+         */
+        private final byte [] data;
+        
+        /**
+         * The index of the next byte to read
+         */
+        private int position;
+        
+        /**
+         * Constructor for the PatchReader class
+         * 
+         * @param data The bytes to read
+         */
+        private PatchReader( byte [] data ) {
+            this.data = data;
+            this.position = 0;
+        }
+        
+        /**
+         * Read a variable length integer
+         * 
+         * @return The value
+         * @throws IllegalArgumentException If the data ends part way through
+         * the value
+         */
+        private int read() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if(this.position >= this.data.length || shift > 28) {
+                    throw new IllegalArgumentException("Patch is truncated");
+                }
+                b = this.data[this.position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compares keeping a client up to date with InventorySync patches against 
+ * sending the whole listing after every action. Runs a mix of the actions 
+ * a player takes in InventoryDemo (creating items, taking an item and 
+ * putting it back, dropping items) on inventories of several sizes, and 
+ * reports the average bytes sent and time taken per action.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventorySyncBenchmark {
+    /**
+     * Used to render the full listing, as listContents would print it
+     */
+    private static final InventoryRenderer RENDERER = new InventoryRenderer();
+    
+    /**
+     * Where results are published, so the work of making them can't be 
+     * optimised away
+     */
+    private static volatile Object published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of actions to run at each size
+     * @throws IOException Never, since the listing goes to a StringBuilder
+     */
+    public static void main(String[] args) throws IOException {
+        int numActions = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        
+        System.out.printf("%8s %12s %12s %12s %12s %12s%n", "capacity", 
+                "patch B", "encode ns", "decode ns", "listing B", 
+                "listing ns");
+        for(int capacity = 10; capacity <= 1000; capacity *= 10) {
+            // Run once to warm up, then again to measure
+            run(capacity, numActions, false);
+            run(capacity, numActions, true);
+        }
+    }
+    
+    /**
+     * Run a mix of actions on an inventory, half full to begin with, 
+     * sending an update after each one
+     * 
+     * @param capacity The capacity of the inventory
+     * @param numActions The number of actions to run
+     * @param report True to print the results
+     * @throws IOException Never, since the listing goes to a StringBuilder
+     */
+    private static void run(int capacity, int numActions, boolean report) 
+            throws IOException {
+        Random random = new Random(capacity);
+        Inventory inventory = new Inventory(capacity);
+        for(int i=0; i<capacity / 2; i++) {
+            inventory.insertItem(randomItem(random));
+        }
+        
+        InventorySync sync = new InventorySync(inventory);
+        int [] client = InventorySync.apply(sync.nextPatch(), new int[0]);
+        StringBuilder listing = new StringBuilder();
+        
+        long patchBytes = 0;
+        long encodeTime = 0;
+        long decodeTime = 0;
+        long listingBytes = 0;
+        long listingTime = 0;
+        
+        for(int i=0; i<numActions; i++) {
+            act(inventory, random);
+            
+            long begin = System.nanoTime();
+            byte [] patch = sync.nextPatch();
+            long encoded = System.nanoTime();
+            client = InventorySync.apply(patch, client);
+            long decoded = System.nanoTime();
+            patchBytes += patch.length;
+            encodeTime += encoded - begin;
+            decodeTime += decoded - encoded;
+            
+            begin = System.nanoTime();
+            listing.setLength(0);
+            RENDERER.render(inventory, listing);
+            byte [] bytes = listing.toString().getBytes(StandardCharsets.UTF_8);
+            listingTime += System.nanoTime() - begin;
+            listingBytes += bytes.length;
+            published = bytes;
+        }
+        published = client;
+        
+        if(report) {
+            System.out.printf("%8d %12.1f %12.1f %12.1f %12.1f %12.1f%n", 
+                    capacity, (double)patchBytes / numActions, 
+                    (double)encodeTime / numActions, 
+                    (double)decodeTime / numActions,
+                    (double)listingBytes / numActions, 
+                    (double)listingTime / numActions);
+        }
+    }
+    
+    /**
+     * Take one action, chosen at random from a typical mix
+     * 
+     * @param inventory The inventory to act on
+     * @param random The source of randomness
+     */
+    private static void act(Inventory inventory, Random random) {
+        int choice = random.nextInt(10);
+        if(choice < 3 && inventory.getNumItems() < inventory.getMaxCapacity()) {
+            // Create an item
+            inventory.insertItem(randomItem(random));
+        } else if(choice < 8 && inventory.getNumItems() > 0) {
+            // Take an item out and put it back again
+            IItem item = inventory.getItem(
+                    random.nextInt(inventory.getNumItems()));
+            inventory.insertItem(item);
+        } else if(inventory.getNumItems() > 0) {
+            // Drop an item
+            inventory.dropItem(random.nextInt(inventory.getNumItems()));
+        }
+    }
+    
+    /**
+     * Create an item with a random name
+     * 
+     * @param random The source of randomness
+     * @return The item
+     */
+    private static IItem randomItem(Random random) {
+        int kind = random.nextInt(3);
+        return ItemType.values()[kind].create(
+                ItemType.values()[kind].name().charAt(0) + 
+                Integer.toString(random.nextInt(50)), "Standard issue.");
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Puts InventoryManager transfers under contention, and checks that no item
+ * is ever lost or duplicated. A number of threads make random transfers and
+ * trades between a number of players. The fewer the players, the more often
+ * two threads want the same inventory at once.
+ * 
+ * While the threads run, an auditor repeatedly locks every inventory at once
+ * and checks that every item is in exactly one inventory. Since transfers 
+ * happen while all of their inventories are locked, the auditor must never 
+ * catch one half way through. At the end the same check is made once more.
+ * 
+ * @author Gary Munnelly
+ */
+public class InventoryTransferBenchmark {
+    /**
+     * The capacity of each player's inventory
+     */
+    private static final int CAPACITY = 20;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of threads, the number of players and the number
+     * of transfers per thread
+     * @throws InterruptedException If interrupted while waiting for threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 
+                Runtime.getRuntime().availableProcessors();
+        int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int numTransfers = args.length > 2 ? 
+                Integer.parseInt(args[2]) : 200000;
+        
+        // Give every player an inventory, half full of distinct items
+        InventoryManager manager = new InventoryManager();
+        Inventory [] inventories = new Inventory[numPlayers];
+        Set<IItem> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(int p=0; p<numPlayers; p++) {
+            inventories[p] = new Inventory(CAPACITY);
+            for(int i=0; i<CAPACITY / 2; i++) {
+                IItem item = new Sword("Sword " + (i % 4), "Owned by " + p);
+                inventories[p].insertItem(item);
+                all.add(item);
+            }
+            manager.register(p, inventories[p]);
+        }
+        
+        AtomicLong succeeded = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread [] threads = new Thread[numThreads];
+        for(int t=0; t<numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for(int i=0; i<numTransfers; i++) {
+                    int first = random.nextInt(numPlayers);
+                    int second = random.nextInt(numPlayers);
+                    IItem firstItem = pickItem(inventories[first], random);
+                    IItem secondItem = pickItem(inventories[second], random);
+                    
+                    // The items picked may have moved on by now, in which 
+                    // case the transfer simply fails
+                    boolean done = (i & 1) == 0 || secondItem == null ? 
+                            manager.transfer(first, firstItem, second) :
+                            manager.trade(first, firstItem, second, 
+                                    secondItem);
+                    if(done) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+            });
+        }
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong audits = new AtomicLong();
+        Thread auditor = new Thread(() -> {
+            while(running.get()) {
+                String problem = audit(inventories, 0, all);
+                if(problem != null) {
+                    failure.compareAndSet(null, problem);
+                }
+                audits.incrementAndGet();
+            }
+        });
+        
+        long begin = System.nanoTime();
+        auditor.start();
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        running.set(false);
+        auditor.join();
+        
+        String problem = audit(inventories, 0, all);
+        if(problem != null) {
+            failure.compareAndSet(null, problem);
+        }
+        
+        long attempts = (long)numThreads * numTransfers;
+        System.out.printf("threads: %d, players: %d%n", numThreads, 
+                numPlayers);
+        System.out.printf("transfers: %d attempted, %d succeeded in %.2f s "
+                + "(%.0f/s)%n", attempts, succeeded.get(), elapsed / 1e9, 
+                attempts / (elapsed / 1e9));
+        System.out.printf("conflicts: %d, audits: %d%n", 
+                manager.getConflicts(), audits.get());
+        System.out.println(failure.get() == null ? 
+                "no items lost or duplicated" : "FAILED: " + failure.get());
+    }
+    
+    /**
+     * Pick a random item from an inventory
+     * 
+     * @param inventory The inventory
+     * @param random The source of randomness
+     * @return The item, or null if the inventory is empty
+     */
+    private static IItem pickItem(Inventory inventory, 
+            ThreadLocalRandom random) {
+        synchronized(inventory) {
+            int numItems = inventory.getNumItems();
+            return numItems == 0 ? 
+                    null : inventory.peekItem(random.nextInt(numItems));
+        }
+    }
+    
+    /**
+     * Lock every inventory, one inside the other, and check that every item
+     * is in exactly one of them
+     * 
+     * @param inventories The inventories
+     * @param next The index of the next inventory to lock
+     * @param all Every item there should be
+     * @return A description of the problem, or null if there isn't one
+     */
+    private static String audit(Inventory [] inventories, int next, 
+            Set<IItem> all) {
+        if(next < inventories.length) {
+            synchronized(inventories[next]) {
+                return audit(inventories, next + 1, all);
+            }
+        }
+        
+        Set<IItem> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Inventory inventory : inventories) {
+            for(IItem item : inventory) {
+                if(!seen.add(item)) {
+                    return "item duplicated: " + item.getName();
+                }
+            }
+        }
+        if(seen.size() != all.size()) {
+            return (all.size() - seen.size()) + " items lost";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * The shared, unchanging details of an item: its type, name, description and
+ * numeric stats.
+ * Many items can share the same definition, so each of these details is only
+ * held in memory once no matter how many copies of an item exist. 
+ * Definitions are usually created by an ItemRegistry, which makes sure there
+ * is only one definition for each combination of details. Items built from a
+ * plain name and description get a definition of their own which isn't in 
+ * any registry.
+ * 
+ * @author Gary Munnelly
+ */
+public final class ItemDefinition {
+    /**
+     * The id of definitions which aren't in any registry
+     */
+    public static final int UNREGISTERED = -1;
+    
+    /**
+     * The stats of items which aren't given any
+     */
+    private static final int [] NO_ATTRIBUTES = 
+            new int[ItemAttribute.values().length];
+    
+    /**
+     * The number which identifies this definition in its registry
+     */
+    private final int id;
+    
+    /**
+     * The type of item
+     */
+    private final ItemType type;
+    
+    /**
+     * The user consumable name of the item
+     */
+    private final String name;
+    
+    /**
+     * The user consumable description of the item
+     */
+    private final String description;
+    
+    /**
+     * The value of each attribute, indexed by ordinal
+     */
+    private final int [] attributes;
+    
+    /**
+     * Constructor for the ItemDefinition class. Use ItemRegistry.define to 
+     * get a definition.
+     * 
+     * @param id The number which identifies this definition in its registry
+     * @param type The type of item
+     * @param name The name of the item
+     * @param description A description of the item
+     * @param attributes The value of each attribute, indexed by ordinal. 
+     * Not copied, so must not be changed afterwards
+     */
+    ItemDefinition( int id, ItemType type, String name, String description,
+            int [] attributes ) {
+        this.id = id;
+        this.type = type;
+        this.name = name;
+        this.description = description;
+        this.attributes = attributes;
+    }
+    
+    /**
+     * Create a definition which isn't in any registry, for a one-off item
+     * 
+     * @param type The type of item
+     * @param name The name of the item
+     * @param description A description of the item
+     * @return The new definition, with no stats
+     */
+    static ItemDefinition unregistered(ItemType type, String name, 
+            String description) {
+        return new ItemDefinition(ItemDefinition.UNREGISTERED, type, name, 
+                description, ItemDefinition.NO_ATTRIBUTES);
+    }
+    
+    /**
+     * Find the definition held by an item
+     * 
+     * @param item The item
+     * @return The definition of the item, or null if it isn't a Sword, Shield
+     * or Potion
+     */
+    public static ItemDefinition of(IItem item) {
+        if(item instanceof Sword) {
+            return ((Sword)item).getDefinition();
+        } else if(item instanceof Shield) {
+            return ((Shield)item).getDefinition();
+        } else if(item instanceof Potion) {
+            return ((Potion)item).getDefinition();
+        }
+        return null;
+    }
+    
+    /**
+     * Get the number which identifies this definition in its registry
+     * 
+     * @return The id of the definition, or UNREGISTERED if it isn't in a
+     * registry
+     */
+    public int getId() {
+        return this.id;
+    }
+    
+    /**
+     * Get the type of item
+     * 
+     * @return The type of item
+     */
+    public ItemType getType() {
+        return this.type;
+    }
+    
+    /**
+     * Get the user consumable name of the item
+     * 
+     * @return The name of the item as a String
+     */
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * Get the user consumable description of the item
+     * 
+     * @return The description of the item as a String
+     */
+    public String getDescription() {
+        return this.description;
+    }
+    
+    /**
+     * Get the value of one of the item's numeric stats
+     * 
+     * @param attribute The stat to get
+     * @return The value of the stat
+     */
+    public int getAttribute(ItemAttribute attribute) {
+        return this.attributes[attribute.ordinal()];
+    }
+    
+    /**
+     * Create a new item using this definition
+     * 
+     * @return The new item
+     */
+    public IItem newItem() {
+        return this.type.create(this);
+    }
+}
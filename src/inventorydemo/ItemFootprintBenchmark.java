@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * Measures how much heap each item takes up, by filling an array with 
+ * items and comparing the heap in use before and after. Three kinds of item
+ * are compared: items holding their own name and description strings, as 
+ * items did before definitions were introduced; one-off items built from a 
+ * name and description, which get a definition of their own; and items 
+ * sharing registered definitions. 
+ * 
+ * Every item is given freshly built strings, as if its details had just 
+ * been read from a player or a file, and there are only a few distinct 
+ * names and descriptions between them.
+ * 
+ * @author Gary Munnelly
+ */
+public class ItemFootprintBenchmark {
+    /**
+     * The number of distinct names and descriptions
+     */
+    private static final int NUM_DISTINCT = 100;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of items to create
+     */
+    public static void main(String[] args) {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        
+        System.out.printf("%-24s %14s%n", "items", "bytes per item");
+        for(int kind=0; kind<3; kind++) {
+            long before = usedHeap();
+            IItem [] items = create(kind, numItems);
+            long after = usedHeap();
+            
+            // Don't count the array holding the items
+            long array = 16 + 4L * numItems;
+            System.out.printf("%-24s %14.1f%n", name(kind), 
+                    (double)(after - before - array) / items.length);
+        }
+    }
+    
+    /**
+     * Create a number of items
+     * 
+     * @param kind 0 for items holding their own strings, 1 for one-off 
+     * items, 2 for items sharing registered definitions
+     * @param numItems The number of items
+     * @return The items
+     */
+    private static IItem [] create(int kind, int numItems) {
+        ItemRegistry registry = new ItemRegistry();
+        IItem [] items = new IItem[numItems];
+        
+        for(int i=0; i<numItems; i++) {
+            // Build new strings for every item, as a parser would
+            int n = i % NUM_DISTINCT;
+            String name = new StringBuilder("Sword ").append(n).toString();
+            String description = new StringBuilder("A pointy sword, number ")
+                    .append(n).toString();
+            
+            switch(kind) {
+                case 0:
+                    items[i] = new StringItem(name, description);
+                    break;
+                case 1:
+                    items[i] = new Sword(name, description);
+                    break;
+                default:
+                    items[i] = new Sword(registry.define(ItemType.SWORD, 
+                            name, description));
+            }
+        }
+        
+        return items;
+    }
+    
+    /**
+     * Get the name of a kind of item
+     * 
+     * @param kind The kind of item, as passed to create
+     * @return The name to show
+     */
+    private static String name(int kind) {
+        switch(kind) {
+            case 0:
+                return "own strings";
+            case 1:
+                return "one-off definitions";
+            default:
+                return "shared definitions";
+        }
+    }
+    
+    /**
+     * Get the amount of heap in use once garbage has been collected
+     * 
+     * @return The number of bytes of heap in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        
+        // A single request to collect garbage isn't always honoured in full
+        for(int i=0; i<5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        
+        return used;
+    }
+    
+    /**
+     * An item which holds its own name and description, the way items were
+     * built before definitions were introduced
+     */
+    private static final class StringItem implements IItem {
+        /**
+         * The name of the item
+         */
+        private final String name;
+        
+        /**
+         * A description of the item
+         */
+        private final String description;
+        
+        /**
+         * Constructor for the StringItem class
+         * 
+         * @param name The name of the item
+         * @param description A description of the item
+         */
+        private StringItem( String name, String description ) {
+            this.name = name;
+            this.description = description;
+        }
+        
+        @Override
+        public String getName() {
+            return this.name;
+        }
+        
+        @Override
+        public String getDescription() {
+            return this.description;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of item definitions so that each combination of type, name,
+ * description and stats is only stored once. Every definition is given an 
+ * id, which can be used to look it up again later. Definitions are never 
+ * removed, so a registry is meant to hold the set of items a game knows about
+ * rather than one-off items. Items built from a name and description, such 
+ * as those typed in by a player, aren't put in any registry.
+ * 
+ * A registry can be given a limit on the number of definitions it holds, so
+ * that one filled from untrusted input can't grow without bound. Looking up
+ * a definition which already exists never takes a lock.
+ * 
+ * @author Gary Munnelly
+ */
+public class ItemRegistry {
+    /**
+     * The registry used by items which aren't given a definition explicitly
+     */
+    private static final ItemRegistry DEFAULT = new ItemRegistry();
+    
+    /**
+     * The stats of items which aren't given any
+     */
+    private static final int [] NO_ATTRIBUTES = 
+            new int[ItemAttribute.values().length];
+    
+    /**
+     * The most definitions the registry will hold
+     */
+    private final int maxDefinitions;
+    
+    /**
+     * Definitions, indexed by their details
+     */
+    private final Map<Key, ItemDefinition> definitions;
+    
+    /**
+     * Every name and description used by a definition. Only used while 
+     * holding the lock
+     */
+    private final Map<String, String> strings;
+    
+    /**
+     * Definitions, indexed by their id. Slots [0, numDefinitions) are in use
+     */
+    private volatile ItemDefinition [] byId;
+    
+    /**
+     * The number of definitions in the registry
+     */
+    private volatile int numDefinitions;
+    
+    /**
+     * Constructor for the ItemRegistry class. Creates an empty registry with
+     * no limit on the number of definitions
+     */
+    public ItemRegistry() {
+        this(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Constructor for the ItemRegistry class. Creates an empty registry 
+     * which holds at most the number of definitions passed as argument
+     * 
+     * @param maxDefinitions The most definitions the registry will hold
+     */
+    public ItemRegistry( int maxDefinitions ) {
+        if(maxDefinitions < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid limit: " + maxDefinitions);
+        }
+        this.maxDefinitions = maxDefinitions;
+        this.definitions = new ConcurrentHashMap<>();
+        this.strings = new HashMap<>();
+        this.byId = new ItemDefinition[16];
+        this.numDefinitions = 0;
+    }
+    
+    /**
+     * Get the registry used by items which aren't given a definition 
+     * explicitly
+     * 
+     * @return The default registry
+     */
+    public static ItemRegistry getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * Get the definition for an item with the given details, creating it if
+     * this is the first time these details have been seen
+     * 
+     * @param type The type of item
+     * @param name The name of the item
+     * @param description A description of the item
+     * @return The one definition with these details, or null if it is new 
+     * and the registry is full
+     */
+    public ItemDefinition define(ItemType type, String name, 
+            String description) {
+        return this.define(type, name, description, 
+                ItemRegistry.NO_ATTRIBUTES);
+    }
+    
+    /**
+     * Get the definition for an item with the given details and stats, 
+     * creating it if this is the first time they have been seen. Items with
+     * the same name and description but different stats get different 
+     * definitions
+     * 
+     * @param type The type of item
+     * @param name The name of the item
+     * @param description A description of the item
+     * @param attributes The value of each stat. Stats which are left out 
+     * are 0
+     * @return The one definition with these details, or null if it is new 
+     * and the registry is full
+     */
+    public ItemDefinition define(ItemType type, String name, 
+            String description, Map<ItemAttribute, Integer> attributes) {
+        int [] values = new int[ItemAttribute.values().length];
+        attributes.forEach((attribute, value) -> 
+                values[attribute.ordinal()] = value);
+        return this.define(type, name, description, values);
+    }
+    
+    /**
+     * Get the definition for an item with the given details and stats, 
+     * creating it if this is the first time they have been seen
+     * 
+     * @param type The type of item
+     * @param name The name of the item
+     * @param description A description of the item
+     * @param attributes The value of each stat, indexed by ordinal. Not 
+     * changed or kept
+     * @return The one definition with these details, or null if it is new 
+     * and the registry is full
+     */
+    private ItemDefinition define(ItemType type, String name, 
+            String description, int [] attributes) {
+        // Definitions which already exist are found without locking
+        Key key = new Key(type, name, description, attributes);
+        ItemDefinition definition = this.definitions.get(key);
+        if(definition != null) {
+            return definition;
+        }
+        
+        synchronized(this) {
+            return this.create(key);
+        }
+    }
+    
+    /**
+     * Create the definition for a key, unless another thread got there 
+     * first. Must be called while holding the lock
+     * 
+     * @param key The details of the definition
+     * @return The one definition with these details, or null if the 
+     * registry is full
+     */
+    private ItemDefinition create(Key key) {
+        ItemDefinition definition = this.definitions.get(key);
+        
+        if(definition == null) {
+            if(this.numDefinitions >= this.maxDefinitions) {
+                return null;
+            }
+            
+            // Grow the id table if it's full
+            int id = this.numDefinitions;
+            ItemDefinition [] table = this.byId;
+            if(id == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            
+            // Share the strings with any other definitions that use them
+            definition = new ItemDefinition(id, key.type, 
+                    this.intern(key.name), this.intern(key.description), 
+                    key.attributes);
+            table[id] = definition;
+            
+            // Publish the new definition to threads looking up ids before 
+            // threads looking up details can find it
+            this.byId = table;
+            this.numDefinitions = id + 1;
+            this.definitions.put(key, definition);
+        }
+        
+        return definition;
+    }
+    
+    /**
+     * Get the definition for an existing item
+     * 
+     * @param item The item
+     * @return The definition of the item, or null if it isn't a Sword, Shield
+     * or Potion, or if it is new and the registry is full
+     */
+    public ItemDefinition define(IItem item) {
+        // Items which already hold one of our definitions can use it as is
+        ItemDefinition definition = ItemDefinition.of(item);
+        if(definition == null) {
+            return null;
+        }
+        
+        if(this.get(definition.getId()) == definition) {
+            return definition;
+        }
+        int [] attributes = new int[ItemAttribute.values().length];
+        for(ItemAttribute attribute : ItemAttribute.values()) {
+            attributes[attribute.ordinal()] = 
+                    definition.getAttribute(attribute);
+        }
+        return this.define(definition.getType(), definition.getName(), 
+                definition.getDescription(), attributes);
+    }
+    
+    /**
+     * Look up a definition by its id
+     * 
+     * @param id The id of the definition
+     * @return The definition, or null if there is no definition with that id
+     */
+    public ItemDefinition get(int id) {
+        int count = this.numDefinitions;
+        ItemDefinition [] table = this.byId;
+        if(id < 0 || id >= count) {
+            return null;
+        }
+        return table[id];
+    }
+    
+    /**
+     * Get the number of definitions in the registry
+     * 
+     * @return The number of definitions
+     */
+    public int size() {
+        return this.numDefinitions;
+    }
+    
+    /**
+     * Find a string already used by a definition which is equal to the one
+     * given. The same name or description often turns up on items of 
+     * different types, so strings are shared across all definitions.
+     * 
+     * @param s The string
+     * @return An equal string already held by the registry, or s itself
+     */
+    private String intern(String s) {
+        String existing = this.strings.putIfAbsent(s, s);
+        return existing == null ? s : existing;
+    }
+    
+    /**
+     * The details which identify a definition
+     */
+    private static final class Key {
+        /**
+         * The type of item
+         */
+        private final ItemType type;
+        
+        /**
+         * The name of the item
+         */
+        private final String name;
+        
+        /**
+         * A description of the item
+         */
+        private final String description;
+        
+        /**
+         * The value of each stat, indexed by ordinal
+         */
+        private final int [] attributes;
+        
+        /**
+         * Constructor for the Key class
+         * 
+         * @param type The type of item
+         * @param name The name of the item
+         * @param description A description of the item
+         * @param attributes The value of each stat, indexed by ordinal. 
+         * Copied, so the caller may change it afterwards
+         */
+        private Key( ItemType type, String name, String description, 
+                int [] attributes ) {
+            this.type = type;
+            this.name = name;
+            this.description = description;
+            this.attributes = attributes.clone();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            return this.type == other.type && 
+                    Objects.equals(this.name, other.name) &&
+                    Objects.equals(this.description, other.description) &&
+                    Arrays.equals(this.attributes, other.attributes);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(this.type, this.name, this.description) +
+                    Arrays.hashCode(this.attributes);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * The kinds of item that the game knows how to create. Each type has a tag 
+ * which identifies it when items are written out in a compact form, for 
+ * example in an inventory snapshot.
+ * 
+ * @author Gary Munnelly
+ */
+public enum ItemType {
+    SWORD(1),
+    SHIELD(2),
+    POTION(3);
+    
+    /**
+     * The tag which identifies this type of item
+     */
+    private final byte tag;
+    
+    /**
+     * Constructor for the ItemType enum
+     * 
+     * @param tag The tag which identifies this type of item
+     */
+    private ItemType( int tag ) {
+        this.tag = (byte)tag;
+    }
+    
+    /**
+     * Get the tag which identifies this type of item
+     * 
+     * @return The tag as a byte
+     */
+    public byte getTag() {
+        return this.tag;
+    }
+    
+    /**
+     * Create a new item of this type
+     * 
+     * @param name The name of the item
+     * @param description A description of the item
+     * @return The new item
+     */
+    public IItem create(String name, String description) {
+        switch(this) {
+            case SWORD:
+                return new Sword(name, description);
+            case SHIELD:
+                return new Shield(name, description);
+            default:
+                return new Potion(name, description);
+        }
+    }
+    
+    /**
+     * Create a new item of this type from a shared definition
+     * 
+     * @param definition The definition of the item. Must be of this type
+     * @return The new item
+     */
+    public IItem create(ItemDefinition definition) {
+        switch(this) {
+            case SWORD:
+                return new Sword(definition);
+            case SHIELD:
+                return new Shield(definition);
+            default:
+                return new Potion(definition);
+        }
+    }
+    
+    /**
+     * Find the type of an item
+     * 
+     * @param item The item
+     * @return The type of the item, or null if it isn't a type we know about
+     */
+    public static ItemType of(IItem item) {
+        if(item instanceof Sword) {
+            return SWORD;
+        } else if(item instanceof Shield) {
+            return SHIELD;
+        } else if(item instanceof Potion) {
+            return POTION;
+        }
+        return null;
+    }
+    
+    /**
+     * Find the type of item identified by a tag
+     * 
+     * @param tag The tag
+     * @return The type with that tag, or null if no type has that tag
+     */
+    public static ItemType fromTag(byte tag) {
+        for(ItemType type : ItemType.values()) {
+            if(type.tag == tag) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
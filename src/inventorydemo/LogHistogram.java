@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Counts how often values of different sizes are recorded, in the same way 
+ * as HdrHistogram. Values are sorted into buckets whose width grows with the
+ * value, so every bucket covers values within about 6% of each other and a
+ * few hundred buckets are enough to cover every positive long. Recording a 
+ * value is a couple of shifts and an atomic increment, and never allocates.
+ * 
+ * Values can be recorded from many threads at once. Percentiles read while 
+ * values are being recorded may miss the most recent values.
+ * 
+ * @author Gary Munnelly
+ */
+public final class LogHistogram {
+    /**
+     * The number of bits used to tell values apart within each power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    
+    /**
+     * The number of buckets values below 2^SUB_BUCKET_BITS go into. They are
+     * recorded exactly
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    
+    /**
+     * The number of buckets added by each power of two after that
+     */
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    
+    /**
+     * The number of buckets needed to cover every positive long
+     */
+    private static final int BUCKET_COUNT = 
+            indexOf(Long.MAX_VALUE) + 1;
+    
+    /**
+     * The number of values recorded in each bucket
+     */
+    private final AtomicLongArray counts;
+    
+    /**
+     * The largest value recorded
+     */
+    private final LongAccumulator max;
+    
+    /**
+     * Constructor for the LogHistogram class
+     */
+    public LogHistogram() {
+        this.counts = new AtomicLongArray(LogHistogram.BUCKET_COUNT);
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+    
+    /**
+     * Record a value. Negative values are recorded as 0
+     * 
+     * @param value The value to record
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(LogHistogram.indexOf(value));
+        this.max.accumulate(value);
+    }
+    
+    /**
+     * Get the number of values recorded
+     * 
+     * @return The number of values recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for(int i=0; i<this.counts.length(); i++) {
+            count += this.counts.get(i);
+        }
+        return count;
+    }
+    
+    /**
+     * Get the largest value recorded
+     * 
+     * @return The largest value recorded, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+    
+    /**
+     * Get the value below which a given fraction of the recorded values 
+     * fall. The value returned is the largest value in the bucket the 
+     * percentile falls in, so it may be a little larger than any value 
+     * actually recorded, but never larger than the maximum.
+     * 
+     * @param fraction The percentile as a fraction between 0 and 1
+     * @return The value at that percentile, or 0 if nothing has been 
+     * recorded
+     */
+    public long getValueAtPercentile(double fraction) {
+        // Copy the counts first so they don't change under us
+        long [] snapshot = new long[this.counts.length()];
+        long total = 0;
+        for(int i=0; i<snapshot.length; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if(total == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        for(int i=0; i<snapshot.length; i++) {
+            seen += snapshot[i];
+            if(seen >= target) {
+                return Math.min(LogHistogram.highestValueAt(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+    
+    /**
+     * Forget every value recorded so far
+     */
+    public void reset() {
+        for(int i=0; i<this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+        this.max.reset();
+    }
+    
+    /**
+     * Find the bucket a value belongs in
+     * 
+     * @param value The value, which must not be negative
+     * @return The index of the bucket
+     */
+    private static int indexOf(long value) {
+        // Values below SUB_BUCKET_COUNT get a bucket each. After that, every
+        // power of two is split into SUB_BUCKET_HALF_COUNT buckets by 
+        // dropping the bits below the top SUB_BUCKET_BITS
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = Math.max(0, highestBit - (LogHistogram.SUB_BUCKET_BITS - 1));
+        return shift * LogHistogram.SUB_BUCKET_HALF_COUNT + 
+                (int)(value >>> shift);
+    }
+    
+    /**
+     * Find the largest value which belongs in a bucket
+     * 
+     * @param index The index of the bucket
+     * @return The largest value in the bucket
+     */
+    private static long highestValueAt(int index) {
+        if(index < LogHistogram.SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / LogHistogram.SUB_BUCKET_HALF_COUNT - 1;
+        long lowest = (long)(index - shift * LogHistogram.SUB_BUCKET_HALF_COUNT) 
+                << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
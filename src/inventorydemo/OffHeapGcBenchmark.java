@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Compares the garbage collection pauses seen by a program holding a very 
+ * large inventory in each storage engine. The inventory is filled, then the
+ * program churns through short lived objects while making the odd change to
+ * the inventory, which is the kind of load that triggers frequent young 
+ * collections. Finally a full collection is forced. Reports the number of 
+ * young collections, their average and longest pause, and the length of the
+ * full collection.
+ * 
+ * Run it with the collector of interest, for example -XX:+UseSerialGC or 
+ * -XX:+UseG1GC, and a heap big enough for the on-heap inventory.
+ * 
+ * @author Gary Munnelly
+ */
+public class OffHeapGcBenchmark {
+    /**
+     * The number of distinct items the inventory is filled from
+     */
+    private static final int CATALOGUE_SIZE = 10000;
+    
+    /**
+     * The number of short lived objects made between changes to the 
+     * inventory
+     */
+    private static final int GARBAGE_PER_CHANGE = 20000;
+    
+    /**
+     * Where results are published, so the work can't be optimised away
+     */
+    private static volatile Object published;
+    
+    /**
+     * The pause of each collection since the listener was last cleared, in 
+     * milliseconds
+     */
+    private static final List<Long> youngPauses = new ArrayList<>();
+    
+    /**
+     * The pause of each full collection since the listener was last cleared,
+     * in milliseconds
+     */
+    private static final List<Long> fullPauses = new ArrayList<>();
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of items to hold, then the number of changes 
+     * to make under load
+     */
+    public static void main(String[] args) {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int numChanges = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        
+        listen();
+        
+        System.out.printf("%-8s %8s %10s %10s %10s %10s%n", "engine", 
+                "young", "avg ms", "max ms", "full ms", "heap MB");
+        run("sorted", SortedArrayStorage::new, numItems, numChanges);
+        run("packed", capacity -> new PackedArrayStorage(capacity, 
+                new ItemRegistry()), numItems, numChanges);
+        run("offheap", capacity -> new OffHeapStorage(capacity, 
+                new ItemRegistry()), numItems, numChanges);
+    }
+    
+    /**
+     * Fill an inventory, put it under load and report the collections seen
+     * 
+     * @param engine The name of the engine, for the report
+     * @param storage Creates the storage engine given its capacity
+     * @param numItems The number of items to hold
+     * @param numChanges The number of changes to make under load
+     */
+    private static void run(String engine, 
+            Function<Integer, IInventoryStorage> storage, int numItems, 
+            int numChanges) {
+        Inventory inventory = new Inventory(storage.apply(numItems));
+        Random random = new Random(1);
+        
+        // Every engine gets the same catalogue, defined up front. Filling 
+        // the inventory in name order means nothing has to be shifted
+        ItemRegistry registry = new ItemRegistry();
+        ItemDefinition [] catalogue = new ItemDefinition[CATALOGUE_SIZE];
+        for(int i=0; i<CATALOGUE_SIZE; i++) {
+            catalogue[i] = registry.define(ItemType.SWORD, 
+                    String.format("Sword %05d", i), "Sword number " + i);
+        }
+        for(int i=0; i<numItems; i++) {
+            int definition = (int)((long)i * CATALOGUE_SIZE / numItems);
+            inventory.insertItem(catalogue[definition].newItem());
+        }
+        
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        clear();
+        
+        // Churn through garbage with the occasional change to the inventory.
+        // The garbage goes through a small ring so that it really is 
+        // allocated, but doesn't live long
+        Object [] ring = new Object[1024];
+        for(int i=0; i<numChanges; i++) {
+            for(int j=0; j<GARBAGE_PER_CHANGE; j++) {
+                ring[j & (ring.length - 1)] = new int[4 + (j & 7)];
+            }
+            inventory.dropItem(random.nextInt(inventory.getNumItems()));
+            inventory.insertItem(
+                    catalogue[random.nextInt(CATALOGUE_SIZE)].newItem());
+        }
+        
+        // Force a full collection while the inventory is still live
+        System.gc();
+        published = inventory;
+        published = ring;
+        settle();
+        
+        List<Long> young;
+        List<Long> full;
+        synchronized(youngPauses) {
+            young = new ArrayList<>(youngPauses);
+            full = new ArrayList<>(fullPauses);
+        }
+        long total = 0;
+        long max = 0;
+        for(long pause : young) {
+            total += pause;
+            max = Math.max(max, pause);
+        }
+        long fullPause = full.isEmpty() ? 0 : full.get(full.size() - 1);
+        
+        System.out.printf("%-8s %8d %10.2f %10d %10d %10d%n", engine, 
+                young.size(), young.isEmpty() ? 0.0 : 
+                (double)total / young.size(), max, fullPause, heap >> 20);
+    }
+    
+    /**
+     * Start recording the pause of every garbage collection
+     */
+    private static void listen() {
+        NotificationListener listener = 
+                (Notification notification, Object handback) -> {
+            if(!GarbageCollectionNotificationInfo
+                    .GARBAGE_COLLECTION_NOTIFICATION
+                    .equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = 
+                    GarbageCollectionNotificationInfo.from(
+                    (CompositeData)notification.getUserData());
+            long pause = info.getGcInfo().getDuration();
+            synchronized(youngPauses) {
+                if(info.getGcAction().contains("major")) {
+                    fullPauses.add(pause);
+                } else {
+                    youngPauses.add(pause);
+                }
+            }
+        };
+        
+        for(GarbageCollectorMXBean collector : 
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter)collector)
+                    .addNotificationListener(listener, null, null);
+        }
+    }
+    
+    /**
+     * Forget the pauses recorded so far
+     */
+    private static void clear() {
+        settle();
+        synchronized(youngPauses) {
+            youngPauses.clear();
+            fullPauses.clear();
+        }
+    }
+    
+    /**
+     * Wait for notifications of recent collections to arrive. They are 
+     * delivered on another thread a little after each collection
+     */
+    private static void settle() {
+        try {
+            Thread.sleep(500);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
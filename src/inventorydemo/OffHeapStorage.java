@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A storage engine which keeps items outside of the Java heap. Each item is
+ * stored as a fixed size record in a direct ByteBuffer, holding the item's 
+ * type tag, the id of its definition in an ItemRegistry and the sort key of 
+ * its name. Records are kept sorted by name in the same way as 
+ * PackedArrayStorage.
+ * 
+ * The garbage collector never has to look at the contents of the buffer, so 
+ * an inventory holding a huge number of items costs it no more than an empty
+ * one. The buffer is allocated up front, and is freed along with the storage.
+ * 
+ * Item objects aren't kept. A new item is created from its definition each 
+ * time one is read back out, so it will be equal to the item that was stored
+ * but not the same object. Only Sword, Shield and Potion items can be stored.
+ * 
+ * @author Gary Munnelly
+ */
+public class OffHeapStorage implements IInventoryStorage {
+    /**
+     * The size of an item record in bytes
+     */
+    private static final int RECORD_SIZE = 9;
+    
+    /**
+     * The offset of the type tag within a record
+     */
+    private static final int TAG_OFFSET = 0;
+    
+    /**
+     * The offset of the definition id within a record
+     */
+    private static final int DEFINITION_OFFSET = 1;
+    
+    /**
+     * The offset of the sort key within a record
+     */
+    private static final int KEY_OFFSET = 5;
+    
+    /**
+     * The largest capacity which fits in a single buffer
+     */
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE / RECORD_SIZE;
+    
+    /**
+     * The registry holding the definitions of stored items
+     */
+    private final ItemRegistry registry;
+    
+    /**
+     * The maximum number of items this storage can hold
+     */
+    private final int capacity;
+    
+    /**
+     * The number of items currently stored
+     */
+    private int numItems;
+    
+    /**
+     * The item records. Records [0, numItems) are occupied and sorted by name
+     */
+    private final ByteBuffer records;
+    
+    /**
+     * Constructor for the OffHeapStorage class. Items are defined in the 
+     * default registry.
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     */
+    public OffHeapStorage( int capacity ) {
+        this(capacity, ItemRegistry.getDefault());
+    }
+    
+    /**
+     * Constructor for the OffHeapStorage class
+     * 
+     * @param capacity The maximum number of items the storage can hold. Can't
+     * be more than MAX_CAPACITY
+     * @param registry The registry in which to define stored items
+     */
+    public OffHeapStorage( int capacity, ItemRegistry registry ) {
+        if(capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " 
+                    + capacity);
+        }
+        this.registry = registry;
+        this.capacity = capacity;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        this.numItems = 0;
+    }
+    
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+    
+    @Override
+    public int size() {
+        return this.numItems;
+    }
+    
+    @Override
+    public IItem get(int index) {
+        int id = this.records.getInt(index * RECORD_SIZE + DEFINITION_OFFSET);
+        return this.registry.get(id).newItem();
+    }
+    
+    /**
+     * Get the type of a stored item without creating the item
+     * 
+     * @param index The position of the item. Must be in the range 
+     * [0, size())
+     * @return The type of the item
+     */
+    public ItemType getType(int index) {
+        return ItemType.fromTag(
+                this.records.get(index * RECORD_SIZE + TAG_OFFSET));
+    }
+    
+    @Override
+    public int insert(IItem item) {
+        ItemDefinition definition = this.registry.define(item);
+        if(definition == null) {
+            throw new IllegalArgumentException("Unable to store item of type "
+                    + item.getClass().getName());
+        }
+        String name = definition.getName();
+        int key = PackedArrayStorage.sortKey(name);
+        
+        // Binary search the occupied records for the appropriate place to 
+        // insert the item such that the records remain sorted. Items with the
+        // same name are placed after the existing ones
+        int low = 0;
+        int high = this.numItems;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.compareTo(mid, key, name) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int index = low;
+        
+        // Shift the occupied records from index onwards up by one to make 
+        // room
+        this.moveRecords(index, index + 1, this.numItems - index);
+        
+        int offset = index * RECORD_SIZE;
+        this.records.put(offset + TAG_OFFSET, definition.getType().getTag());
+        this.records.putInt(offset + DEFINITION_OFFSET, definition.getId());
+        this.records.putInt(offset + KEY_OFFSET, key);
+        this.numItems++;
+        
+        return index;
+    }
+    
+    @Override
+    public IItem remove(int index) {
+        IItem item = this.get(index);
+        
+        this.numItems--;
+        
+        // Shift the tail of the occupied records down over the record we 
+        // want to delete
+        this.moveRecords(index + 1, index, this.numItems - index);
+        
+        return item;
+    }
+    
+    @Override
+    public int indexOf(String name) {
+        int key = PackedArrayStorage.sortKey(name);
+        
+        // Find the first record whose item name is not less than the name 
+        // given
+        int low = 0;
+        int high = this.numItems;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.compareTo(mid, key, name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        // The lower bound is only a match if the names are equal
+        if(low < this.numItems && this.compareTo(low, key, name) == 0) {
+            return low;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Compare the name of a stored item with a name. The sort keys are 
+     * compared first and the full names are only looked at if they match.
+     * 
+     * @param index The index of the stored item
+     * @param key The sort key of the name
+     * @param name The name
+     * @return A negative number, zero or a positive number if the stored 
+     * item's name is less than, equal to or greater than name
+     */
+    private int compareTo(int index, int key, String name) {
+        int offset = index * RECORD_SIZE;
+        int cmp = Integer.compare(this.records.getInt(offset + KEY_OFFSET), 
+                key);
+        if(cmp != 0) {
+            return cmp;
+        }
+        int id = this.records.getInt(offset + DEFINITION_OFFSET);
+        return this.registry.get(id).getName().compareTo(name);
+    }
+    
+    /**
+     * Copy a run of records to another position. The source and destination
+     * may overlap.
+     * 
+     * @param from The index of the first record to copy
+     * @param to The index to copy the first record to
+     * @param count The number of records to copy
+     */
+    private void moveRecords(int from, int to, int count) {
+        if(count > 0) {
+            this.records.put(to * RECORD_SIZE, this.records, 
+                    from * RECORD_SIZE, count * RECORD_SIZE);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+/**
+ * A storage engine which keeps items as plain numbers rather than objects. 
+ * Each item is stored as the id of its definition in an ItemRegistry, 
+ * alongside a sort key worked out from the first characters of its name. The
+ * two are held in parallel int arrays sorted by name.
+ * 
+ * Searching and shifting only touch the int arrays, so they run through 
+ * memory in order without following references to items and strings. The
+ * full name is only looked up when two sort keys are equal. This also makes
+ * each stored item 8 bytes, regardless of how many other objects the item 
+ * would normally refer to.
+ * 
+ * Item objects aren't kept. A new item is created from its definition each 
+ * time one is read back out, so it will be equal to the item that was stored
+ * but not the same object. Only Sword, Shield and Potion items can be stored.
+ * 
+ * @author Gary Munnelly
+ */
+public class PackedArrayStorage implements IInventoryStorage {
+    /**
+     * The registry holding the definitions of stored items
+     */
+    private final ItemRegistry registry;
+    
+    /**
+     * The number of items currently stored
+     */
+    private int numItems;
+    
+    /**
+     * The definition id of each item. Slots [0, numItems) are occupied and 
+     * sorted by name
+     */
+    private int [] definitionIds;
+    
+    /**
+     * The sort key of each item, in the same order as definitionIds
+     */
+    private int [] sortKeys;
+    
+    /**
+     * Constructor for the PackedArrayStorage class. Items are defined in the
+     * default registry.
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     */
+    public PackedArrayStorage( int capacity ) {
+        this(capacity, ItemRegistry.getDefault());
+    }
+    
+    /**
+     * Constructor for the PackedArrayStorage class
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     * @param registry The registry in which to define stored items
+     */
+    public PackedArrayStorage( int capacity, ItemRegistry registry ) {
+        this.registry = registry;
+        this.definitionIds = new int[capacity];
+        this.sortKeys = new int[capacity];
+        this.numItems = 0;
+    }
+    
+    @Override
+    public int capacity() {
+        return this.definitionIds.length;
+    }
+    
+    @Override
+    public int size() {
+        return this.numItems;
+    }
+    
+    @Override
+    public IItem get(int index) {
+        return this.registry.get(this.definitionIds[index]).newItem();
+    }
+    
+    @Override
+    public int insert(IItem item) {
+        ItemDefinition definition = this.define(item);
+        String name = definition.getName();
+        int key = sortKey(name);
+        
+        // Binary search the occupied slots for the appropriate place to insert
+        // the item such that the arrays remain sorted
+        int index = this.upperBound(key, name);
+        
+        // Shift the occupied slots from index onwards up by one to make room
+        int moved = this.numItems - index;
+        System.arraycopy(this.definitionIds, index, 
+                this.definitionIds, index + 1, moved);
+        System.arraycopy(this.sortKeys, index, this.sortKeys, index + 1, moved);
+        this.definitionIds[index] = definition.getId();
+        this.sortKeys[index] = key;
+        this.numItems++;
+        
+        return index;
+    }
+    
+    @Override
+    public void insertAll(IItem [] items, int count) {
+        // Define all of the items up front, so that nothing is moved if one 
+        // of them can't be stored
+        ItemDefinition [] definitions = new ItemDefinition[count];
+        for(int j=0; j<count; j++) {
+            definitions[j] = this.define(items[j]);
+        }
+        
+        // Merge the new items into the arrays from the back, so that each 
+        // existing item is moved at most once. Existing items stay in front 
+        // of new items with the same name
+        int i = this.numItems - 1;
+        int j = count - 1;
+        int k = this.numItems + count - 1;
+        
+        while(j >= 0) {
+            String name = definitions[j].getName();
+            int key = sortKey(name);
+            if(i >= 0 && this.compareTo(i, key, name) > 0) {
+                this.definitionIds[k] = this.definitionIds[i];
+                this.sortKeys[k--] = this.sortKeys[i--];
+            } else {
+                this.definitionIds[k] = definitions[j--].getId();
+                this.sortKeys[k--] = key;
+            }
+        }
+        
+        this.numItems += count;
+    }
+    
+    @Override
+    public IItem remove(int index) {
+        IItem item = this.get(index);
+        
+        this.numItems--;
+        
+        // Shift the tail of the occupied slots down over the element we want
+        // to delete
+        int moved = this.numItems - index;
+        System.arraycopy(this.definitionIds, index + 1, 
+                this.definitionIds, index, moved);
+        System.arraycopy(this.sortKeys, index + 1, this.sortKeys, index, moved);
+        
+        return item;
+    }
+    
+    @Override
+    public void removeAll(int [] indices, int count) {
+        if(count == 0) {
+            return;
+        }
+        
+        // Sweep over the arrays once, moving each item we keep down over the
+        // gaps left by the ones we remove
+        int write = indices[0];
+        int next = 0;
+        for(int read=indices[0]; read<this.numItems; read++) {
+            if(next < count && indices[next] == read) {
+                next++;
+            } else {
+                this.definitionIds[write] = this.definitionIds[read];
+                this.sortKeys[write++] = this.sortKeys[read];
+            }
+        }
+        
+        this.numItems = write;
+    }
+    
+    @Override
+    public int indexOf(String name) {
+        int key = sortKey(name);
+        
+        // Find the first slot whose item name is not less than the name given
+        int low = 0;
+        int high = this.numItems;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.compareTo(mid, key, name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        // The lower bound is only a match if the names are equal
+        if(low < this.numItems && this.compareTo(low, key, name) == 0) {
+            return low;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Find the first occupied slot whose item name is greater than the name
+     * given.
+     * 
+     * @param key The sort key of the name
+     * @param name The name to search for
+     * @return The index of the first item with a name > name, or numItems if
+     * there is no such item
+     */
+    private int upperBound(int key, String name) {
+        int low = 0;
+        int high = this.numItems;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.compareTo(mid, key, name) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Compare the name of a stored item with a name. The sort keys are 
+     * compared first and the full names are only looked at if they match.
+     * 
+     * @param index The index of the stored item
+     * @param key The sort key of the name
+     * @param name The name
+     * @return A negative number, zero or a positive number if the stored 
+     * item's name is less than, equal to or greater than name
+     */
+    private int compareTo(int index, int key, String name) {
+        int cmp = Integer.compare(this.sortKeys[index], key);
+        if(cmp != 0) {
+            return cmp;
+        }
+        return this.registry.get(this.definitionIds[index]).getName()
+                .compareTo(name);
+    }
+    
+    /**
+     * Get the definition of an item in our registry
+     * 
+     * @param item The item
+     * @return The definition of the item
+     * @throws IllegalArgumentException If the item can't be stored
+     */
+    private ItemDefinition define(IItem item) {
+        ItemDefinition definition = this.registry.define(item);
+        if(definition == null) {
+            throw new IllegalArgumentException("Unable to store item of type "
+                    + item.getClass().getName());
+        }
+        return definition;
+    }
+    
+    /**
+     * Work out the sort key of a name. The key packs the first two characters
+     * of the name into an int so that comparing two keys gives the same 
+     * answer as comparing the start of the two names. Names shorter than two
+     * characters are padded with zeros.
+     * 
+     * @param name The name
+     * @return The sort key of the name
+     */
+    static int sortKey(String name) {
+        int first = name.length() > 0 ? name.charAt(0) : 0;
+        int second = name.length() > 1 ? name.charAt(1) : 0;
+        
+        // Flip the top bit so that comparing keys as signed ints orders them 
+        // the same way as the characters
+        return ((first << 16) | second) ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An inventory which can never change. Inserting or dropping an item gives
+ * back a new inventory and leaves the old one as it was, so any number of 
+ * threads can read an inventory without locking, and without ever seeing it
+ * half way through a change.
+ * 
+ * The items are kept in a balanced binary tree sorted by name, in the same 
+ * order as Inventory keeps them. Each node knows how many items sit beneath
+ * it, so items can be found by index. A change copies only the nodes on the
+ * path from the root to the item, about log(n) of them, and shares every 
+ * other node with the inventory it was made from.
+ * 
+ * @author Gary Munnelly
+ */
+public final class PersistentInventory implements Iterable<IItem> {
+    /**
+     * The maximum number of items the inventory can hold
+     */
+    private final int maxCapacity;
+    
+    /**
+     * The root of the tree of items. Null if the inventory is empty
+     */
+    private final Node root;
+    
+    /**
+     * Constructor for the PersistentInventory class
+     * 
+     * @param maxCapacity The maximum number of items the inventory can hold
+     * @param root The root of the tree of items
+     */
+    private PersistentInventory( int maxCapacity, Node root ) {
+        this.maxCapacity = maxCapacity;
+        this.root = root;
+    }
+    
+    /**
+     * Create an empty inventory
+     * 
+     * @param maxCapacity The maximum number of items the inventory can hold
+     * @return The empty inventory
+     */
+    public static PersistentInventory empty(int maxCapacity) {
+        return new PersistentInventory(maxCapacity, null);
+    }
+    
+    /**
+     * Create an inventory holding the same items as an ordinary inventory
+     * 
+     * @param inventory The inventory to copy
+     * @return An inventory with the same items and capacity
+     */
+    public static PersistentInventory of(Inventory inventory) {
+        // The inventory is already sorted, so the tree can be built straight
+        // from it without any comparisons
+        IItem [] items = new IItem[inventory.getNumItems()];
+        for(int i=0; i<items.length; i++) {
+            items[i] = inventory.peekItem(i);
+        }
+        return new PersistentInventory(inventory.getMaxCapacity(), 
+                build(items, 0, items.length));
+    }
+    
+    /**
+     * Get the maximum number of items we can store in this inventory
+     * 
+     * @return The capacity of the inventory
+     */
+    public int getMaxCapacity() {
+        return this.maxCapacity;
+    }
+    
+    /**
+     * Get the number of items stored in this inventory
+     * 
+     * @return The number of items in the inventory
+     */
+    public int getNumItems() {
+        return size(this.root);
+    }
+    
+    /**
+     * Look at an item in the inventory
+     * 
+     * @param index The index of the item we are looking for
+     * @return The item at index. Will be null if the index is invalid
+     */
+    public IItem peekItem(int index) {
+        if(index < 0 || index >= size(this.root)) {
+            return null;
+        }
+        
+        Node node = this.root;
+        while(true) {
+            int leftSize = size(node.left);
+            if(index < leftSize) {
+                node = node.left;
+            } else if(index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.item;
+            }
+        }
+    }
+    
+    /**
+     * Find the index of an item in the inventory by name
+     * 
+     * @param name The name of the item we are looking for
+     * @return The index of the first item with the given name. Will be -1 if
+     * no such item is found
+     */
+    public int findByName(String name) {
+        if(name == null) {
+            return -1;
+        }
+        
+        // Find the first item whose name is not less than the name given,
+        // counting the items we pass on the way
+        Node node = this.root;
+        Node found = null;
+        int index = 0;
+        int foundIndex = -1;
+        while(node != null) {
+            if(node.item.getName().compareTo(name) < 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                found = node;
+                foundIndex = index + size(node.left);
+                node = node.left;
+            }
+        }
+        
+        // That item is only a match if the names are equal
+        if(found != null && name.equals(found.item.getName())) {
+            return foundIndex;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Create an inventory with one more item. The item goes after any items
+     * with the same name, just as it would in Inventory.
+     * 
+     * @param item The item to add
+     * @return The new inventory. Will be null if this inventory is full or 
+     * the item is null
+     */
+    public PersistentInventory withItem(IItem item) {
+        if(item == null || size(this.root) >= this.maxCapacity) {
+            return null;
+        }
+        
+        return new PersistentInventory(this.maxCapacity, 
+                insert(this.root, item, item.getName()));
+    }
+    
+    /**
+     * Create an inventory with one fewer item
+     * 
+     * @param index The index of the item to leave out
+     * @return The new inventory. Will be null if the index is invalid
+     */
+    public PersistentInventory withoutItem(int index) {
+        if(index < 0 || index >= size(this.root)) {
+            return null;
+        }
+        
+        return new PersistentInventory(this.maxCapacity, 
+                remove(this.root, index));
+    }
+    
+    /**
+     * Iterate over the items in the inventory, in order
+     * 
+     * @return An iterator over the items in the inventory
+     */
+    @Override
+    public Iterator<IItem> iterator() {
+        return new ItemIterator(this.root);
+    }
+    
+    /**
+     * Create a spliterator over the items in the inventory, in order
+     * 
+     * @return A spliterator over the items in the inventory
+     */
+    @Override
+    public Spliterator<IItem> spliterator() {
+        return Spliterators.spliterator(this.iterator(), size(this.root), 
+                Spliterator.ORDERED | Spliterator.NONNULL | 
+                Spliterator.IMMUTABLE);
+    }
+    
+    /**
+     * Create a stream of the items in the inventory, in order
+     * 
+     * @return A sequential stream of the items in the inventory
+     */
+    public Stream<IItem> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+    
+    /**
+     * Build a balanced tree from sorted items
+     * 
+     * @param items The items, sorted by name
+     * @param from The index of the first item to put in the tree
+     * @param to The index just after the last item to put in the tree
+     * @return The root of the tree
+     */
+    private static Node build(IItem [] items, int from, int to) {
+        if(from >= to) {
+            return null;
+        }
+        
+        int mid = (from + to) >>> 1;
+        return new Node(items[mid], build(items, from, mid), 
+                build(items, mid + 1, to));
+    }
+    
+    /**
+     * Insert an item into a tree, copying the nodes on the way down
+     * 
+     * @param node The root of the tree
+     * @param item The item to insert
+     * @param name The name of the item
+     * @return The root of the new tree
+     */
+    private static Node insert(Node node, IItem item, String name) {
+        if(node == null) {
+            return new Node(item, null, null);
+        }
+        
+        // Items with the same name go to the right, so the new item ends up
+        // after them
+        if(name.compareTo(node.item.getName()) < 0) {
+            return balance(node.item, insert(node.left, item, name), 
+                    node.right);
+        }
+        return balance(node.item, node.left, 
+                insert(node.right, item, name));
+    }
+    
+    /**
+     * Remove an item from a tree by index, copying the nodes on the way down
+     * 
+     * @param node The root of the tree
+     * @param index The index of the item within the tree
+     * @return The root of the new tree
+     */
+    private static Node remove(Node node, int index) {
+        int leftSize = size(node.left);
+        if(index < leftSize) {
+            return balance(node.item, remove(node.left, index), node.right);
+        }
+        if(index > leftSize) {
+            return balance(node.item, node.left, 
+                    remove(node.right, index - leftSize - 1));
+        }
+        
+        // This is the node to remove. If it has two children, its place is
+        // taken by the first item of its right subtree
+        if(node.left == null) {
+            return node.right;
+        }
+        if(node.right == null) {
+            return node.left;
+        }
+        Node first = node.right;
+        while(first.left != null) {
+            first = first.left;
+        }
+        return balance(first.item, node.left, remove(node.right, 0));
+    }
+    
+    /**
+     * Create a node, rotating it if one side has grown more than one level 
+     * taller than the other
+     * 
+     * @param item The item held by the node
+     * @param left The left subtree, which may be at most two levels taller
+     * or shorter than the right
+     * @param right The right subtree
+     * @return The root of the balanced tree
+     */
+    private static Node balance(IItem item, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        
+        if(leftHeight > rightHeight + 1) {
+            // Left heavy. If the left child leans right, rotate it first
+            if(height(left.left) >= height(left.right)) {
+                return new Node(left.item, left.left, 
+                        new Node(item, left.right, right));
+            }
+            return new Node(left.right.item, 
+                    new Node(left.item, left.left, left.right.left),
+                    new Node(item, left.right.right, right));
+        }
+        
+        if(rightHeight > leftHeight + 1) {
+            // Right heavy. If the right child leans left, rotate it first
+            if(height(right.right) >= height(right.left)) {
+                return new Node(right.item, 
+                        new Node(item, left, right.left), right.right);
+            }
+            return new Node(right.left.item, 
+                    new Node(item, left, right.left.left),
+                    new Node(right.item, right.left.right, right.right));
+        }
+        
+        return new Node(item, left, right);
+    }
+    
+    /**
+     * Get the number of items in a tree
+     * 
+     * @param node The root of the tree, or null
+     * @return The number of items
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+    
+    /**
+     * Get the height of a tree
+     * 
+     * @param node The root of the tree, or null
+     * @return The height, 0 for an empty tree
+     */
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+    
+    /**
+     * A node in the tree of items. Nodes never change once created, so they
+     * can be shared between inventories
+     */
+    private static final class Node {
+        /**
+         * The item held by this node
+         */
+        private final IItem item;
+        
+        /**
+         * The items sorting before this one
+         */
+        private final Node left;
+        
+        /**
+         * The items sorting after this one
+         */
+        private final Node right;
+        
+        /**
+         * The number of items in the tree rooted at this node
+         */
+        private final int size;
+        
+        /**
+         * The number of levels in the tree rooted at this node
+         */
+        private final int height;
+        
+        /**
+         * Constructor for the Node class
+         * 
+         * @param item The item held by this node
+         * @param left The items sorting before this one
+         * @param right The items sorting after this one
+         */
+        private Node( IItem item, Node left, Node right ) {
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+    
+    /**
+     * Walks the tree in order, keeping the path to the next item on a stack
+     */
+    private static final class ItemIterator implements Iterator<IItem> {
+        /**
+         * The nodes whose items are still to be visited, along with their 
+         * right subtrees. The next item is on top
+         */
+        private final ArrayDeque<Node> path;
+        
+        /**
+         * Constructor for the ItemIterator class
+         * 
+         * @param root The root of the tree to walk
+         */
+        private ItemIterator( Node root ) {
+            this.path = new ArrayDeque<>();
+            this.pushLeft(root);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !this.path.isEmpty();
+        }
+        
+        @Override
+        public IItem next() {
+            if(this.path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = this.path.pop();
+            this.pushLeft(node.right);
+            return node.item;
+        }
+        
+        /**
+         * Push a node and its chain of left children onto the stack
+         * 
+         * @param node The node to start from
+         */
+        private void pushLeft(Node node) {
+            for(; node != null; node = node.left) {
+                this.path.push(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Random;
+
+/**
+ * Compares two ways of letting readers see a consistent copy of an 
+ * inventory while it changes: copying every item out after each change, or
+ * keeping an InventoryMirror up to date. Reports the average time taken per
+ * change, including publishing the copy, for a range of inventory sizes.
+ * 
+ * @author Gary Munnelly
+ */
+public class PersistentInventoryBenchmark {
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int ROUNDS = 5;
+    
+    /**
+     * Where copies are published, so the work of making them can't be 
+     * optimised away
+     */
+    private static volatile Object published;
+    
+    /**
+     * Run the benchmark
+     * 
+     * @param args The number of changes to make at each size
+     */
+    public static void main(String[] args) {
+        int numChanges = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        
+        System.out.printf("%8s %12s %12s%n", "items", "copy ns", "mirror ns");
+        for(int size = 10; size <= 100000; size *= 10) {
+            double copy = Double.MAX_VALUE;
+            double mirror = Double.MAX_VALUE;
+            for(int round=0; round<ROUNDS; round++) {
+                copy = Math.min(copy, run(size, numChanges, false));
+                mirror = Math.min(mirror, run(size, numChanges, true));
+            }
+            System.out.printf("%8d %12.1f %12.1f%n", size, copy, mirror);
+        }
+    }
+    
+    /**
+     * Fill an inventory to half its capacity, then drop and insert items at
+     * random, publishing a copy after every change
+     * 
+     * @param size The capacity of the inventory
+     * @param numChanges The number of changes to make
+     * @param useMirror True to publish through a mirror, false to copy the 
+     * items out
+     * @return The average time per change in nanoseconds
+     */
+    private static double run(int size, int numChanges, boolean useMirror) {
+        Random random = new Random(size);
+        Inventory inventory = new Inventory(size);
+        for(int i=0; i<size / 2; i++) {
+            inventory.insertItem(randomItem(random));
+        }
+        
+        InventoryMirror mirror = useMirror ? 
+                new InventoryMirror(inventory) : null;
+        
+        long begin = System.nanoTime();
+        for(int i=0; i<numChanges; i++) {
+            if((i & 1) == 0) {
+                inventory.dropItem(random.nextInt(inventory.getNumItems()));
+            } else {
+                inventory.insertItem(randomItem(random));
+            }
+            
+            if(useMirror) {
+                published = mirror.current();
+            } else {
+                IItem [] copy = new IItem[inventory.getNumItems()];
+                for(int j=0; j<copy.length; j++) {
+                    copy[j] = inventory.peekItem(j);
+                }
+                published = copy;
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        if(mirror != null) {
+            mirror.detach();
+        }
+        return (double)elapsed / numChanges;
+    }
+    
+    /**
+     * Create an item with a random name
+     * 
+     * @param random The source of randomness
+     * @return The item
+     */
+    private static IItem randomItem(Random random) {
+        return new Sword("Sword " + random.nextInt(1000), "Pointy.");
+    }
+}
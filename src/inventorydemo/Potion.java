@@ -44,21 +44,24 @@ public class Potion implements IItem {
             + "The only way to find out is to drink it.";
     
     /**
-     * The name of this potion
+     * The definition shared by every potion built with the default constructor
      */
-    private String name;
+    private static final ItemDefinition DEFAULT_DEFINITION = 
+            ItemRegistry.getDefault().define(ItemType.POTION, 
+                    Potion.DEFAULT_NAME, Potion.DEFAULT_DESCRIPTION);
     
     /**
-     * A description of this potion
+     * The shared name and description of this potion
      */
-    private String description;
+    private final ItemDefinition definition;
     
     /**
      * Default constructor for the Potion class. Initializes the name to 
-     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION
+     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION. Every 
+     * default potion shares the same registered definition
      */
     public Potion() {
-        this(Potion.DEFAULT_NAME, Potion.DEFAULT_DESCRIPTION);
+        this(Potion.DEFAULT_DEFINITION);
     }
     
     /**
@@ -68,8 +71,33 @@ public class Potion implements IItem {
      * @param description A description of this potion
      */
     public Potion( String name, String description ) {
-        this.name = name;
-        this.description = description;
+        // One-off items are kept out of the registry, so that names typed in
+        // by players don't pile up there forever
+        this(ItemDefinition.unregistered(ItemType.POTION, name, description));
+    }
+    
+    /**
+     * Constructor for the Potion class. The potion shares the name and
+     * description held by its definition rather than keeping its own copy.
+     * 
+     * @param definition The definition of this potion. Must be a Potion
+     * definition
+     */
+    public Potion( ItemDefinition definition ) {
+        if(definition.getType() != ItemType.POTION) {
+            throw new IllegalArgumentException(
+                    "Not a Potion definition: " + definition.getType());
+        }
+        this.definition = definition;
+    }
+    
+    /**
+     * Get the shared definition of this potion
+     * 
+     * @return The definition of the potion
+     */
+    public ItemDefinition getDefinition() {
+        return this.definition;
     }
     
     /**
@@ -79,7 +107,7 @@ public class Potion implements IItem {
      */
     @Override
     public String getName() {
-        return this.name;
+        return this.definition.getName();
     }
 
     /**
@@ -89,6 +117,17 @@ public class Potion implements IItem {
      */
     @Override
     public String getDescription() {
-        return this.description;
+        return this.definition.getDescription();
+    }
+    
+    /**
+     * Get the value of one of this potion's numeric stats
+     * 
+     * @param attribute The stat to get
+     * @return The value of the stat, as given by the definition
+     */
+    @Override
+    public int getAttribute(ItemAttribute attribute) {
+        return this.definition.getAttribute(attribute);
     }    
 }
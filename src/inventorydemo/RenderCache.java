@@ -0,0 +1,396 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers rendered inventory listings so they don't have to be formatted 
+ * again every time they are shown. 
+ * 
+ * There are two levels. The details of each item (its padded name and its 
+ * description, encoded as UTF-8) are cached by item definition, since every
+ * item with the same definition looks the same. Whole pages of a listing 
+ * are cached by inventory, page number and inventory version. Any insert or
+ * drop changes the version, so a page from before the change is never 
+ * served again and simply ages out of the cache. Building a page that isn't
+ * cached mostly means copying cached item details into place, and serving 
+ * a page that is cached copies nothing at all.
+ * 
+ * Both levels hold a bounded number of entries and throw out the least 
+ * recently used entry when full. Hit and miss counts are kept for each 
+ * level. The cache may be shared between threads. Inventories must not 
+ * change while one of their pages is being built, as usual.
+ * 
+ * Pages use the same layout as InventoryRenderer, with empty slots shown.
+ * 
+ * @author Gary Munnelly
+ */
+public class RenderCache {
+    /**
+     * The default number of slots on each page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    
+    /**
+     * The number of slots on each page
+     */
+    private final int pageSize;
+    
+    /**
+     * The details of each item, by definition, least recently used first. 
+     * Definitions don't override equals, so they are matched by identity
+     */
+    private final Map<ItemDefinition, byte []> lines;
+    
+    /**
+     * Rendered pages, least recently used first
+     */
+    private final Map<PageKey, byte []> pages;
+    
+    /**
+     * The text shown for an empty slot
+     */
+    private final byte [] empty;
+    
+    /**
+     * The number of item details found in the cache
+     */
+    private final LongAdder lineHits;
+    
+    /**
+     * The number of item details which had to be encoded
+     */
+    private final LongAdder lineMisses;
+    
+    /**
+     * The number of pages found in the cache
+     */
+    private final LongAdder pageHits;
+    
+    /**
+     * The number of pages which had to be built
+     */
+    private final LongAdder pageMisses;
+    
+    /**
+     * Constructor for the RenderCache class. Uses the default page size
+     * 
+     * @param maxLines The most item details to keep
+     * @param maxPages The most pages to keep
+     */
+    public RenderCache( int maxLines, int maxPages ) {
+        this(maxLines, maxPages, RenderCache.DEFAULT_PAGE_SIZE);
+    }
+    
+    /**
+     * Constructor for the RenderCache class
+     * 
+     * @param maxLines The most item details to keep
+     * @param maxPages The most pages to keep
+     * @param pageSize The number of slots on each page
+     */
+    public RenderCache( int maxLines, int maxPages, int pageSize ) {
+        if(pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        
+        this.pageSize = pageSize;
+        this.lines = new LruMap<>(maxLines);
+        this.pages = new LruMap<>(maxPages);
+        this.empty = InventoryRenderer.encodeEmpty();
+        this.lineHits = new LongAdder();
+        this.lineMisses = new LongAdder();
+        this.pageHits = new LongAdder();
+        this.pageMisses = new LongAdder();
+    }
+    
+    /**
+     * Get the number of pages needed to show every slot of an inventory
+     * 
+     * @param inventory The inventory
+     * @return The number of pages, at least 1
+     */
+    public int getNumPages(Inventory inventory) {
+        return Math.max(1, (inventory.getMaxCapacity() + this.pageSize - 1) /
+                this.pageSize);
+    }
+    
+    /**
+     * Get a page of the listing of an inventory's contents, encoded as 
+     * UTF-8. The page is shared with anyone else asking for it, so it is 
+     * handed out as a read-only buffer
+     * 
+     * @param inventory The inventory to list
+     * @param page The page number, starting from 0
+     * @return The page, or null if there is no such page
+     */
+    public ByteBuffer page(Inventory inventory, int page) {
+        if(page < 0 || page >= this.getNumPages(inventory)) {
+            return null;
+        }
+        
+        PageKey key = new PageKey(inventory, inventory.getVersion(), page);
+        byte [] bytes;
+        synchronized(this.pages) {
+            bytes = this.pages.get(key);
+        }
+        
+        if(bytes != null) {
+            this.pageHits.increment();
+        } else {
+            this.pageMisses.increment();
+            bytes = this.build(inventory, page);
+            synchronized(this.pages) {
+                this.pages.put(key, bytes);
+            }
+        }
+        
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+    
+    /**
+     * Forget every cached page of an inventory. Not needed to keep pages up
+     * to date, but frees the space they take once the inventory is gone
+     * 
+     * @param inventory The inventory whose pages should be forgotten
+     */
+    public void invalidate(Inventory inventory) {
+        synchronized(this.pages) {
+            this.pages.keySet().removeIf(key -> key.inventory == inventory);
+        }
+    }
+    
+    /**
+     * Get the fraction of item details found in the cache
+     * 
+     * @return The hit rate, between 0 and 1
+     */
+    public double getLineHitRate() {
+        return hitRate(this.lineHits.sum(), this.lineMisses.sum());
+    }
+    
+    /**
+     * Get the fraction of pages found in the cache
+     * 
+     * @return The hit rate, between 0 and 1
+     */
+    public double getPageHitRate() {
+        return hitRate(this.pageHits.sum(), this.pageMisses.sum());
+    }
+    
+    /**
+     * Get the number of item details found in the cache
+     * 
+     * @return The number of hits
+     */
+    public long getLineHits() {
+        return this.lineHits.sum();
+    }
+    
+    /**
+     * Get the number of item details which had to be encoded
+     * 
+     * @return The number of misses
+     */
+    public long getLineMisses() {
+        return this.lineMisses.sum();
+    }
+    
+    /**
+     * Get the number of pages found in the cache
+     * 
+     * @return The number of hits
+     */
+    public long getPageHits() {
+        return this.pageHits.sum();
+    }
+    
+    /**
+     * Get the number of pages which had to be built
+     * 
+     * @return The number of misses
+     */
+    public long getPageMisses() {
+        return this.pageMisses.sum();
+    }
+    
+    /**
+     * Build a page of the listing
+     * 
+     * @param inventory The inventory to list
+     * @param page The page number
+     * @return The page as UTF-8
+     */
+    private byte [] build(Inventory inventory, int page) {
+        int from = page * this.pageSize;
+        int to = Math.min(from + this.pageSize, inventory.getMaxCapacity());
+        int numItems = inventory.getNumItems();
+        
+        // Look up the details of every line first, so we know how big the
+        // page will be
+        byte [][] details = new byte[to - from][];
+        int length = 0;
+        for(int i=from; i<to; i++) {
+            details[i - from] = i < numItems ? 
+                    this.details(inventory.peekItem(i)) : this.empty;
+            length += InventoryRenderer.lineStartLength(i) + 
+                    details[i - from].length + 1;
+        }
+        
+        ByteBuffer out = ByteBuffer.allocate(length);
+        for(int i=from; i<to; i++) {
+            InventoryRenderer.putLineStart(out, i);
+            out.put(details[i - from]);
+            out.put((byte)'\n');
+        }
+        return out.array();
+    }
+    
+    /**
+     * Get the details of an item, from the cache if possible
+     * 
+     * @param item The item
+     * @return The item's padded name and description as UTF-8
+     */
+    private byte [] details(IItem item) {
+        // Items without a definition can't be cached. Looking the definition
+        // up by identity means items don't have to be registered to be 
+        // cached, and nothing is added to a registry
+        ItemDefinition definition = ItemDefinition.of(item);
+        if(definition == null) {
+            this.lineMisses.increment();
+            return InventoryRenderer.encodeItem(item);
+        }
+        
+        byte [] bytes;
+        synchronized(this.lines) {
+            bytes = this.lines.get(definition);
+        }
+        
+        if(bytes != null) {
+            this.lineHits.increment();
+        } else {
+            this.lineMisses.increment();
+            bytes = InventoryRenderer.encodeItem(item);
+            synchronized(this.lines) {
+                this.lines.put(definition, bytes);
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Work out a hit rate
+     * 
+     * @param hits The number of hits
+     * @param misses The number of misses
+     * @return The fraction of lookups which were hits, or 0 if there were
+     * no lookups
+     */
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double)hits / total;
+    }
+    
+    /**
+     * Identifies a page of a particular version of an inventory
+     */
+    private static final class PageKey {
+        /**
+         * The inventory, compared by identity
+         */
+        private final Inventory inventory;
+        
+        /**
+         * The version of the inventory
+         */
+        private final int version;
+        
+        /**
+         * The page number
+         */
+        private final int page;
+        
+        /**
+         * Constructor for the PageKey class
+         * 
+         * @param inventory The inventory
+         * @param version The version of the inventory
+         * @param page The page number
+         */
+        private PageKey( Inventory inventory, int version, int page ) {
+            this.inventory = inventory;
+            this.version = version;
+            this.page = page;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof PageKey)) {
+                return false;
+            }
+            PageKey key = (PageKey)other;
+            return this.inventory == key.inventory && 
+                    this.version == key.version && this.page == key.page;
+        }
+        
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(this.inventory);
+            hash = 31 * hash + this.version;
+            return 31 * hash + this.page;
+        }
+    }
+    
+    /**
+     * A map which keeps its entries in order of use and throws out the 
+     * least recently used entry once it holds too many
+     */
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        /**
+         * The most entries to keep
+         */
+        private final int maxEntries;
+        
+        /**
+         * Constructor for the LruMap class
+         * 
+         * @param maxEntries The most entries to keep
+         */
+        private LruMap( int maxEntries ) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return this.size() > this.maxEntries;
+        }
+    }
+}
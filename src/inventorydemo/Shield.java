@@ -42,21 +42,24 @@ public class Shield implements IItem {
             "A gigantic shield for a gigantic wuss.";
     
     /**
-     * The name of this Shield
+     * The definition shared by every Shield built with the default constructor
      */
-    private String name;
+    private static final ItemDefinition DEFAULT_DEFINITION = 
+            ItemRegistry.getDefault().define(ItemType.SHIELD, 
+                    Shield.DEFAULT_NAME, Shield.DEFAULT_DESCRIPTION);
     
     /**
-     * A description of this Shield
+     * The shared name and description of this Shield
      */
-    private String description;
+    private final ItemDefinition definition;
     
     /**
      * Default constructor for the Shield class. Initialises the name to 
-     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION
+     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION. Every 
+     * default Shield shares the same registered definition
      */
     public Shield() {
-        this(Shield.DEFAULT_NAME, Shield.DEFAULT_DESCRIPTION);
+        this(Shield.DEFAULT_DEFINITION);
     }
     
     /**
@@ -66,8 +69,33 @@ public class Shield implements IItem {
      * @param description A description of this Shield
      */
     public Shield( String name, String description ) {
-        this.name = name;
-        this.description = description;
+        // One-off items are kept out of the registry, so that names typed in
+        // by players don't pile up there forever
+        this(ItemDefinition.unregistered(ItemType.SHIELD, name, description));
+    }
+    
+    /**
+     * Constructor for the Shield class. The Shield shares the name and
+     * description held by its definition rather than keeping its own copy.
+     * 
+     * @param definition The definition of this Shield. Must be a Shield
+     * definition
+     */
+    public Shield( ItemDefinition definition ) {
+        if(definition.getType() != ItemType.SHIELD) {
+            throw new IllegalArgumentException(
+                    "Not a Shield definition: " + definition.getType());
+        }
+        this.definition = definition;
+    }
+    
+    /**
+     * Get the shared definition of this Shield
+     * 
+     * @return The definition of the Shield
+     */
+    public ItemDefinition getDefinition() {
+        return this.definition;
     }
     
     /**
@@ -77,7 +105,7 @@ public class Shield implements IItem {
      */
     @Override
     public String getName() {
-        return this.name;
+        return this.definition.getName();
     }
 
     /**
@@ -87,6 +115,17 @@ public class Shield implements IItem {
      */
     @Override
     public String getDescription() {
-        return this.description;
+        return this.definition.getDescription();
+    }
+    
+    /**
+     * Get the value of one of this shield's numeric stats
+     * 
+     * @param attribute The stat to get
+     * @return The value of the stat, as given by the definition
+     */
+    @Override
+    public int getAttribute(ItemAttribute attribute) {
+        return this.definition.getAttribute(attribute);
     }    
 }
@@ -0,0 +1,305 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Gary Munnelly.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package inventorydemo;
+
+import java.util.Arrays;
+
+/**
+ * A storage engine which keeps items in a single array sorted by name. 
+ * Lookups are done with a binary search and are cheap, but every insert or
+ * remove has to shift the tail of the array along by one slot.
+ * 
+ * The array can either be allocated at full capacity up front, or grown and
+ * shrunk as items come and go, depending on the capacity policy.
+ * 
+ * @author Gary Munnelly
+ */
+public class SortedArrayStorage implements IInventoryStorage {
+    /**
+     * The fewest slots allocated once a growable array holds any items
+     */
+    private static final int MIN_ALLOCATION = 4;
+    
+    /**
+     * Shared by every growable array which holds no items, so that empty
+     * inventories cost nothing
+     */
+    private static final IItem [] EMPTY = new IItem[0];
+    
+    /**
+     * The maximum number of items the storage can hold
+     */
+    private final int capacity;
+    
+    /**
+     * How slots are allocated
+     */
+    private final CapacityPolicy policy;
+    
+    /**
+     * The number of items currently stored
+     */
+    private int numItems;
+    
+    /**
+     * Array used to store the items. Slots [0, numItems) are occupied and 
+     * sorted by name, the rest are null. Its length is the number of slots
+     * allocated, which may be less than the capacity
+     */
+    private IItem [] contents;
+    
+    /**
+     * Constructor for the SortedArrayStorage class. Every slot is allocated
+     * up front
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     */
+    public SortedArrayStorage( int capacity ) {
+        this(capacity, CapacityPolicy.HARD);
+    }
+    
+    /**
+     * Constructor for the SortedArrayStorage class
+     * 
+     * @param capacity The maximum number of items the storage can hold
+     * @param policy How slots are allocated
+     */
+    public SortedArrayStorage( int capacity, CapacityPolicy policy ) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.contents = policy == CapacityPolicy.HARD ? 
+                new IItem[capacity] : SortedArrayStorage.EMPTY;
+        this.numItems = 0;
+    }
+    
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+    
+    /**
+     * Get the number of slots currently allocated
+     * 
+     * @return The length of the array holding the items
+     */
+    public int allocated() {
+        return this.contents.length;
+    }
+    
+    @Override
+    public int size() {
+        return this.numItems;
+    }
+    
+    @Override
+    public IItem get(int index) {
+        return this.contents[index];
+    }
+    
+    @Override
+    public int insert(IItem item) {
+        // Binary search the occupied slots for the appropriate place to insert
+        // the item such that the array remains sorted
+        int index = this.upperBound(item.getName());
+        this.ensureAllocated(this.numItems + 1);
+        
+        // Shift the occupied slots from index onwards up by one to make room
+        System.arraycopy(this.contents, index, this.contents, index + 1, 
+                this.numItems - index);
+        this.contents[index] = item;
+        this.numItems++;
+        
+        return index;
+    }
+    
+    @Override
+    public IItem remove(int index) {
+        IItem item = this.contents[index];
+        
+        this.numItems--;
+        
+        // Shift the tail of the occupied slots down over the element we want
+        // to delete
+        System.arraycopy(this.contents, index + 1, this.contents, index, 
+                this.numItems - index);
+        
+        // Clear the slot which used to hold the last item
+        this.contents[this.numItems] = null;
+        this.trimAllocated();
+        
+        return item;
+    }
+    
+    @Override
+    public void insertAll(IItem [] items, int count) {
+        // Merge the new items into the array from the back, so that each 
+        // existing item is moved at most once. Existing items stay in front 
+        // of new items with the same name
+        this.ensureAllocated(this.numItems + count);
+        int i = this.numItems - 1;
+        int j = count - 1;
+        int k = this.numItems + count - 1;
+        
+        while(j >= 0) {
+            if(i >= 0 && this.contents[i].getName()
+                    .compareTo(items[j].getName()) > 0) {
+                this.contents[k--] = this.contents[i--];
+            } else {
+                this.contents[k--] = items[j--];
+            }
+        }
+        
+        this.numItems += count;
+    }
+    
+    @Override
+    public void removeAll(int [] indices, int count) {
+        if(count == 0) {
+            return;
+        }
+        
+        // Sweep over the array once, moving each item we keep down over the
+        // gaps left by the ones we remove
+        int write = indices[0];
+        int next = 0;
+        for(int read=indices[0]; read<this.numItems; read++) {
+            if(next < count && indices[next] == read) {
+                next++;
+            } else {
+                this.contents[write++] = this.contents[read];
+            }
+        }
+        
+        // Clear the slots which used to hold the last items
+        Arrays.fill(this.contents, write, this.numItems, null);
+        this.numItems = write;
+        this.trimAllocated();
+    }
+    
+    @Override
+    public int indexOf(String name) {
+        int index = this.lowerBound(name);
+        
+        // The lower bound is only a match if the names are equal
+        if(index < this.numItems && 
+                name.equals(this.contents[index].getName())) {
+            return index;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Make sure enough slots are allocated to hold a number of items. Grows 
+     * the array to at least double its length, so that filling it one item 
+     * at a time only copies each item a few times
+     * 
+     * @param needed The number of items the array must be able to hold
+     */
+    private void ensureAllocated(int needed) {
+        if(needed <= this.contents.length) {
+            return;
+        }
+        
+        int length = Math.max(this.contents.length * 2, 
+                SortedArrayStorage.MIN_ALLOCATION);
+        length = Math.min(Math.max(length, needed), this.capacity);
+        this.contents = Arrays.copyOf(this.contents, length);
+    }
+    
+    /**
+     * Give back slots which aren't needed, if the policy allows it. The 
+     * array is halved whenever no more than a quarter of it is in use, so that
+     * an insert straight after a remove never has to grow it again
+     */
+    private void trimAllocated() {
+        if(this.policy != CapacityPolicy.SHRINK) {
+            return;
+        }
+        
+        if(this.numItems == 0) {
+            this.contents = SortedArrayStorage.EMPTY;
+        } else if(this.numItems <= this.contents.length / 4 && 
+                this.contents.length > SortedArrayStorage.MIN_ALLOCATION) {
+            // A batch remove may free up a lot of slots at once, so keep
+            // halving until the array is at least a quarter full
+            int length = this.contents.length;
+            while(this.numItems <= length / 4 && 
+                    length > SortedArrayStorage.MIN_ALLOCATION) {
+                length = Math.max(length / 2, 
+                        SortedArrayStorage.MIN_ALLOCATION);
+            }
+            this.contents = Arrays.copyOf(this.contents, length);
+        }
+    }
+    
+    /**
+     * Find the first occupied slot whose item name is not less than the name
+     * given.
+     * 
+     * @param name The name to search for
+     * @return The index of the first item with a name >= name, or numItems if
+     * there is no such item
+     */
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = this.numItems;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.contents[mid].getName().compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Find the first occupied slot whose item name is greater than the name
+     * given.
+     * 
+     * @param name The name to search for
+     * @return The index of the first item with a name > name, or numItems if
+     * there is no such item
+     */
+    private int upperBound(String name) {
+        int low = 0;
+        int high = this.numItems;
+        
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.contents[mid].getName().compareTo(name) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+}
@@ -41,21 +41,24 @@ public class Sword implements IItem {
     private static final String DEFAULT_DESCRIPTION = "Pointy.";
     
     /**
-     * The name of this sword
+     * The definition shared by every sword built with the default constructor
      */
-    private String name;
+    private static final ItemDefinition DEFAULT_DEFINITION = 
+            ItemRegistry.getDefault().define(ItemType.SWORD, 
+                    Sword.DEFAULT_NAME, Sword.DEFAULT_DESCRIPTION);
     
     /**
-     * A description of this sword
+     * The shared name and description of this sword
      */
-    private String description;
+    private final ItemDefinition definition;
     
     /**
      * Default constructor for the Sword class. Initializes the name to 
-     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION
+     * DEFAULT_NAME and the description to DEFAULT_DESCRIPTION. Every 
+     * default sword shares the same registered definition
      */
     public Sword() {
-        this(Sword.DEFAULT_NAME, Sword.DEFAULT_DESCRIPTION);
+        this(Sword.DEFAULT_DEFINITION);
     }
     
     /**
@@ -65,8 +68,33 @@ public class Sword implements IItem {
      * @param description A description of this sword
      */
     public Sword( String name, String description ) {
-        this.name = name;
-        this.description = description;
+        // One-off items are kept out of the registry, so that names typed in
+        // by players don't pile up there forever
+        this(ItemDefinition.unregistered(ItemType.SWORD, name, description));
+    }
+    
+    /**
+     * Constructor for the Sword class. The sword shares the name and
+     * description held by its definition rather than keeping its own copy.
+     * 
+     * @param definition The definition of this sword. Must be a Sword
+     * definition
+     */
+    public Sword( ItemDefinition definition ) {
+        if(definition.getType() != ItemType.SWORD) {
+            throw new IllegalArgumentException(
+                    "Not a Sword definition: " + definition.getType());
+        }
+        this.definition = definition;
+    }
+    
+    /**
+     * Get the shared definition of this sword
+     * 
+     * @return The definition of the sword
+     */
+    public ItemDefinition getDefinition() {
+        return this.definition;
     }
     
     /**
@@ -76,7 +104,7 @@ public class Sword implements IItem {
      */
     @Override
     public String getName() {
-        return this.name;
+        return this.definition.getName();
     }
 
     /**
@@ -86,6 +114,17 @@ public class Sword implements IItem {
      */
     @Override
     public String getDescription() {
-        return this.description;
+        return this.definition.getDescription();
+    }
+    
+    /**
+     * Get the value of one of this sword's numeric stats
+     * 
+     * @param attribute The stat to get
+     * @return The value of the stat, as given by the definition
+     */
+    @Override
+    public int getAttribute(ItemAttribute attribute) {
+        return this.definition.getAttribute(attribute);
     }    
 }